@@ -0,0 +1,159 @@
+/*
+ * Corbit, a text analyzer
+ * 
+ * Copyright (c) 2010-2012, Jun Hatori
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the names of the authors nor the names of its contributors
+ *       may be used to endorse or promote products derived from this
+ *       software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package corbit.commons.util;
+
+import corbit.commons.io.Console;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+
+/**
+ * Compares beam pruning by sorting all the chart entries with
+ * Collections.sort with pruning by PartialSorter, the way DPParserChart.prune
+ * does it, for beams of 8 to 256. Scores are drawn from a small range so that
+ * ties are frequent, and the results of both are checked to be the same.
+ * This is not part of the jar; run it with "ant bench".
+ *
+ * usage: java corbit.commons.util.PruneBenchmark [expansion] [repeat]
+ */
+public class PruneBenchmark {
+
+    static final Comparator<Entry<Integer, double[]>> SCORE_ORDER =
+            new Comparator<Entry<Integer, double[]>>() {
+                @Override
+                public int compare(Entry<Integer, double[]> p1, Entry<Integer, double[]> p2) {
+                    double[] d1 = p1.getValue();
+                    double[] d2 = p2.getValue();
+                    return d1[0] < d2[0] ? 1 : (d1[0] == d2[0] ? (d1[1] < d2[1] ? 1 : d1[1] == d2[1] ? 0 : -1) : -1);
+                }
+            };
+
+    final List<Entry<Integer, double[]>> m_pruned = new ArrayList<>();
+    final PartialSorter<Entry<Integer, double[]>> m_sorter = new PartialSorter<>();
+    final com.sun.management.ThreadMXBean m_mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    // bytes allocated by the sorts since the last run
+    long m_lSortBytes;
+
+    void prune(LinkedHashMap<Integer, double[]> m, int iBeam, boolean bFull) {
+        List<Entry<Integer, double[]>> l = m_pruned;
+        l.addAll(m.entrySet());
+        long lThread = Thread.currentThread().getId();
+        long lBytes = m_mx.getThreadAllocatedBytes(lThread);
+        if (bFull) {
+            Collections.sort(l, SCORE_ORDER);
+        } else {
+            m_sorter.sort(l, iBeam + 1, SCORE_ORDER);
+        }
+        m_lSortBytes += m_mx.getThreadAllocatedBytes(lThread) - lBytes;
+        m.clear();
+        double[] dLastScore = new double[]{Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (int i = 0; i < l.size(); ++i) {
+            if (i >= iBeam && !Statics.arrayEquals(l.get(i).getValue(), dLastScore)) {
+                break;
+            }
+            m.put(l.get(i).getKey(), l.get(i).getValue());
+        }
+        l.clear();
+    }
+
+    static List<LinkedHashMap<Integer, double[]>> createCharts(int iBeam, int iExpansion, int iRepeat) {
+        Random rnd = new Random(iBeam);
+        List<LinkedHashMap<Integer, double[]>> charts = new ArrayList<>(iRepeat);
+        for (int i = 0; i < iRepeat; ++i) {
+            LinkedHashMap<Integer, double[]> m = new LinkedHashMap<>();
+            for (int j = 0; j < iBeam * iExpansion; ++j) {
+                m.put(j, new double[]{rnd.nextInt(iBeam * 4), rnd.nextInt(4)});
+            }
+            charts.add(m);
+        }
+        return charts;
+    }
+
+    static List<LinkedHashMap<Integer, double[]>> copy(List<LinkedHashMap<Integer, double[]>> charts) {
+        List<LinkedHashMap<Integer, double[]>> l = new ArrayList<>(charts.size());
+        for (LinkedHashMap<Integer, double[]> m : charts) {
+            l.add(new LinkedHashMap<>(m));
+        }
+        return l;
+    }
+
+    // nanoseconds taken by pruning the charts and bytes allocated by sorting
+    long[] run(List<LinkedHashMap<Integer, double[]>> charts, int iBeam, boolean bFull) {
+        m_lSortBytes = 0;
+        long lStart = System.nanoTime();
+        for (LinkedHashMap<Integer, double[]> m : charts) {
+            prune(m, iBeam, bFull);
+        }
+        return new long[]{System.nanoTime() - lStart, m_lSortBytes};
+    }
+
+    public static void main(String[] args) {
+        int iExpansion = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int iRepeat = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        PruneBenchmark b = new PruneBenchmark();
+        Console.open();
+
+        Console.writeLine(String.format("%d candidates per beam slot, %d charts per run.", iExpansion, iRepeat));
+        Console.writeLine("beam\tsort(ms)\tpartial(ms)\tspeedup\tsort(B/prune)\tpartial(B/prune)");
+        Console.writeLine("(time of the whole prune; bytes allocated by the sort alone)");
+        for (int iBeam = 8; iBeam <= 256; iBeam <<= 1) {
+            List<LinkedHashMap<Integer, double[]>> charts = createCharts(iBeam, iExpansion, iRepeat);
+            long[] lSort = new long[2];
+            long[] lPartial = new long[2];
+            // the first round warms up the JIT compiler
+            for (int iRound = 0; iRound < 3; ++iRound) {
+                List<LinkedHashMap<Integer, double[]>> c1 = copy(charts);
+                List<LinkedHashMap<Integer, double[]>> c2 = copy(charts);
+                long[] r1 = b.run(c1, iBeam, true);
+                long[] r2 = b.run(c2, iBeam, false);
+                if (iRound > 0) {
+                    for (int i = 0; i < 2; ++i) {
+                        lSort[i] += r1[i];
+                        lPartial[i] += r2[i];
+                    }
+                }
+                for (int i = 0; i < iRepeat; ++i) {
+                    if (!new ArrayList<>(c1.get(i).keySet()).equals(new ArrayList<>(c2.get(i).keySet()))) {
+                        throw new IllegalStateException("Pruning results differ at beam " + iBeam);
+                    }
+                }
+            }
+            Console.writeLine(String.format("%d\t%.1f\t%.1f\t%.2f\t%d\t%d",
+                    iBeam, lSort[0] / 2e6, lPartial[0] / 2e6, (double) lSort[0] / lPartial[0],
+                    lSort[1] / (2L * iRepeat), lPartial[1] / (2L * iRepeat)));
+        }
+        Console.close();
+    }
+}
@@ -0,0 +1,368 @@
+/*
+ * Corbit, a text analyzer
+ * 
+ * Copyright (c) 2010-2012, Jun Hatori
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the names of the authors nor the names of its contributors
+ *       may be used to endorse or promote products derived from this
+ *       software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package corbit.commons;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A read-only table of strings held in a direct buffer outside the heap, in
+ * which strings are looked up by a minimal perfect hash over their UTF-8
+ * bytes. The hash is built by hash and displace: keys are grouped into
+ * buckets, and each bucket is given a displacement that sends its keys to
+ * free slots, with larger buckets placed first. A bucket of a single key is
+ * given the free slot directly, encoded as a negative displacement.
+ *
+ * The layout is as follows: the number of strings n (int), the number of
+ * buckets r (int), the hash seed (int), the total number of bytes (int),
+ * displacements of the buckets (int[r]), pairs of the byte offset and the
+ * string index of the slots (int[2 * (n + 1)]), slots of the strings (int[n]),
+ * and the UTF-8 bytes of all strings in the order of the slots (byte[]). A
+ * lookup thus reads a displacement, a pair and the bytes to compare.
+ */
+public class PerfectHashTable implements StringIndex {
+
+    private static final int MAX_DISPLACEMENT = 1 << 20;
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private static final ThreadLocal<Encoder> s_encoder = new ThreadLocal<Encoder>() {
+        @Override
+        protected Encoder initialValue() {
+            return new Encoder();
+        }
+    };
+
+    private final int m_size;
+    private final int m_numBuckets;
+    private final int m_seed;
+    private final ByteBuffer m_buffer;
+    private final IntBuffer m_disps;
+    private final IntBuffer m_records;
+    private final IntBuffer m_slots;
+    private final ByteBuffer m_bytes;
+
+    public PerfectHashTable(List<String> strings) {
+        int n = strings.size();
+        byte[][] keys = new byte[n][];
+        int numBytes = 0;
+        Encoder enc = new Encoder();
+        for (int i = 0; i < n; ++i) {
+            enc.encode(strings.get(i));
+            keys[i] = Arrays.copyOf(enc.m_buf, enc.m_length);
+            numBytes += enc.m_length;
+        }
+
+        int r = n / 2 + 1;
+        int[] disps = new int[r];
+        int[] ids = new int[n];
+        int iSeed = 0;
+        while (!place(keys, r, iSeed, disps, ids)) {
+            ++iSeed;
+        }
+
+        m_size = n;
+        m_numBuckets = r;
+        m_seed = iSeed;
+        m_buffer = ByteBuffer.allocateDirect(4 * (4 + r + 3 * n + 2) + numBytes).order(ByteOrder.nativeOrder());
+        m_buffer.putInt(n);
+        m_buffer.putInt(r);
+        m_buffer.putInt(iSeed);
+        m_buffer.putInt(numBytes);
+        for (int i = 0; i < r; ++i) {
+            m_buffer.putInt(disps[i]);
+        }
+        int[] slots = new int[n];
+        int iOffset = 0;
+        for (int i = 0; i < n; ++i) {
+            m_buffer.putInt(iOffset);
+            m_buffer.putInt(ids[i]);
+            slots[ids[i]] = i;
+            iOffset += keys[ids[i]].length;
+        }
+        m_buffer.putInt(iOffset);
+        m_buffer.putInt(-1);
+        for (int i = 0; i < n; ++i) {
+            m_buffer.putInt(slots[i]);
+        }
+        for (int i = 0; i < n; ++i) {
+            m_buffer.put(keys[ids[i]]);
+        }
+        m_buffer.flip();
+
+        m_disps = slice(16, 4 * r).asIntBuffer();
+        m_records = slice(16 + 4 * r, 8 * (n + 1)).asIntBuffer();
+        m_slots = slice(16 + 4 * (r + 2 * n + 2), 4 * n).asIntBuffer();
+        m_bytes = slice(16 + 4 * (r + 3 * n + 2), numBytes);
+    }
+
+    /**
+     * assigns slots to all keys with the seed; returns false if some bucket
+     * cannot be placed, in which case another seed has to be tried
+     */
+    private static boolean place(byte[][] keys, int r, int iSeed, int[] disps, int[] ids) {
+        int n = keys.length;
+        long[] hashes = new long[n];
+        int[] heads = new int[r];
+        int[] nexts = new int[n];
+        int[] sizes = new int[r];
+        Arrays.fill(heads, -1);
+        int iMaxSize = 0;
+        for (int i = 0; i < n; ++i) {
+            hashes[i] = hash(ByteBuffer.wrap(keys[i]).order(ByteOrder.nativeOrder()), keys[i].length, iSeed);
+            int b = bucketOf(hashes[i], r);
+            nexts[i] = heads[b];
+            heads[b] = i;
+            iMaxSize = Math.max(iMaxSize, ++sizes[b]);
+        }
+
+        // buckets sorted by size in descending order
+        int[] starts = new int[iMaxSize + 2];
+        for (int b = 0; b < r; ++b) {
+            ++starts[iMaxSize - sizes[b] + 1];
+        }
+        for (int k = 1; k < starts.length; ++k) {
+            starts[k] += starts[k - 1];
+        }
+        int[] order = new int[r];
+        for (int b = 0; b < r; ++b) {
+            order[starts[iMaxSize - sizes[b]]++] = b;
+        }
+
+        BitSet taken = new BitSet(n);
+        int[] slots = new int[iMaxSize];
+        int iFree = 0;
+        for (int b : order) {
+            if (sizes[b] == 0) {
+                disps[b] = 0;
+            } else if (sizes[b] == 1) {
+                iFree = taken.nextClearBit(iFree);
+                taken.set(iFree);
+                disps[b] = -1 - iFree;
+                ids[iFree] = heads[b];
+            } else {
+                int d = 0;
+                while (!tryDisplacement(hashes, heads[b], nexts, d, n, taken, slots)) {
+                    if (++d == MAX_DISPLACEMENT) {
+                        return false;
+                    }
+                }
+                disps[b] = d;
+                int k = 0;
+                for (int i = heads[b]; i >= 0; i = nexts[i]) {
+                    taken.set(slots[k]);
+                    ids[slots[k++]] = i;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean tryDisplacement(long[] hashes, int iHead, int[] nexts, int d, int n, BitSet taken, int[] slots) {
+        int k = 0;
+        for (int i = iHead; i >= 0; i = nexts[i]) {
+            int iSlot = slotOf(hashes[i], d, n);
+            if (taken.get(iSlot)) {
+                return false;
+            }
+            for (int j = 0; j < k; ++j) {
+                if (slots[j] == iSlot) {
+                    return false;
+                }
+            }
+            slots[k++] = iSlot;
+        }
+        return true;
+    }
+
+    private ByteBuffer slice(int iBegin, int iLength) {
+        ByteBuffer b = m_buffer.duplicate();
+        b.position(iBegin);
+        b.limit(iBegin + iLength);
+        return b.slice().order(ByteOrder.nativeOrder());
+    }
+
+    @Override
+    public int size() {
+        return m_size;
+    }
+
+    /**
+     * Returns the number of bytes held outside the heap.
+     */
+    public int byteSize() {
+        return m_buffer.capacity();
+    }
+
+    @Override
+    public String get(int i) {
+        int iSlot = m_slots.get(i);
+        int iBegin = m_records.get(2 * iSlot);
+        int iEnd = m_records.get(2 * iSlot + 2);
+        char[] cs = new char[iEnd - iBegin];
+        int k = 0;
+        for (int j = iBegin; j < iEnd;) {
+            int c = m_bytes.get(j++) & 0xff;
+            if (c < 0x80) {
+                cs[k++] = (char) c;
+            } else if (c < 0xe0) {
+                cs[k++] = (char) (((c & 0x1f) << 6) | (m_bytes.get(j++) & 0x3f));
+            } else if (c < 0xf0) {
+                c = ((c & 0x0f) << 12) | ((m_bytes.get(j++) & 0x3f) << 6);
+                cs[k++] = (char) (c | (m_bytes.get(j++) & 0x3f));
+            } else {
+                c = ((c & 0x07) << 18) | ((m_bytes.get(j++) & 0x3f) << 12);
+                c |= ((m_bytes.get(j++) & 0x3f) << 6) | (m_bytes.get(j++) & 0x3f);
+                cs[k++] = Character.highSurrogate(c);
+                cs[k++] = Character.lowSurrogate(c);
+            }
+        }
+        return new String(cs, 0, k);
+    }
+
+    @Override
+    public int indexOf(String s) {
+        if (m_size == 0) {
+            return -1;
+        }
+        Encoder enc = s_encoder.get();
+        enc.encode(s);
+        ByteBuffer key = enc.m_view;
+        int iLength = enc.m_length;
+        long h = hash(key, iLength, m_seed);
+        int d = m_disps.get(bucketOf(h, m_numBuckets));
+        int iSlot = d < 0 ? -1 - d : slotOf(h, d, m_size);
+
+        int iBegin = m_records.get(2 * iSlot);
+        if (m_records.get(2 * iSlot + 2) - iBegin != iLength) {
+            return -1;
+        }
+        int j = 0;
+        for (; j + 8 <= iLength; j += 8) {
+            if (m_bytes.getLong(iBegin + j) != key.getLong(j)) {
+                return -1;
+            }
+        }
+        for (; j < iLength; ++j) {
+            if (m_bytes.get(iBegin + j) != key.get(j)) {
+                return -1;
+            }
+        }
+        return m_records.get(2 * iSlot + 1);
+    }
+
+    /*
+     * the ranges are reduced by multiplication instead of division, taking
+     * the upper and the lower halves of the hash for buckets and slots
+     */
+    private static int bucketOf(long h, int r) {
+        return (int) (((h >>> 32) * r) >>> 32);
+    }
+
+    private static int slotOf(long h, int d, int n) {
+        return (int) (((mix(h + d * GOLDEN_GAMMA) & 0xffffffffL) * n) >>> 32);
+    }
+
+    /**
+     * hashes the bytes eight at a time in the manner of MurmurHash3
+     */
+    private static long hash(ByteBuffer data, int iLength, int iSeed) {
+        long h = iSeed * GOLDEN_GAMMA;
+        int i = 0;
+        for (; i + 8 <= iLength; i += 8) {
+            h ^= scramble(data.getLong(i));
+            h = Long.rotateLeft(h, 27) * 5 + 0x52dce729;
+        }
+        if (i < iLength) {
+            long k = 0;
+            for (int j = iLength - 1; j >= i; --j) {
+                k = (k << 8) | (data.get(j) & 0xff);
+            }
+            h ^= scramble(k);
+        }
+        return mix(h ^ iLength);
+    }
+
+    private static long scramble(long k) {
+        k *= 0x87c37b91114253d5L;
+        k = Long.rotateLeft(k, 31);
+        return k * 0x4cf5ad432745937fL;
+    }
+
+    private static long mix(long h) {
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+
+    /**
+     * encodes strings in UTF-8 into a buffer reused across lookups; unpaired
+     * surrogates are encoded as they are so that every string is restored by
+     * get()
+     */
+    private static final class Encoder {
+
+        byte[] m_buf = new byte[256];
+        ByteBuffer m_view = ByteBuffer.wrap(m_buf).order(ByteOrder.nativeOrder());
+        int m_length;
+
+        void encode(String s) {
+            if (m_buf.length < 3 * s.length()) {
+                m_buf = new byte[Math.max(3 * s.length(), 2 * m_buf.length)];
+                m_view = ByteBuffer.wrap(m_buf).order(ByteOrder.nativeOrder());
+            }
+            byte[] buf = m_buf;
+            int k = 0;
+            for (int i = 0; i < s.length(); ++i) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    buf[k++] = (byte) c;
+                } else if (c < 0x800) {
+                    buf[k++] = (byte) (0xc0 | (c >> 6));
+                    buf[k++] = (byte) (0x80 | (c & 0x3f));
+                } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    buf[k++] = (byte) (0xf0 | (cp >> 18));
+                    buf[k++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    buf[k++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    buf[k++] = (byte) (0x80 | (cp & 0x3f));
+                } else {
+                    buf[k++] = (byte) (0xe0 | (c >> 12));
+                    buf[k++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    buf[k++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+            m_length = k;
+        }
+    }
+}
\ No newline at end of file
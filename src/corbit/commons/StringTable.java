@@ -0,0 +1,148 @@
+/*
+ * Corbit, a text analyzer
+ * 
+ * Copyright (c) 2010-2012, Jun Hatori
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the names of the authors nor the names of its contributors
+ *       may be used to endorse or promote products derived from this
+ *       software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package corbit.commons;
+
+import corbit.commons.io.BinaryModel;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A read-only table of strings stored in a binary model, which is accessed
+ * directly on the (memory-mapped) buffer. Strings are looked up by binary
+ * search over their hash values sorted in advance.
+ *
+ * The layout is as follows: the number of strings n (int), the total number
+ * of characters (int), offsets of the strings (int[n + 1]), sorted hash
+ * values (int[n]), string indices in the order of the hash values (int[n]),
+ * and the characters of all strings (char[]).
+ */
+public class StringTable implements StringIndex {
+
+    private final int m_size;
+    private final IntBuffer m_offsets;
+    private final IntBuffer m_hashes;
+    private final IntBuffer m_ids;
+    private final CharBuffer m_chars;
+
+    public StringTable(ByteBuffer b) {
+        m_size = b.getInt();
+        int numChars = b.getInt();
+        m_offsets = BinaryModel.slice(b, 4 * (m_size + 1)).asIntBuffer();
+        m_hashes = BinaryModel.slice(b, 4 * m_size).asIntBuffer();
+        m_ids = BinaryModel.slice(b, 4 * m_size).asIntBuffer();
+        m_chars = BinaryModel.slice(b, 2 * numChars).asCharBuffer();
+    }
+
+    public static void write(BinaryModel.Writer w, List<String> strings) throws IOException {
+        int n = strings.size();
+        long[] order = new long[n];
+        int numChars = 0;
+        for (int i = 0; i < n; ++i) {
+            order[i] = ((long) strings.get(i).hashCode() << 32) | i;
+            numChars += strings.get(i).length();
+        }
+        Arrays.sort(order);
+
+        w.putInt(n);
+        w.putInt(numChars);
+        int iOffset = 0;
+        w.putInt(iOffset);
+        for (int i = 0; i < n; ++i) {
+            iOffset += strings.get(i).length();
+            w.putInt(iOffset);
+        }
+        for (int i = 0; i < n; ++i) {
+            w.putInt((int) (order[i] >> 32));
+        }
+        for (int i = 0; i < n; ++i) {
+            w.putInt((int) order[i]);
+        }
+        for (int i = 0; i < n; ++i) {
+            String s = strings.get(i);
+            for (int j = 0; j < s.length(); ++j) {
+                w.putChar(s.charAt(j));
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return m_size;
+    }
+
+    @Override
+    public String get(int i) {
+        int iBegin = m_offsets.get(i);
+        char[] cs = new char[m_offsets.get(i + 1) - iBegin];
+        for (int j = 0; j < cs.length; ++j) {
+            cs[j] = m_chars.get(iBegin + j);
+        }
+        return new String(cs);
+    }
+
+    @Override
+    public int indexOf(String s) {
+        int h = s.hashCode();
+        int lo = 0;
+        int hi = m_size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (m_hashes.get(mid) < h) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (; lo < m_size && m_hashes.get(lo) == h; ++lo) {
+            int id = m_ids.get(lo);
+            if (equalsAt(id, s)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    private boolean equalsAt(int id, String s) {
+        int iBegin = m_offsets.get(id);
+        if (m_offsets.get(id + 1) - iBegin != s.length()) {
+            return false;
+        }
+        for (int j = 0; j < s.length(); ++j) {
+            if (m_chars.get(iBegin + j) != s.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
\ No newline at end of file
@@ -29,9 +29,13 @@
  */
 package corbit.commons;
 
+import corbit.commons.io.BinaryModel;
 import corbit.commons.io.Console;
 import corbit.commons.ml.AveragedWeight;
+import corbit.commons.ml.FeatureAtoms;
 import corbit.commons.ml.WeightVector;
+import corbit.commons.util.LongIntMap;
+import corbit.commons.util.MurmurHash;
 import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -41,25 +45,85 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.text.Normalizer;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import org.ardverk.collection.PatriciaTrie;
 import org.ardverk.collection.StringKeyAnalyzer;
 
 public class Vocab {
 
+    /* returned by getKeyed() */
+    public static final int KEY_ABSENT = -1;
+    public static final int KEY_UNRESOLVED = -2;
+
+    private static final int MAX_ABSENT_KEYS = 1 << 22;
+    private static final int MIN_WEIGHT_HEADROOM = 1 << 16;
+
+    /* set on the indices of hashed features whose values are to be negated */
+    public static final int HASH_NEGATED = 1 << 30;
+    public static final int MAX_HASH_BITS = 24;
+    private static final int HASH_SEED = 0x2f6b1a35;
+    private static final int MAX_HASHED_KEYS = 1 << 22;
+
+    private static final int NUM_STRIPES = 64;
+
     Map<String, Integer> m_index;
     List<String> m_rindex;
-    int m_size = 0;
+    final AtomicInteger m_size = new AtomicInteger();
+
+    /*
+     * locks for adding entries once the index is made concurrent; an entry
+     * is added under the lock of its stripe only, so that threads adding
+     * different entries rarely wait for each other
+     */
+    private final Object[] m_stripes;
+
+    /*
+     * entries loaded from a binary model, which are read directly from the
+     * mapped file, or frozen into a PerfectHashTable by freeze(); m_index and
+     * m_rindex then hold only the entries added afterwards, whose indices
+     * start from m_table.size()
+     */
+    StringIndex m_table;
+
+    /*
+     * index from 64-bit template keys (see FeatureTemplate) to the entries;
+     * a negative value -2-n records that the key was absent when the size was n
+     */
+    final LongIntMap m_keyIndex;
+    final FeatureAtoms m_atoms;
+    // true if every entry reachable by a key has been added through its key
+    boolean m_bKeysComplete = true;
+    final AtomicInteger m_numAbsentKeys = new AtomicInteger();
+
+    /*
+     * feature hashing: with m_hashBits > 0, features are hashed straight into
+     * 2^m_hashBits indices and no entries are kept at all
+     */
+    int m_hashBits = 0;
+    int m_hashMask = 0;
+    boolean m_bSignedHash = false;
 
     public Vocab() {
         m_index = new HashMap<>();
         m_rindex = new ArrayList<>();
+        m_keyIndex = new LongIntMap();
+        m_atoms = new FeatureAtoms();
+        m_stripes = new Object[NUM_STRIPES];
+        for (int i = 0; i < NUM_STRIPES; ++i) {
+            m_stripes[i] = new Object();
+        }
     }
 
     public Vocab(String sFile) {
@@ -80,7 +144,59 @@ public class Vocab {
         }
     }
 
+    public Vocab(BinaryModel model, String sSection) throws IOException {
+        this();
+        load(model, sSection);
+    }
+
+    /**
+     * switches an empty vocabulary to feature hashing (the hashing trick), so
+     * that the number of weights is bounded by 2^iBits; with bSigned, the
+     * index of a feature has HASH_NEGATED set if its value is to be negated,
+     * which makes the collisions cancel out on average (Weinberger et al.,
+     * 2009)
+     */
+    public void setHashed(int iBits, boolean bSigned) {
+        if (iBits < 1 || iBits > MAX_HASH_BITS) {
+            throw new IllegalArgumentException("The number of hash bits must be between 1 and " + MAX_HASH_BITS + ": " + iBits);
+        }
+        if (m_hashBits == iBits && m_bSignedHash == bSigned) {
+            return;
+        }
+        if (m_size.get() > 0) {
+            throw new IllegalStateException("Cannot hash the features of a vocabulary with " + m_size.get() + " entries.");
+        }
+        m_hashBits = iBits;
+        m_hashMask = (1 << iBits) - 1;
+        m_bSignedHash = bSigned;
+        m_keyIndex.clear();
+        m_bKeysComplete = false;
+        System.err.println("Features hashed into 2^" + iBits + (bSigned ? " signed" : "") + " weights.");
+    }
+
+    public boolean isHashed() {
+        return m_hashBits > 0;
+    }
+
+    /**
+     * returns the number of weights needed for the features, with room for a
+     * quarter more entries to be added unless the features are hashed
+     */
+    public int weightCapacity() {
+        if (isHashed()) {
+            return m_hashMask + 1;
+        }
+        int n = m_size.get();
+        return n + Math.max(n >> 2, MIN_WEIGHT_HEADROOM);
+    }
+
+    private int hash(String s) {
+        int h = MurmurHash.hash(s.getBytes(StandardCharsets.UTF_8), HASH_SEED);
+        return m_bSignedHash && h < 0 ? (h & m_hashMask) | HASH_NEGATED : h & m_hashMask;
+    }
+
     public Set<String> getKeys() {
+        unpackTable();
         return m_index.keySet();
     }
 
@@ -91,10 +207,12 @@ public class Vocab {
      * @param w
      */
     public void rebuild(AveragedWeight w) {
+        if (isHashed()) {
+            return;
+        }
+        unpackTable();
         Map<String, Integer> oldIndex = m_index;
-        m_index = (m_index instanceof HashMap)
-                ? new HashMap<String, Integer>()
-                : new PatriciaTrie<String, Integer>(StringKeyAnalyzer.INSTANCE);
+        m_index = newIndex();
         m_rindex.clear();
         WeightVector ww = new WeightVector(w);
         WeightVector wa = new WeightVector(w.getAverageWeight());
@@ -104,6 +222,8 @@ public class Vocab {
         waNew.clear();
 
         int iNewSize = 0;
+        int[] mapping = new int[m_size.get()];
+        Arrays.fill(mapping, -1);
 
         for (Entry<String, Integer> e : oldIndex.entrySet()) {
             String sKey = e.getKey();
@@ -115,14 +235,54 @@ public class Vocab {
                 m_rindex.add(sKey);
                 wwNew.put(newidx, ww.get(oldidx));
                 waNew.put(newidx, wa.get(oldidx));
+                mapping[oldidx] = newidx;
             }
         }
-        m_size = iNewSize;
-        assert (m_size == m_index.size());
+        m_size.set(iNewSize);
+        assert (m_size.get() == m_index.size());
+
+        // removed entries become absent, so the keys stay complete if they were
+        m_keyIndex.remap(mapping);
+        m_numAbsentKeys.set(0);
 
         Console.writeLine(String.format("Vocab and AveragedWeight rebuilt: size %d => %d.", oldIndex.size(), m_rindex.size()));
     }
 
+    /**
+     * moves all entries to a PerfectHashTable held outside the heap, which
+     * suits a vocabulary no longer growing, such as that of a loaded model;
+     * entries added afterwards are kept in the in-memory index. A table mapped
+     * from a binary model is left as it is, being outside the heap already.
+     */
+    public void freeze() {
+        if (m_size.get() == 0 || (m_table != null && m_table.size() == m_size.get())) {
+            return;
+        }
+        PerfectHashTable table = new PerfectHashTable(new AbstractList<String>() {
+            @Override
+            public String get(int i) {
+                return Vocab.this.get(i);
+            }
+
+            @Override
+            public int size() {
+                return m_size.get();
+            }
+        });
+        m_table = table;
+        m_index = newIndex();
+        m_rindex = isConcurrent() ? new ChunkedList() : new ArrayList<String>();
+        System.err.println(m_size.get() + " vocabulary entries frozen in " + table.byteSize() + " bytes.");
+    }
+
+    private Map<String, Integer> newIndex() {
+        return (m_index instanceof HashMap)
+                ? new HashMap<String, Integer>()
+                : (m_index instanceof ConcurrentHashMap)
+                ? new ConcurrentHashMap<String, Integer>()
+                : new PatriciaTrie<String, Integer>(StringKeyAnalyzer.INSTANCE);
+    }
+
     public void setUseTrie() {
         if (m_index instanceof HashMap) {
             Console.writeLine("HashMap converted to PatriciaTrie.");
@@ -130,37 +290,181 @@ public class Vocab {
         }
     }
 
+    /**
+     * makes the index safe for lookups concurrent with additions, which are
+     * needed when several threads train on the same vocabulary
+     */
+    public void setConcurrent() {
+        if (!isConcurrent()) {
+            m_index = new ConcurrentHashMap<>(m_index);
+            m_rindex = new ChunkedList(m_rindex);
+        }
+    }
+
+    private boolean isConcurrent() {
+        return m_index instanceof ConcurrentHashMap;
+    }
+
     public void clear() {
         m_index.clear();
         m_rindex.clear();
-        m_size = 0;
+        m_table = null;
+        m_size.set(0);
+        m_keyIndex.clear();
+        m_bKeysComplete = !isHashed();
+        m_numAbsentKeys.set(0);
     }
 
     public boolean contains(String s) {
-        return m_index.containsKey(s);
+        return lookup(s) != null;
     }
 
     public int get(String s) {
-        return m_index.get(s);
+        return lookup(s);
     }
 
     public Integer getBoxed(String s) {
-        return m_index.get(s);
+        return lookup(s);
     }
 
     public String get(int i) {
-        return m_rindex.get(i);
+        if (m_table == null) {
+            return m_rindex.get(i);
+        } else {
+            return i < m_table.size() ? m_table.get(i) : m_rindex.get(i - m_table.size());
+        }
     }
 
     public int getIndex(String s) {
         assert (s != null);
         Integer i;
-        if ((i = m_index.get(s)) != null) {
+        if ((i = lookup(s)) != null) {
             return i.intValue();
+        } else if (isConcurrent()) {
+            return addConcurrent(s);
         } else {
-            m_index.put(s, m_size);
+            return add(s);
+        }
+    }
+
+    private synchronized int add(String s) {
+        Integer i = m_index.get(s);
+        if (i != null) {
+            return i.intValue();
+        }
+        int n = m_size.getAndIncrement();
+        m_index.put(s, n);
+        m_rindex.add(s);
+        return n;
+    }
+
+    /*
+     * the index is reserved and the reverse index is filled in before the
+     * entry is published in m_index, so that a thread finding the entry
+     * there can read its string as well
+     */
+    private int addConcurrent(String s) {
+        int h = s.hashCode();
+        synchronized (m_stripes[(h ^ h >>> 16) & (NUM_STRIPES - 1)]) {
+            Integer i = m_index.get(s);
+            if (i != null) {
+                return i.intValue();
+            }
+            int n = m_size.getAndIncrement();
+            m_rindex.set(m_table == null ? n : n - m_table.size(), s);
+            m_index.put(s, n);
+            return n;
+        }
+    }
+
+    private Integer lookup(String s) {
+        if (m_hashBits > 0) {
+            return hash(s);
+        }
+        if (m_table != null) {
+            int i = m_table.indexOf(s);
+            if (i >= 0) {
+                return i;
+            }
+        }
+        return m_index.get(s);
+    }
+
+    /**
+     * moves the entries of the mapped or frozen table to the in-memory index
+     */
+    private void unpackTable() {
+        if (m_table == null) {
+            return;
+        }
+        List<String> added = new ArrayList<>(m_rindex);
+        m_rindex.clear();
+        for (int i = 0; i < m_table.size(); ++i) {
+            String s = m_table.get(i);
             m_rindex.add(s);
-            return m_size++;
+            m_index.put(s, i);
+        }
+        m_rindex.addAll(added);
+        m_table = null;
+    }
+
+    public FeatureAtoms getAtoms() {
+        return m_atoms;
+    }
+
+    /**
+     * returns the index of the feature with the template key, KEY_ABSENT if the
+     * feature is known to be absent, or KEY_UNRESOLVED if the key has to be
+     * resolved by its string form
+     */
+    public int getKeyed(long key) {
+        int i = m_keyIndex.get(key, KEY_ABSENT);
+        if (i >= 0) {
+            return i;
+        } else if (i == KEY_ABSENT) {
+            return m_bKeysComplete ? KEY_ABSENT : KEY_UNRESOLVED;
+        } else {
+            return -2 - i == m_size.get() ? KEY_ABSENT : KEY_UNRESOLVED;
+        }
+    }
+
+    /**
+     * resolves the key by the string form of the feature without adding it
+     */
+    public int resolveKeyed(long key, String s) {
+        // the size is read before the lookup, so that a feature added meanwhile
+        // leaves the marker stale instead of hiding the feature; concurrent
+        // adds reserve the size before publishing the entry, so absent keys
+        // are not remembered while the vocabulary is concurrent
+        int n = m_size.get();
+        Integer i = lookup(s);
+        if (i != null) {
+            putKey(key, i);
+            return i.intValue();
+        } else {
+            if (!isConcurrent() && m_numAbsentKeys.get() < MAX_ABSENT_KEYS && m_numAbsentKeys.getAndIncrement() < MAX_ABSENT_KEYS) {
+                m_keyIndex.put(key, -2 - n);
+            }
+            return KEY_ABSENT;
+        }
+    }
+
+    /**
+     * adds the feature with the template key and its string form
+     */
+    public int getIndex(long key, String s) {
+        int i = getIndex(s);
+        putKey(key, i);
+        return i;
+    }
+
+    /*
+     * hashed features can always be rendered and hashed again, so the number
+     * of keys remembered for them is bounded
+     */
+    private void putKey(long key, int i) {
+        if (m_hashBits == 0 || m_keyIndex.size() < MAX_HASHED_KEYS) {
+            m_keyIndex.put(key, i);
         }
     }
 
@@ -171,14 +475,31 @@ public class Vocab {
     }
 
     public void save(PrintWriter sw) {
-        int n = m_rindex.size();
+        int n = m_size.get();
         sw.println(n);
         for (int i = 0; i < n; ++i) {
-            sw.println(m_rindex.get(i));
+            sw.println(get(i));
         }
         Console.writeLine(n + " vocabulary entries saved.");
     }
 
+    public void save(BinaryModel.Writer w, String sSection) throws IOException {
+        w.beginSection(sSection);
+        StringTable.write(w, new AbstractList<String>() {
+            @Override
+            public String get(int i) {
+                return Vocab.this.get(i);
+            }
+
+            @Override
+            public int size() {
+                return m_size.get();
+            }
+        });
+        w.endSection();
+        Console.writeLine(m_size.get() + " vocabulary entries saved.");
+    }
+
     public final void load(String sFile) throws IOException {
         try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(sFile), "UTF-8"))) {
             int numWords = 0;
@@ -190,19 +511,102 @@ public class Vocab {
                     m_index.put(fields[0], numWords++);
                 }
             }
-            m_size = numWords;
+            m_size.set(numWords);
         }
-        System.err.println(m_size + " dictionary entries loaded from " + sFile + ".");
+        if (m_size.get() > 0) {
+            m_bKeysComplete = false;
+        }
+        System.err.println(m_size.get() + " dictionary entries loaded from " + sFile + ".");
     }
 
     public final void load(BufferedReader sr) throws NumberFormatException, IOException {
-        m_size = Integer.parseInt(sr.readLine());
-        for (int i = 0; i < m_size; ++i) {
+        int n = Integer.parseInt(sr.readLine());
+        for (int i = 0; i < n; ++i) {
             String s = sr.readLine();
             assert (!m_index.containsKey(s));
             m_rindex.add(s);
             m_index.put(s, i);
         }
-        System.err.println(m_size + " vocabulary entries loaded from the model.");
+        m_size.set(n);
+        if (n > 0) {
+            m_bKeysComplete = false;
+        }
+        System.err.println(n + " vocabulary entries loaded from the model.");
+    }
+
+    public final void load(BinaryModel model, String sSection) throws IOException {
+        m_table = new StringTable(model.getSection(sSection));
+        m_size.set(m_table.size());
+        if (m_size.get() > 0) {
+            m_bKeysComplete = false;
+        }
+        System.err.println(m_size.get() + " vocabulary entries mapped from the model.");
+    }
+
+    /**
+     * A reverse index for concurrent additions, which can be filled in at any
+     * position without locking. The strings are kept in chunks of fixed size,
+     * which are allocated on demand and never moved.
+     */
+    private static final class ChunkedList extends AbstractList<String> {
+
+        private static final int CHUNK_BITS = 14;
+        private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+        private final AtomicReferenceArray<String[]> m_chunks = new AtomicReferenceArray<>(1 << (31 - CHUNK_BITS));
+        private final AtomicInteger m_size = new AtomicInteger();
+
+        ChunkedList() {
+        }
+
+        ChunkedList(List<String> l) {
+            for (String s : l) {
+                add(s);
+            }
+        }
+
+        @Override
+        public String get(int i) {
+            if (i < 0 || i >= m_size.get()) {
+                throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + m_size.get());
+            }
+            return m_chunks.get(i >>> CHUNK_BITS)[i & CHUNK_MASK];
+        }
+
+        /* may be called by several threads for different positions */
+        @Override
+        public String set(int i, String s) {
+            String[] chunk = m_chunks.get(i >>> CHUNK_BITS);
+            if (chunk == null) {
+                chunk = new String[CHUNK_MASK + 1];
+                if (!m_chunks.compareAndSet(i >>> CHUNK_BITS, null, chunk)) {
+                    chunk = m_chunks.get(i >>> CHUNK_BITS);
+                }
+            }
+            String old = chunk[i & CHUNK_MASK];
+            chunk[i & CHUNK_MASK] = s;
+            for (int n = m_size.get(); n <= i && !m_size.compareAndSet(n, i + 1); n = m_size.get()) {
+            }
+            return old;
+        }
+
+        @Override
+        public boolean add(String s) {
+            set(m_size.get(), s);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            for (int i = 0; i < m_chunks.length(); ++i) {
+                m_chunks.set(i, null);
+            }
+            m_size.set(0);
+        }
+
+        @Override
+        public int size() {
+            return m_size.get();
+        }
     }
 }
\ No newline at end of file
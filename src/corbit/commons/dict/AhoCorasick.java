@@ -0,0 +1,174 @@
+/*
+ * Corbit, a text analyzer
+ * 
+ * Copyright (c) 2010-2012, Jun Hatori
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the names of the authors nor the names of its contributors
+ *       may be used to endorse or promote products derived from this
+ *       software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package corbit.commons.dict;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * An Aho-Corasick automaton over a word list, which finds all occurrences of
+ * the words in a text in a single pass.
+ *
+ * A typical use is as follows:
+ *
+ * int s = ac.root();
+ * for (int i = 0; i < text.length(); ++i) {
+ *     s = ac.next(s, text.charAt(i));
+ *     for (int o = ac.firstOutput(s); o != AhoCorasick.NONE; o = ac.nextOutput(o))
+ *         (a word of length ac.getLength(o) ends at i)
+ * }
+ */
+public class AhoCorasick {
+
+    public static final int NONE = -1;
+    // outgoing edges of each node, sorted by label
+    private final char[][] m_labels;
+    private final int[][] m_targets;
+    private final int[] m_fail;
+    // length of the word ending at each node (0 if none)
+    private final int[] m_length;
+    // the nearest node on the failure chain (including the node itself) where a word ends
+    private final int[] m_output;
+
+    public AhoCorasick(Collection<String> words) {
+        List<Map<Character, Integer>> edges = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        edges.add(new TreeMap<Character, Integer>());
+        lengths.add(0);
+        for (String w : words) {
+            if (w.isEmpty()) {
+                continue;
+            }
+            int s = 0;
+            for (int i = 0; i < w.length(); ++i) {
+                Integer t = edges.get(s).get(w.charAt(i));
+                if (t == null) {
+                    t = edges.size();
+                    edges.get(s).put(w.charAt(i), t);
+                    edges.add(new TreeMap<Character, Integer>());
+                    lengths.add(0);
+                }
+                s = t;
+            }
+            lengths.set(s, w.length());
+        }
+
+        int n = edges.size();
+        m_labels = new char[n][];
+        m_targets = new int[n][];
+        m_length = new int[n];
+        for (int s = 0; s < n; ++s) {
+            Map<Character, Integer> m = edges.get(s);
+            m_labels[s] = new char[m.size()];
+            m_targets[s] = new int[m.size()];
+            int i = 0;
+            for (Entry<Character, Integer> e : m.entrySet()) {
+                m_labels[s][i] = e.getKey();
+                m_targets[s][i] = e.getValue();
+                ++i;
+            }
+            m_length[s] = lengths.get(s);
+        }
+
+        // set failure links in the breadth-first order
+        m_fail = new int[n];
+        m_output = new int[n];
+        m_output[0] = NONE;
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        for (int t : m_targets[0]) {
+            queue[tail++] = t;
+        }
+        while (head < tail) {
+            int s = queue[head++];
+            m_output[s] = m_length[s] > 0 ? s : m_output[m_fail[s]];
+            for (int i = 0; i < m_labels[s].length; ++i) {
+                char c = m_labels[s][i];
+                int t = m_targets[s][i];
+                int f = m_fail[s];
+                int g;
+                while ((g = edge(f, c)) == NONE && f != 0) {
+                    f = m_fail[f];
+                }
+                m_fail[t] = g != NONE ? g : 0;
+                queue[tail++] = t;
+            }
+        }
+    }
+
+    public int root() {
+        return 0;
+    }
+
+    /**
+     * Returns the node reached from the node s by reading the character c.
+     */
+    public int next(int s, char c) {
+        while (true) {
+            int t = edge(s, c);
+            if (t != NONE) {
+                return t;
+            } else if (s == 0) {
+                return 0;
+            }
+            s = m_fail[s];
+        }
+    }
+
+    /**
+     * Returns the node of the longest word ending at the node s, or NONE.
+     */
+    public int firstOutput(int s) {
+        return m_output[s];
+    }
+
+    /**
+     * Returns the node of the next shorter word after the output node o, or
+     * NONE.
+     */
+    public int nextOutput(int o) {
+        return m_output[m_fail[o]];
+    }
+
+    public int getLength(int o) {
+        return m_length[o];
+    }
+
+    private int edge(int s, char c) {
+        int i = Arrays.binarySearch(m_labels[s], c);
+        return i >= 0 ? m_targets[s][i] : NONE;
+    }
+}
\ No newline at end of file
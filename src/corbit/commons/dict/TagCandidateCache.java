@@ -0,0 +1,68 @@
+/*
+ * Corbit, a text analyzer
+ * 
+ * Copyright (c) 2010-2012, Jun Hatori
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the names of the authors nor the names of its contributors
+ *       may be used to endorse or promote products derived from this
+ *       software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package corbit.commons.dict;
+
+import corbit.commons.word.UnsegmentedSentence;
+import java.util.Arrays;
+
+/**
+ * Caches the tag candidates of a dictionary for each position of the current
+ * sentence. An instance must not be shared among threads.
+ */
+public class TagCandidateCache {
+
+    private final TagDictionary m_dict;
+    private UnsegmentedSentence m_sent;
+    private String[][] m_candidates = new String[0][];
+
+    public TagCandidateCache(TagDictionary dict) {
+        m_dict = dict;
+    }
+
+    /**
+     * Returns the union of the candidate tags of all words starting at the
+     * given position of the sentence.
+     */
+    public String[] getTagCandidatesForSequence(UnsegmentedSentence sent, int begin) {
+        if (sent != m_sent) {
+            if (m_candidates.length < sent.length() + 1) {
+                m_candidates = new String[sent.length() + 1][];
+            } else {
+                Arrays.fill(m_candidates, null);
+            }
+            m_sent = sent;
+        }
+        String[] ss = m_candidates[begin];
+        if (ss == null) {
+            ss = m_candidates[begin] = m_dict.getTagCandidatesForSequence(sent, begin);
+        }
+        return ss;
+    }
+}
\ No newline at end of file
@@ -30,10 +30,12 @@
 package corbit.commons.dict;
 
 import corbit.commons.io.ParseReader;
+import corbit.commons.util.PullIterator;
 import corbit.commons.util.Statics;
 import corbit.commons.util.StepCounter;
 import corbit.commons.word.IndexWord;
 import corbit.commons.word.ParsedSentence;
+import corbit.commons.word.UnsegmentedSentence;
 import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -42,7 +44,9 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -54,6 +58,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class TagDictionary implements Serializable {
 
@@ -83,6 +88,14 @@ public abstract class TagDictionary implements Serializable {
     // tentative (not saved)
     protected Map<String, Integer> m_frequencies;
     private static final String[] emptyStrArray = new String[0];
+    // double-array trie over the dictionaries with tags as bitsets (null if the tags do not fit in a long)
+    private transient TagTrie m_trie;
+    // bitset of open tags for each word length
+    private transient long[] m_openTagMasks;
+    // tag indices in the natural order of the tag names
+    private transient int[] m_sortedTagIndices;
+    private transient Map<Long, String[]> m_tagsByMask;
+    private transient volatile boolean m_bTrieReady;
 
     // constructor
     protected TagDictionary(
@@ -130,6 +143,7 @@ public abstract class TagDictionary implements Serializable {
         for (int i = 0; i < m_openTagsByLen.length; ++i) {
             Statics.fillArray(m_openTagsByLen[i], null);
         }
+        m_bTrieReady = false;
     }
 
     public boolean isFrequent(String sForm) {
@@ -204,8 +218,20 @@ public abstract class TagDictionary implements Serializable {
     }
 
     public boolean validateTagForSequence(String seq, String tag, int startLength) {
-        for (int i = startLength; i <= Math.min(seq.length(), maxWordLength); ++i) {
-            for (String s : getTagCandidates(seq.substring(0, i))) {
+        return validateTagForSequence(seq, 0, seq.length(), tag, startLength);
+    }
+
+    /**
+     * Returns true if the given tag is a candidate of any prefix of seq[begin,
+     * end) whose length is startLength or more.
+     */
+    public boolean validateTagForSequence(CharSequence seq, int begin, int end, String tag, int startLength) {
+        if (prepareTrie()) {
+            int iTag = getTagIndex(tag);
+            return iTag >= 0 && (getTagMaskForSequence(seq, begin, end, startLength) & (1L << iTag)) != 0;
+        }
+        for (int i = startLength; i <= Math.min(end - begin, maxWordLength); ++i) {
+            for (String s : getTagCandidates(seq.subSequence(begin, begin + i).toString())) {
                 if (tag.equals(s)) {
                     return true;
                 }
@@ -215,13 +241,23 @@ public abstract class TagDictionary implements Serializable {
     }
 
     public String[] getTagCandidatesForSequence(String seq) {
+        return getTagCandidatesForSequence(seq, 0, seq.length());
+    }
+
+    /**
+     * Returns the union of the candidate tags of all prefixes of seq[begin,
+     * end), sorted by the tag names.
+     */
+    public String[] getTagCandidatesForSequence(CharSequence seq, int begin, int end) {
         boolean bLoaded = m_freqTagDict.size() > 0;
         if (!bLoaded) {
             return m_openTagList;
+        } else if (prepareTrie()) {
+            return getTagsOfMask(getTagMaskForSequence(seq, begin, end, 1));
         } else {
             Set<String> tags = new TreeSet<>();
-            for (int i = 1; i <= Math.min(seq.length(), maxWordLength); ++i) {
-                for (String s : getTagCandidates(seq.substring(0, i))) {
+            for (int i = 1; i <= Math.min(end - begin, maxWordLength); ++i) {
+                for (String s : getTagCandidates(seq.subSequence(begin, begin + i).toString())) {
                     if (!tags.contains(s)) {
                         tags.add(s);
                     }
@@ -231,6 +267,122 @@ public abstract class TagDictionary implements Serializable {
         }
     }
 
+    public String[] getTagCandidatesForSequence(UnsegmentedSentence sent, int begin) {
+        return getTagCandidatesForSequence(sent, begin, sent.length());
+    }
+
+    private long getTagMaskForSequence(CharSequence seq, int begin, int end, int startLength) {
+        TagTrie trie = m_trie;
+        int n = Math.min(end - begin, maxWordLength);
+        int s = trie.root();
+        long mask = 0L;
+        for (int i = 1; i <= n; ++i) {
+            if (s != TagTrie.NONE) {
+                s = trie.next(s, seq.charAt(begin + i - 1));
+            }
+            if (i < startLength) {
+                continue;
+            }
+            if (s != TagTrie.NONE && trie.isFrequent(s)) {
+                mask |= trie.getFrequentTags(s);
+            } else {
+                mask |= m_openTagMasks[i - 1];
+                if (s != TagTrie.NONE) {
+                    mask |= trie.getClosedTags(s);
+                }
+            }
+        }
+        return mask;
+    }
+
+    private String[] getTagsOfMask(long mask) {
+        String[] ss = m_tagsByMask.get(mask);
+        if (ss == null) {
+            List<String> ls = new ArrayList<>(Long.bitCount(mask));
+            for (int i : m_sortedTagIndices) {
+                if ((mask & (1L << i)) != 0) {
+                    ls.add(m_tagList[i]);
+                }
+            }
+            ss = ls.toArray(new String[0]);
+            m_tagsByMask.put(mask, ss);
+        }
+        return ss;
+    }
+
+    /**
+     * Builds the trie over the frequent and closed-tag dictionaries if it is
+     * not up to date. Returns false if the tags cannot be held in a bitset.
+     */
+    private boolean prepareTrie() {
+        if (!m_bTrieReady) {
+            synchronized (this) {
+                if (!m_bTrieReady) {
+                    m_trie = buildTrie();
+                    m_bTrieReady = true;
+                }
+            }
+        }
+        return m_trie != null;
+    }
+
+    private TagTrie buildTrie() {
+        if (m_tagList.length > Long.SIZE) {
+            return null;
+        }
+        Map<String, Long> freqTags = new HashMap<>();
+        Map<String, Long> closedTags = new HashMap<>();
+        long[] openTagMasks = new long[maxWordLength];
+        try {
+            for (Entry<String, String[]> e : m_freqTagDict.entrySet()) {
+                freqTags.put(e.getKey(), getTagMask(e.getValue()));
+            }
+            if (m_closedTagSet != null) {
+                for (Entry<String, String[]> e : m_closedTagDict.entrySet()) {
+                    closedTags.put(e.getKey(), getTagMask(e.getValue()));
+                }
+            }
+            for (int i = 0; i < maxWordLength; ++i) {
+                openTagMasks[i] = getTagMask(m_openTagsByLen[i]);
+            }
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        Integer[] order = new Integer[m_tagList.length];
+        for (int i = 0; i < order.length; ++i) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return m_tagList[i1].compareTo(m_tagList[i2]);
+            }
+        });
+        m_sortedTagIndices = new int[order.length];
+        for (int i = 0; i < order.length; ++i) {
+            m_sortedTagIndices[i] = order[i];
+        }
+        m_openTagMasks = openTagMasks;
+        m_tagsByMask = new ConcurrentHashMap<>();
+        return new TagTrie(freqTags, closedTags);
+    }
+
+    private long getTagMask(String[] tags) {
+        long mask = 0L;
+        for (String t : tags) {
+            if (t == null) {
+                continue;
+            }
+            Integer i = m_tagIndex.get(t);
+            if (i == null) {
+                throw new IllegalArgumentException("Unknown POS: " + t);
+            }
+            mask |= 1L << i;
+        }
+        return mask;
+    }
+
     /**
      * Returns the candidate tags for the given word.
      *
@@ -312,6 +464,7 @@ public abstract class TagDictionary implements Serializable {
         for (int i = 0; i < maxWordLength; ++i) {
             m_openTagsByLen[i] = _openTagsByLen.get(i).toArray(new String[0]);
         }
+        m_bTrieReady = false;
     }
 
     public void loadFromFile(String sFile, int iThreshold) 
@@ -412,9 +565,10 @@ public abstract class TagDictionary implements Serializable {
 
         Map<String, Map<String, Integer>> dict = new LinkedHashMap<>();
         StepCounter sc = new StepCounter();
+        PullIterator<ParsedSentence> it = pr.readAhead(ParseReader.READ_AHEAD_BATCH);
 
-        while (pr.hasNext()) {
-            ParsedSentence sent = pr.next();
+        while (it.hasNext()) {
+            ParsedSentence sent = it.next();
             if (sent == null) {
                 continue;
             }
@@ -430,7 +584,7 @@ public abstract class TagDictionary implements Serializable {
             }
             sc.increment();
         }
-        pr.shutdown();
+        it.shutdown();
         try (PrintWriter sw = new PrintWriter(
                 new OutputStreamWriter(
                     new FileOutputStream(sSaveFile), "UTF-8"))) {
@@ -0,0 +1,239 @@
+/*
+ * Corbit, a text analyzer
+ * 
+ * Copyright (c) 2010-2012, Jun Hatori
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the names of the authors nor the names of its contributors
+ *       may be used to endorse or promote products derived from this
+ *       software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package corbit.commons.dict;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeSet;
+
+/**
+ * A double-array trie over the words of a tag dictionary. Each node holds the
+ * tags of the word ending there as a bitset over the tag indices, so that the
+ * tags of all prefixes of a character sequence are found in a single walk.
+ */
+class TagTrie {
+
+    static final int NONE = -1;
+    private static final byte FREQUENT = 1;
+    // dense code of each character (0 if the character never appears)
+    private final char[] m_codes;
+    private int[] m_base;
+    private int[] m_check;
+    private byte[] m_flags;
+    private long[] m_freqTags;
+    private long[] m_closedTags;
+    private int m_firstFree;
+    private int m_size;
+
+    TagTrie(Map<String, Long> freqTags, Map<String, Long> closedTags) {
+        TreeSet<String> words = new TreeSet<>(freqTags.keySet());
+        words.addAll(closedTags.keySet());
+        words.remove("");
+
+        // assign smaller codes to more frequent characters to keep the arrays dense
+        final Map<Character, Integer> counts = new HashMap<>();
+        for (String w : words) {
+            for (int i = 0; i < w.length(); ++i) {
+                Integer n = counts.get(w.charAt(i));
+                counts.put(w.charAt(i), n != null ? n + 1 : 1);
+            }
+        }
+        List<Entry<Character, Integer>> chars = new ArrayList<>(counts.entrySet());
+        Collections.sort(chars, new Comparator<Entry<Character, Integer>>() {
+            @Override
+            public int compare(Entry<Character, Integer> e1, Entry<Character, Integer> e2) {
+                int c = e2.getValue().compareTo(e1.getValue());
+                return c != 0 ? c : e1.getKey().compareTo(e2.getKey());
+            }
+        });
+        m_codes = new char[Character.MAX_VALUE + 1];
+        for (int i = 0; i < chars.size(); ++i) {
+            m_codes[chars.get(i).getKey()] = (char) (i + 1);
+        }
+
+        // sort the words by their code sequences so that siblings are contiguous
+        final int[][] seqs = new int[words.size()][];
+        final String[] keys = words.toArray(new String[0]);
+        Integer[] order = new Integer[keys.length];
+        for (int i = 0; i < keys.length; ++i) {
+            seqs[i] = new int[keys[i].length()];
+            for (int j = 0; j < seqs[i].length; ++j) {
+                seqs[i][j] = m_codes[keys[i].charAt(j)];
+            }
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                int[] a1 = seqs[i1];
+                int[] a2 = seqs[i2];
+                for (int i = 0; i < Math.min(a1.length, a2.length); ++i) {
+                    if (a1[i] != a2[i]) {
+                        return a1[i] < a2[i] ? -1 : 1;
+                    }
+                }
+                return a1.length - a2.length;
+            }
+        });
+        int[][] sortedSeqs = new int[keys.length][];
+        String[] sortedKeys = new String[keys.length];
+        for (int i = 0; i < keys.length; ++i) {
+            sortedSeqs[i] = seqs[order[i]];
+            sortedKeys[i] = keys[order[i]];
+        }
+
+        resize(Math.max(chars.size() + 1, 2 * keys.length));
+        m_check[0] = 0;
+        m_size = 1;
+        m_firstFree = 1;
+        insert(0, sortedSeqs, sortedKeys, 0, keys.length, 0, freqTags, closedTags);
+        resize(m_size);
+    }
+
+    int root() {
+        return 0;
+    }
+
+    /**
+     * Returns the node reached from the node s by the character c, or NONE if
+     * no word continues that way.
+     */
+    int next(int s, char c) {
+        int code = m_codes[c];
+        if (code == 0) {
+            return NONE;
+        }
+        int t = m_base[s] + code;
+        return t < m_check.length && m_check[t] == s ? t : NONE;
+    }
+
+    boolean isFrequent(int s) {
+        return (m_flags[s] & FREQUENT) != 0;
+    }
+
+    long getFrequentTags(int s) {
+        return m_freqTags[s];
+    }
+
+    long getClosedTags(int s) {
+        return m_closedTags[s];
+    }
+
+    private void insert(int s, int[][] seqs, String[] keys, int lo, int hi, int depth,
+            Map<String, Long> freqTags, Map<String, Long> closedTags) {
+        if (lo < hi && seqs[lo].length == depth) {
+            Long lf = freqTags.get(keys[lo]);
+            Long lc = closedTags.get(keys[lo]);
+            if (lf != null) {
+                m_flags[s] |= FREQUENT;
+                m_freqTags[s] = lf;
+            }
+            if (lc != null) {
+                m_closedTags[s] = lc;
+            }
+            ++lo;
+        }
+        if (lo == hi) {
+            return;
+        }
+
+        int[] codes = new int[hi - lo];
+        int n = 0;
+        for (int i = lo; i < hi; ++i) {
+            int c = seqs[i][depth];
+            if (n == 0 || codes[n - 1] != c) {
+                codes[n++] = c;
+            }
+        }
+
+        int b = findBase(codes, n);
+        m_base[s] = b;
+        for (int i = 0; i < n; ++i) {
+            m_check[b + codes[i]] = s;
+            m_size = Math.max(m_size, b + codes[i] + 1);
+        }
+        while (m_check[m_firstFree] != NONE) {
+            ++m_firstFree;
+            if (m_firstFree >= m_check.length) {
+                resize(2 * m_check.length);
+            }
+        }
+
+        int begin = lo;
+        for (int i = lo + 1; i <= hi; ++i) {
+            if (i == hi || seqs[i][depth] != seqs[begin][depth]) {
+                insert(b + seqs[begin][depth], seqs, keys, begin, i, depth + 1, freqTags, closedTags);
+                begin = i;
+            }
+        }
+    }
+
+    private int findBase(int[] codes, int n) {
+        int b = Math.max(m_firstFree - codes[0], 1);
+        for (;; ++b) {
+            if (b + codes[n - 1] >= m_check.length) {
+                resize(2 * (b + codes[n - 1] + 1));
+            }
+            boolean bFree = true;
+            for (int i = 0; i < n && bFree; ++i) {
+                bFree = m_check[b + codes[i]] == NONE;
+            }
+            if (bFree) {
+                return b;
+            }
+        }
+    }
+
+    private void resize(int iSize) {
+        int iOld = m_check != null ? m_check.length : 0;
+        if (iOld == 0) {
+            m_base = new int[iSize];
+            m_check = new int[iSize];
+            m_flags = new byte[iSize];
+            m_freqTags = new long[iSize];
+            m_closedTags = new long[iSize];
+        } else {
+            m_base = Arrays.copyOf(m_base, iSize);
+            m_check = Arrays.copyOf(m_check, iSize);
+            m_flags = Arrays.copyOf(m_flags, iSize);
+            m_freqTags = Arrays.copyOf(m_freqTags, iSize);
+            m_closedTags = Arrays.copyOf(m_closedTags, iSize);
+        }
+        if (iSize > iOld) {
+            Arrays.fill(m_check, iOld, iSize, NONE);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,339 @@
+/*
+ * Corbit, a text analyzer
+ * 
+ * Copyright (c) 2010-2012, Jun Hatori
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the names of the authors nor the names of its contributors
+ *       may be used to endorse or promote products derived from this
+ *       software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package corbit.commons.io;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A versioned binary model file consisting of named sections, each of which
+ * is memory-mapped on loading so that the model can be used without parsing
+ * and the pages can be shared among processes.
+ *
+ * The layout is as follows (little endian):
+ *
+ * magic "CORBITBM" (8 bytes), version (int), number of sections (int),
+ * section table of MAX_SECTIONS entries: name (8 bytes in ASCII), offset
+ * (long), length (long), followed by the sections aligned to 8 bytes.
+ */
+public class BinaryModel {
+
+    public static final int VERSION = 2;
+    public static final int MAX_SECTIONS = 64;
+    private static final byte[] MAGIC = {'C', 'O', 'R', 'B', 'I', 'T', 'B', 'M'};
+    private static final int NAME_LENGTH = 8;
+    private static final int ENTRY_SIZE = NAME_LENGTH + 16;
+    private static final int HEADER_SIZE = MAGIC.length + 8 + MAX_SECTIONS * ENTRY_SIZE;
+    private final Map<String, ByteBuffer> m_sections;
+    private final int m_version;
+
+    public BinaryModel(String sFile) throws IOException {
+        m_sections = new LinkedHashMap<>();
+        try (RandomAccessFile f = new RandomAccessFile(sFile, "r");
+                FileChannel fc = f.getChannel()) {
+            if (fc.size() < HEADER_SIZE) {
+                throw new IOException("Not a binary model: " + sFile);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (fc.read(header) < 0) {
+                    throw new IOException("Unexpected end of file: " + sFile);
+                }
+            }
+            header.flip();
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a binary model: " + sFile);
+            }
+            m_version = header.getInt();
+            if (m_version != VERSION) {
+                throw new IOException("Unsupported model version " + m_version + " (expected " + VERSION + "): " + sFile);
+            }
+            int n = header.getInt();
+            for (int i = 0; i < n; ++i) {
+                String sName = readName(header);
+                long lOffset = header.getLong();
+                long lLength = header.getLong();
+                if (lOffset + lLength > fc.size() || lLength > Integer.MAX_VALUE) {
+                    throw new IOException("Broken section " + sName + ": " + sFile);
+                }
+                m_sections.put(sName, fc.map(FileChannel.MapMode.READ_ONLY, lOffset, lLength));
+            }
+        }
+    }
+
+    /**
+     * Returns true if the file starts with the magic number of binary models.
+     */
+    public static boolean isBinaryModel(String sFile) throws IOException {
+        if (new File(sFile).length() < HEADER_SIZE) {
+            return false;
+        }
+        try (FileInputStream is = new FileInputStream(sFile)) {
+            byte[] magic = new byte[MAGIC.length];
+            int n = 0;
+            while (n < magic.length) {
+                int r = is.read(magic, n, magic.length - n);
+                if (r < 0) {
+                    return false;
+                }
+                n += r;
+            }
+            return Arrays.equals(magic, MAGIC);
+        }
+    }
+
+    public int getVersion() {
+        return m_version;
+    }
+
+    public Set<String> getSectionNames() {
+        return m_sections.keySet();
+    }
+
+    public boolean hasSection(String sName) {
+        return m_sections.containsKey(sName);
+    }
+
+    /**
+     * Returns a little-endian buffer positioned at the beginning of the
+     * section.
+     */
+    public ByteBuffer getSection(String sName) throws IOException {
+        ByteBuffer b = m_sections.get(sName);
+        if (b == null) {
+            throw new IOException("Section " + sName + " not found in the model.");
+        }
+        return b.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns a reader of a section written by Writer.putText.
+     */
+    public BufferedReader getTextSection(String sName) throws IOException {
+        ByteBuffer b = getSection(sName);
+        byte[] bytes = new byte[b.remaining()];
+        b.get(bytes);
+        return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes), "UTF-8"));
+    }
+
+    /**
+     * Returns a little-endian view of the next iLength bytes of the buffer and
+     * advances the buffer past them.
+     */
+    public static ByteBuffer slice(ByteBuffer b, int iLength) {
+        ByteBuffer s = b.duplicate();
+        s.limit(s.position() + iLength);
+        b.position(b.position() + iLength);
+        return s.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Skips the padding written by Writer.align.
+     */
+    public static void align(ByteBuffer b) {
+        b.position((b.position() + 7) & ~7);
+    }
+
+    private static String readName(ByteBuffer b) {
+        byte[] name = new byte[NAME_LENGTH];
+        b.get(name);
+        int n = 0;
+        while (n < name.length && name[n] != 0) {
+            ++n;
+        }
+        return new String(name, 0, n, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Writes a binary model section by section. Values of a section are
+     * buffered and appended to the file; the header is written on close.
+     */
+    public static class Writer implements Closeable {
+
+        private final RandomAccessFile m_file;
+        private final FileChannel m_channel;
+        private final ByteBuffer m_buffer;
+        private final List<String> m_names;
+        private final List<long[]> m_entries;
+        private long m_position;
+        private long m_sectionStart = -1;
+
+        public Writer(String sFile) throws IOException {
+            this(new File(sFile));
+        }
+
+        public Writer(File file) throws IOException {
+            m_file = new RandomAccessFile(file, "rw");
+            m_file.setLength(0);
+            m_channel = m_file.getChannel();
+            m_buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            m_names = new ArrayList<>();
+            m_entries = new ArrayList<>();
+            m_position = HEADER_SIZE;
+            m_channel.position(HEADER_SIZE);
+        }
+
+        public void beginSection(String sName) {
+            if (m_sectionStart >= 0) {
+                throw new IllegalStateException("Section " + m_names.get(m_names.size() - 1) + " is not ended.");
+            }
+            if (sName.length() > NAME_LENGTH || m_names.contains(sName)) {
+                throw new IllegalArgumentException("Invalid section name: " + sName);
+            }
+            if (m_names.size() >= MAX_SECTIONS) {
+                throw new IllegalStateException("Too many sections.");
+            }
+            m_names.add(sName);
+            m_sectionStart = m_position;
+        }
+
+        public void endSection() throws IOException {
+            if (m_sectionStart < 0) {
+                throw new IllegalStateException("No section has begun.");
+            }
+            m_entries.add(new long[]{m_sectionStart, m_position - m_sectionStart});
+            m_sectionStart = -1;
+            align();
+        }
+
+        /**
+         * Writes a section holding the text in UTF-8.
+         */
+        public void putText(String sName, String sText) throws IOException {
+            beginSection(sName);
+            putBytes(sText.getBytes("UTF-8"));
+            endSection();
+        }
+
+        public void putInt(int i) throws IOException {
+            reserve(4);
+            m_buffer.putInt(i);
+            m_position += 4;
+        }
+
+        public void putLong(long l) throws IOException {
+            reserve(8);
+            m_buffer.putLong(l);
+            m_position += 8;
+        }
+
+        public void putDouble(double d) throws IOException {
+            reserve(8);
+            m_buffer.putDouble(d);
+            m_position += 8;
+        }
+
+        public void putChar(char c) throws IOException {
+            reserve(2);
+            m_buffer.putChar(c);
+            m_position += 2;
+        }
+
+        public void putBytes(byte[] bytes) throws IOException {
+            for (int i = 0; i < bytes.length;) {
+                reserve(1);
+                int n = Math.min(m_buffer.remaining(), bytes.length - i);
+                m_buffer.put(bytes, i, n);
+                i += n;
+                m_position += n;
+            }
+        }
+
+        /**
+         * Pads the output to a multiple of 8 bytes.
+         */
+        public void align() throws IOException {
+            while ((m_position & 7) != 0) {
+                reserve(1);
+                m_buffer.put((byte) 0);
+                ++m_position;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (m_sectionStart >= 0) {
+                    throw new IllegalStateException("Section " + m_names.get(m_names.size() - 1) + " is not ended.");
+                }
+                flush();
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.put(MAGIC);
+                header.putInt(VERSION);
+                header.putInt(m_names.size());
+                for (int i = 0; i < m_names.size(); ++i) {
+                    byte[] name = Arrays.copyOf(m_names.get(i).getBytes(StandardCharsets.US_ASCII), NAME_LENGTH);
+                    header.put(name);
+                    header.putLong(m_entries.get(i)[0]);
+                    header.putLong(m_entries.get(i)[1]);
+                }
+                header.rewind();
+                m_channel.position(0);
+                while (header.hasRemaining()) {
+                    m_channel.write(header);
+                }
+            } finally {
+                m_file.close();
+            }
+        }
+
+        private void reserve(int n) throws IOException {
+            if (m_buffer.remaining() < n) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            m_buffer.flip();
+            while (m_buffer.hasRemaining()) {
+                m_channel.write(m_buffer);
+            }
+            m_buffer.clear();
+        }
+    }
+}
\ No newline at end of file
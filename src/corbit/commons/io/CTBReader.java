@@ -30,15 +30,12 @@
 package corbit.commons.io;
 
 import corbit.commons.dict.TagDictionary;
-import corbit.commons.util.Statics;
 import corbit.commons.word.ArcLabel;
 import corbit.commons.word.ParsedSentence;
 import corbit.commons.word.SentenceBuilder;
-import java.text.Normalizer;
 import java.util.Arrays;
+import java.util.Set;
 import java.util.TreeSet;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class CTBReader extends ParseReader {
 
@@ -46,56 +43,92 @@ public class CTBReader extends ParseReader {
         super(sFile, dict.generateTagSet(), new TreeSet<>(Arrays.asList(dict.getArcLabels())));
     }
 
+    /**
+     * reads the sentences in src, such as a chunk of a MappedCorpus
+     */
+    public CTBReader(LineSource src, Set<String> setPos, Set<String> setLabel) {
+        super(null, setPos, setLabel);
+        m_corpus = src;
+    }
+
+    private final LineScanner m_scanner = new LineScanner();
+
     public ParsedSentence readFromString(String l) {
-        String[] ss = l.split(" ");
+        m_scanner.reset(l);
+        return readFromScanner();
+    }
+
+    /**
+     * reads the tokens "index:(head)_(form)_(tag)" with an optional "_(label)"
+     * separated by single spaces, in the same way as the regular expression
+     * (.*?):\((.*?)\)_\((.*?)\)_\((.*?)\)(?:_\((.*?)\))? for each token
+     */
+    private ParsedSentence readFromScanner() {
+        LineScanner ls = m_scanner;
         SentenceBuilder sb = new SentenceBuilder(m_posSet, m_labelSet);
 
-        for (int i = 0; i < ss.length; ++i) {
-            Pattern re = Pattern.compile("(.*?):\\((.*?)\\)_\\((.*?)\\)_\\((.*?)\\)(?:_\\((.*?)\\))?");
-            Matcher mc = re.matcher(ss[i]);
+        for (int iBegin = ls.begin(); iBegin <= ls.end();) {
+            int iEnd = ls.indexOf(' ', iBegin, ls.end());
+            if (iEnd < 0) {
+                iEnd = ls.end();
+            }
 
-            if (!mc.matches() || mc.groupCount() < 4) {
+            int p1 = ls.indexOf(":(", iBegin, iEnd);
+            int p2 = p1 < 0 ? -1 : ls.indexOf(")_(", p1 + 2, iEnd);
+            int p3 = p2 < 0 ? -1 : ls.indexOf(")_(", p2 + 3, iEnd);
+            if (p3 < 0 || ls.charAt(iEnd - 1) != ')') {
                 return null;
             }
+            int p4 = p3 + 3;
+            while (ls.charAt(p4) != ')' || (p4 < iEnd - 1 && !ls.startsWith("_(", p4 + 1))) {
+                ++p4;
+            }
 
-            int iIndex = Integer.parseInt(mc.group(1));
-            int iHead = Integer.parseInt(mc.group(2));
-            String sForm = Normalizer.normalize(mc.group(3), Normalizer.Form.NFKC);
-            String sPos = mc.group(4);
-            String sLabel = mc.groupCount() == 5 ? mc.group(5) : null;
-            ArcLabel label = sLabel != null ? ArcLabel.getLabel(sLabel) : null;
+            int iIndex = ls.parseInt(iBegin, p1);
+            int iHead = ls.parseInt(p1 + 2, p2);
+            String sForm = ls.normalized(p2 + 3, p3);
+            String sPos = ls.intern(p3 + 3, p4);
+            ArcLabel label = p4 < iEnd - 1 ? ArcLabel.getLabel(ls.intern(p4 + 3, iEnd - 1)) : null;
             sb.addWord(iIndex, sForm, sPos, iHead, label);
+
+            iBegin = iEnd + 1;
         }
 
         return sb.compile();
     }
 
-    @Override
-    protected void iterate() 
-            throws InterruptedException {
-        int iSentence = 0;
-        FileEnum fe = new FileEnum(m_sFile);
+    private LineSource m_corpus = null;
+    private int m_iSentence = 0;
 
+    @Override
+    protected ParsedSentence computeNext() {
         try {
-            for (String l : fe) {
-                l = Statics.trimSpecial(l);
-                if (l.length() == 0) {
+            if (m_corpus == null) {
+                m_corpus = new MappedCorpus(m_sFile);
+            }
+            while (m_corpus.readLine(m_scanner)) {
+                if (m_scanner.isEmpty()) {
                     continue;
                 }
-                ParsedSentence sent = readFromString(l);
-                ++iSentence;
+                ParsedSentence sent = readFromScanner();
+                ++m_iSentence;
 
                 if (sent == null) {
-                    System.err.println(String.format("Error found at line %d. Skipping.", iSentence));
-                    yieldBreak();
-                } else {
-                    yieldReturn(sent);
+                    System.err.println(String.format("Error found at line %d. Skipping.", m_iSentence));
+                    break;
                 }
+                return sent;
             }
         } catch (Exception e) {
             e.printStackTrace();
-        } finally {
-            fe.shutdown();
+        }
+        return endOfData();
+    }
+
+    @Override
+    protected void close() {
+        if (m_corpus != null) {
+            m_corpus.close();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,261 @@
+/*
+ * Corbit, a text analyzer
+ * 
+ * Copyright (c) 2010-2012, Jun Hatori
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the names of the authors nor the names of its contributors
+ *       may be used to endorse or promote products derived from this
+ *       software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package corbit.commons.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A corpus compiled into a binary model file by Writer, which can be loaded
+ * without parsing the text of a treebank. The forms, lemmas, tags and arc
+ * labels are replaced with IDs in string tables, so a sentence is read by a
+ * few direct reads of the memory-mapped buffers.
+ *
+ * The sections are as follows (little endian):
+ *
+ * CORPUS: version, number of sentences, number of words (int each);
+ * FORMS, LEMMAS, TAGS, LABELS: number of strings (int), followed by the
+ * length (int) and the UTF-8 bytes of each string;
+ * SENTS: the index of the first word of each sentence followed by the
+ * number of words (int each);
+ * WORDS: form, lemma, tag and label IDs (-1 for null) and head (int each)
+ * of each word.
+ */
+public class CompiledCorpus {
+
+    public static final int VERSION = 1;
+    private static final String CORPUS = "CORPUS";
+    private static final String FORMS = "FORMS";
+    private static final String LEMMAS = "LEMMAS";
+    private static final String TAGS = "TAGS";
+    private static final String LABELS = "LABELS";
+    private static final String SENTS = "SENTS";
+    private static final String WORDS = "WORDS";
+    private static final int WORD_SIZE = 5;
+    private final int m_iSentences;
+    private final int m_iWords;
+    private final String[] m_forms;
+    private final String[] m_lemmas;
+    private final String[] m_tags;
+    private final String[] m_labels;
+    private final IntBuffer m_sents;
+    private final IntBuffer m_words;
+
+    public CompiledCorpus(String sFile) throws IOException {
+        BinaryModel model = new BinaryModel(sFile);
+        if (!model.hasSection(CORPUS)) {
+            throw new IOException("Not a compiled corpus: " + sFile);
+        }
+        ByteBuffer header = model.getSection(CORPUS);
+        int iVersion = header.getInt();
+        if (iVersion > VERSION) {
+            throw new IOException("Unsupported corpus version " + iVersion + " (supported up to " + VERSION + "): " + sFile);
+        }
+        m_iSentences = header.getInt();
+        m_iWords = header.getInt();
+        m_forms = readStrings(model.getSection(FORMS));
+        m_lemmas = readStrings(model.getSection(LEMMAS));
+        m_tags = readStrings(model.getSection(TAGS));
+        m_labels = readStrings(model.getSection(LABELS));
+        m_sents = model.getSection(SENTS).asIntBuffer();
+        m_words = model.getSection(WORDS).asIntBuffer();
+        if (m_sents.limit() < m_iSentences + 1 || m_words.limit() < m_iWords * WORD_SIZE) {
+            throw new IOException("Broken corpus: " + sFile);
+        }
+    }
+
+    /**
+     * Returns true if the file is a binary model holding a compiled corpus.
+     */
+    public static boolean isCompiledCorpus(String sFile) throws IOException {
+        return BinaryModel.isBinaryModel(sFile) && new BinaryModel(sFile).hasSection(CORPUS);
+    }
+
+    private static String[] readStrings(ByteBuffer b) {
+        String[] ss = new String[b.getInt()];
+        byte[] bytes = new byte[64];
+        for (int i = 0; i < ss.length; ++i) {
+            int n = b.getInt();
+            if (bytes.length < n) {
+                bytes = new byte[Math.max(n, bytes.length * 2)];
+            }
+            b.get(bytes, 0, n);
+            ss[i] = new String(bytes, 0, n, StandardCharsets.UTF_8);
+        }
+        return ss;
+    }
+
+    public int size() {
+        return m_iSentences;
+    }
+
+    /**
+     * returns the index of the first word of the iSent-th sentence
+     */
+    public int begin(int iSent) {
+        return m_sents.get(iSent);
+    }
+
+    /**
+     * returns the index following the last word of the iSent-th sentence
+     */
+    public int end(int iSent) {
+        return m_sents.get(iSent + 1);
+    }
+
+    public String form(int iWord) {
+        return get(m_forms, m_words.get(iWord * WORD_SIZE));
+    }
+
+    public String lemma(int iWord) {
+        return get(m_lemmas, m_words.get(iWord * WORD_SIZE + 1));
+    }
+
+    public String tag(int iWord) {
+        return get(m_tags, m_words.get(iWord * WORD_SIZE + 2));
+    }
+
+    public String label(int iWord) {
+        return get(m_labels, m_words.get(iWord * WORD_SIZE + 3));
+    }
+
+    /**
+     * returns the head of the word as an index in its sentence, or -1 for
+     * the root
+     */
+    public int head(int iWord) {
+        return m_words.get(iWord * WORD_SIZE + 4);
+    }
+
+    private static String get(String[] ss, int id) {
+        return id < 0 ? null : ss[id];
+    }
+
+    /**
+     * Writes a compiled corpus word by word. The words are appended to the
+     * file as they are added, and the string tables are written on close.
+     */
+    public static class Writer implements Closeable {
+
+        private final BinaryModel.Writer m_writer;
+        private final StringTable m_forms = new StringTable();
+        private final StringTable m_lemmas = new StringTable();
+        private final StringTable m_tags = new StringTable();
+        private final StringTable m_labels = new StringTable();
+        private int[] m_sents = new int[1024];
+        private int m_iSentences = 0;
+        private int m_iWords = 0;
+
+        public Writer(String sFile) throws IOException {
+            m_writer = new BinaryModel.Writer(sFile);
+            m_writer.beginSection(WORDS);
+        }
+
+        public void addWord(String sForm, String sLemma, String sTag, String sLabel, int iHead) throws IOException {
+            m_writer.putInt(m_forms.id(sForm));
+            m_writer.putInt(m_lemmas.id(sLemma));
+            m_writer.putInt(m_tags.id(sTag));
+            m_writer.putInt(m_labels.id(sLabel));
+            m_writer.putInt(iHead);
+            ++m_iWords;
+        }
+
+        /**
+         * ends the sentence made of the words added since the last call
+         */
+        public void endSentence() {
+            if (m_iSentences + 2 > m_sents.length) {
+                m_sents = Arrays.copyOf(m_sents, m_sents.length * 2);
+            }
+            m_sents[++m_iSentences] = m_iWords;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                m_writer.endSection();
+                m_writer.beginSection(SENTS);
+                for (int i = 0; i <= m_iSentences; ++i) {
+                    m_writer.putInt(m_sents[i]);
+                }
+                m_writer.endSection();
+                putStrings(FORMS, m_forms);
+                putStrings(LEMMAS, m_lemmas);
+                putStrings(TAGS, m_tags);
+                putStrings(LABELS, m_labels);
+                m_writer.beginSection(CORPUS);
+                m_writer.putInt(VERSION);
+                m_writer.putInt(m_iSentences);
+                m_writer.putInt(m_iWords);
+                m_writer.endSection();
+            } finally {
+                m_writer.close();
+            }
+        }
+
+        private void putStrings(String sName, StringTable table) throws IOException {
+            m_writer.beginSection(sName);
+            m_writer.putInt(table.strings.size());
+            for (String s : table.strings) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                m_writer.putInt(bytes.length);
+                m_writer.putBytes(bytes);
+            }
+            m_writer.endSection();
+        }
+    }
+
+    private static class StringTable {
+
+        final Map<String, Integer> ids = new HashMap<>();
+        final List<String> strings = new ArrayList<>();
+
+        int id(String s) {
+            if (s == null) {
+                return -1;
+            }
+            Integer id = ids.get(s);
+            if (id == null) {
+                id = strings.size();
+                ids.put(s, id);
+                strings.add(s);
+            }
+            return id;
+        }
+    }
+}
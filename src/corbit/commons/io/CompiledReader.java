@@ -0,0 +1,92 @@
+/*
+ * Corbit, a text analyzer
+ * 
+ * Copyright (c) 2010-2012, Jun Hatori
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the names of the authors nor the names of its contributors
+ *       may be used to endorse or promote products derived from this
+ *       software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package corbit.commons.io;
+
+import corbit.commons.word.ArcLabel;
+import corbit.commons.word.IndexWord;
+import corbit.commons.word.ParsedSentence;
+import corbit.commons.word.SentenceBuilder;
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Reads the sentences of a CompiledCorpus, which are built by SentenceBuilder
+ * with the tag and label sets in the same way as those of a text corpus.
+ */
+public class CompiledReader extends ParseReader {
+
+    private final CompiledCorpus m_corpus;
+    private int m_iSentence = 0;
+
+    public CompiledReader(CompiledCorpus corpus, Set<String> setPos, Set<String> setLabel) {
+        super(null, setPos, setLabel);
+        m_corpus = corpus;
+    }
+
+    @Override
+    protected ParsedSentence computeNext() {
+        if (m_iSentence >= m_corpus.size()) {
+            return endOfData();
+        }
+        int iBegin = m_corpus.begin(m_iSentence);
+        int iEnd = m_corpus.end(m_iSentence);
+        ++m_iSentence;
+
+        SentenceBuilder sb = new SentenceBuilder(m_posSet, m_labelSet);
+        for (int i = iBegin; i < iEnd; ++i) {
+            String sLabel = m_corpus.label(i);
+            ArcLabel label = sLabel != null ? ArcLabel.getLabel(sLabel) : null;
+            sb.addWord(i - iBegin, m_corpus.form(i), m_corpus.tag(i), m_corpus.head(i), label);
+        }
+        return sb.compile();
+    }
+
+    /**
+     * writes the sentences of pr into a compiled corpus; pr should be
+     * created without the tag and label sets so that the tags are kept as
+     * they are in the text
+     */
+    public static void compile(ParseReader pr, String sOutFile) 
+            throws IOException {
+        try (CompiledCorpus.Writer w = new CompiledCorpus.Writer(sOutFile)) {
+            for (ParsedSentence s : pr) {
+                if (s == null) {
+                    continue;
+                }
+                for (IndexWord dw : s) {
+                    w.addWord(dw.form, null, dw.tag, dw.arclabel != null ? dw.arclabel.toString() : null, dw.head);
+                }
+                w.endSentence();
+            }
+        } finally {
+            pr.shutdown();
+        }
+    }
+}
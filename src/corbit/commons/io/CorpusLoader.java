@@ -0,0 +1,143 @@
+/*
+ * Corbit, a text analyzer
+ * 
+ * Copyright (c) 2010-2012, Jun Hatori
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the names of the authors nor the names of its contributors
+ *       may be used to endorse or promote products derived from this
+ *       software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package corbit.commons.io;
+
+import corbit.commons.util.PullIterator;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Loads all the sentences of a corpus into a list. The file is split into
+ * chunks at sentence boundaries, each of which is read by its own reader on
+ * a fork-join pool, and the sentences are returned in the order of the file.
+ *
+ * Sentences taking one line each are split at line starts, and those
+ * separated by blank lines after blank lines. Since every reader starts at a
+ * chunk, the line numbers in its error messages count from the chunk start.
+ */
+public class CorpusLoader<T> {
+
+    public interface ReaderFactory<T> {
+
+        /**
+         * Returns a reader of the sentences in src.
+         */
+        PullIterator<T> open(LineSource src);
+    }
+    public static final long CHUNK_SIZE = 1L << 20;
+    private final ReaderFactory<T> m_factory;
+    private final boolean m_bBlankLines;
+    private final int m_iParallel;
+
+    /**
+     * @param factory creates the reader of each chunk
+     * @param bBlankLines whether sentences are separated by blank lines
+     * @param iParallel the number of threads; the file is read sequentially
+     * with one
+     */
+    public CorpusLoader(ReaderFactory<T> factory, boolean bBlankLines, int iParallel) {
+        m_factory = factory;
+        m_bBlankLines = bBlankLines;
+        m_iParallel = iParallel;
+    }
+
+    /**
+     * returns the sentences of the file except null ones
+     */
+    public List<T> load(String sFile) throws IOException {
+        try (MappedCorpus corpus = new MappedCorpus(sFile)) {
+            if (m_iParallel <= 1) {
+                return read(corpus);
+            }
+            List<MappedCorpus.Chunk> chunks = m_bBlankLines
+                    ? corpus.splitAtBlankLines(CHUNK_SIZE)
+                    : corpus.split(CHUNK_SIZE);
+            if (chunks.isEmpty()) {
+                return new ArrayList<>();
+            }
+            ForkJoinPool pool = new ForkJoinPool(m_iParallel);
+            try {
+                return pool.invoke(new LoadTask(chunks, 0, chunks.size()));
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private List<T> read(LineSource src) {
+        List<T> l = new ArrayList<>();
+        PullIterator<T> reader = m_factory.open(src);
+        try {
+            for (T s : reader) {
+                if (s != null) {
+                    l.add(s);
+                }
+            }
+        } finally {
+            reader.shutdown();
+        }
+        return l;
+    }
+
+    /**
+     * reads the chunks [iBegin, iEnd) by halving the range until one chunk is
+     * left
+     */
+    private class LoadTask extends RecursiveTask<List<T>> {
+
+        private static final long serialVersionUID = 1L;
+        private final List<MappedCorpus.Chunk> m_chunks;
+        private final int m_iBegin;
+        private final int m_iEnd;
+
+        LoadTask(List<MappedCorpus.Chunk> chunks, int iBegin, int iEnd) {
+            m_chunks = chunks;
+            m_iBegin = iBegin;
+            m_iEnd = iEnd;
+        }
+
+        @Override
+        protected List<T> compute() {
+            if (m_iEnd - m_iBegin == 1) {
+                return read(m_chunks.get(m_iBegin));
+            }
+            int iMid = (m_iBegin + m_iEnd) >>> 1;
+            LoadTask left = new LoadTask(m_chunks, m_iBegin, iMid);
+            left.fork();
+            List<T> lRight = new LoadTask(m_chunks, iMid, m_iEnd).compute();
+            List<T> l = left.join();
+            l.addAll(lRight);
+            return l;
+        }
+    }
+}
@@ -29,43 +29,44 @@
  */
 package corbit.commons.io;
 
-import corbit.commons.util.Generator;
+import corbit.commons.util.PullIterator;
 import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 
-public class FileEnum extends Generator<String> {
+public class FileEnum extends PullIterator<String> {
 
     String sFile = null;
+    private BufferedReader br = null;
 
     public FileEnum(String s) {
         sFile = s;
     }
 
     @Override
-    protected void iterate() throws InterruptedException {
-        BufferedReader br = null;
+    protected String computeNext() {
         try {
-            br = new BufferedReader(new InputStreamReader(
-                    new FileInputStream(sFile), "UTF-8"));
-            String s;
-
-            while ((s = br.readLine()) != null) {
-                yieldReturn(s);
+            if (br == null) {
+                br = new BufferedReader(new InputStreamReader(
+                        new FileInputStream(sFile), "UTF-8"));
             }
+            String s = br.readLine();
+            return s != null ? s : endOfData();
         } catch (IOException e) {
             e.printStackTrace();
-        } finally {
-            try {
-                if (br != null) {
-                    br.close();
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            } finally {
-                shutdown();
+            return endOfData();
+        }
+    }
+
+    @Override
+    protected void close() {
+        try {
+            if (br != null) {
+                br.close();
             }
+        } catch (IOException e) {
+            e.printStackTrace();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,317 @@
+/*
+ * Corbit, a text analyzer
+ * 
+ * Copyright (c) 2010-2012, Jun Hatori
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the names of the authors nor the names of its contributors
+ *       may be used to endorse or promote products derived from this
+ *       software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package corbit.commons.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Processes a stream of lines in three stages: the calling thread reads the
+ * lines and hands them to a pool of workers, and a writer thread prints the
+ * outputs to the Console in the order of the input.
+ *
+ * The stages are joined by a bounded queue of pending outputs, so the reader
+ * blocks when the workers or the writer fall behind and the memory use does
+ * not grow with the length of the input.
+ *
+ * If the processing of a line fails, the outputs of the preceding lines are
+ * printed, the remaining lines are cancelled and run() throws the failure, so
+ * that the output never skips a line silently.
+ *
+ * The lines of a MappedCorpus are instead split into chunks, each of which is
+ * read and processed by one worker, so that the calling thread only hands
+ * out the chunks and the lines are decoded in parallel without a String each.
+ */
+public class LinePipeline {
+
+    public interface Processor {
+
+        /**
+         * Returns the output for a line of input without the last line break,
+         * or null to print nothing.
+         */
+        String process(String sLine) throws Exception;
+    }
+
+    public interface ScannerProcessor {
+
+        /**
+         * Returns the output for the line read into ls, which keeps the line
+         * only until the method returns, or null to print nothing.
+         */
+        String process(LineScanner ls) throws Exception;
+    }
+    private final Processor m_proc;
+    private final ScannerProcessor m_scannerProc;
+    private final int m_iWorkers;
+    private final int m_iQueueSize;
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+    // interval of checking whether the writer is alive while the queue is full
+    private static final long OFFER_WAIT_MILLIS = 100;
+    private static final Future<String> END = new FutureTask<String>(new Runnable() {
+        @Override
+        public void run() {
+        }
+    }, null);
+
+    /**
+     * @param iWorkers number of threads processing lines
+     * @param iQueueSize maximum number of lines being processed or waiting to be printed
+     */
+    public LinePipeline(Processor proc, int iWorkers, int iQueueSize) {
+        this(proc, null, iWorkers, iQueueSize);
+    }
+
+    /**
+     * @param iWorkers number of threads processing chunks
+     * @param iQueueSize maximum number of chunks being processed or waiting to be printed
+     */
+    public LinePipeline(ScannerProcessor proc, int iWorkers, int iQueueSize) {
+        this(null, proc, iWorkers, iQueueSize);
+    }
+
+    private LinePipeline(Processor proc, ScannerProcessor scannerProc, int iWorkers, int iQueueSize) {
+        if (iWorkers < 1 || iQueueSize < 1) {
+            throw new IllegalArgumentException("The number of workers and the queue size must be positive.");
+        }
+        m_proc = proc;
+        m_scannerProc = scannerProc;
+        m_iWorkers = iWorkers;
+        m_iQueueSize = iQueueSize;
+    }
+
+    /**
+     * Processes the lines of br and prints their outputs in the order of the
+     * input; throws an IOException caused by the exception of the first line
+     * that failed.
+     */
+    public void run(BufferedReader br) throws IOException, InterruptedException {
+        if (m_proc == null) {
+            throw new IllegalStateException("Lines of a stream need a Processor.");
+        }
+        final BlockingQueue<Future<String>> pending = new ArrayBlockingQueue<>(m_iQueueSize);
+        // the pool queue needs no bound of its own; pending limits the number of submitted lines
+        ExecutorService workers = Executors.newFixedThreadPool(m_iWorkers);
+        Writer writer = new Writer(pending);
+        writer.start();
+
+        try {
+            String buf;
+            while (writer.isAlive() && (buf = br.readLine()) != null) {
+                final String sLine = buf;
+                Future<String> f = workers.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return m_proc.process(sLine);
+                    }
+                });
+                if (!offer(pending, f, writer)) {
+                    break;
+                }
+            }
+        } finally {
+            offer(pending, END, writer);
+            writer.join();
+            workers.shutdownNow();
+        }
+        writer.rethrow("line");
+    }
+
+    /**
+     * Processes the lines of the chunks, which are read by the workers, and
+     * prints their outputs in the order of the chunks; throws an IOException
+     * caused by the exception of the first chunk that failed.
+     */
+    public void run(List<MappedCorpus.Chunk> chunks) throws IOException, InterruptedException {
+        if (m_scannerProc == null) {
+            throw new IllegalStateException("Chunks of a mapped file need a ScannerProcessor.");
+        }
+        final BlockingQueue<Future<String>> pending = new ArrayBlockingQueue<>(m_iQueueSize);
+        ExecutorService workers = Executors.newFixedThreadPool(m_iWorkers);
+        Writer writer = new Writer(pending);
+        writer.start();
+
+        try {
+            for (final MappedCorpus.Chunk c : chunks) {
+                if (!writer.isAlive()) {
+                    break;
+                }
+                Future<String> f = workers.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return processChunk(c);
+                    }
+                });
+                if (!offer(pending, f, writer)) {
+                    break;
+                }
+            }
+        } finally {
+            offer(pending, END, writer);
+            writer.join();
+            workers.shutdownNow();
+        }
+        writer.rethrow("chunk");
+    }
+
+    /**
+     * returns the outputs of the lines of c joined by line breaks, or null if
+     * there is none; if a line fails, a ChunkException holds the outputs of
+     * the preceding lines of the chunk
+     */
+    private String processChunk(MappedCorpus.Chunk c) throws ChunkException, IOException {
+        LineScanner ls = new LineScanner();
+        StringBuilder sb = null;
+        for (int iLine = 1; c.readRawLine(ls); ++iLine) {
+            String s;
+            try {
+                s = m_scannerProc.process(ls);
+            } catch (Exception e) {
+                c.close();
+                throw new ChunkException(String.format("Failed to process line %d of the chunk at byte %d.",
+                        iLine, c.begin()), sb != null ? sb.toString() : null, e);
+            }
+            if (s == null) {
+                continue;
+            }
+            if (sb == null) {
+                sb = new StringBuilder();
+            } else {
+                sb.append(LINE_SEPARATOR);
+            }
+            sb.append(s);
+        }
+        return sb != null ? sb.toString() : null;
+    }
+
+    /**
+     * puts f into pending unless the writer has stopped, in which case f is
+     * cancelled and false is returned
+     */
+    private static boolean offer(BlockingQueue<Future<String>> pending, Future<String> f, Thread writer)
+            throws InterruptedException {
+        while (!pending.offer(f, OFFER_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (!writer.isAlive()) {
+                f.cancel(true);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A failure of a line of a chunk, which keeps the outputs of the preceding
+     * lines so that they are printed before the run stops.
+     */
+    private static class ChunkException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+        private final String m_sOutput;
+
+        ChunkException(String sMessage, String sOutput, Throwable cause) {
+            super(sMessage, cause);
+            m_sOutput = sOutput;
+        }
+    }
+
+    /**
+     * Prints the outputs of the pending futures in order until END. At the
+     * first failure, it cancels the futures left in the queue and stops, so
+     * the reader sees that it is no longer alive.
+     */
+    private static class Writer extends Thread {
+
+        private final BlockingQueue<Future<String>> m_pending;
+        private volatile Throwable m_failure = null;
+        private volatile int m_iFailed = 0;
+
+        Writer(BlockingQueue<Future<String>> pending) {
+            super("LinePipeline-writer");
+            m_pending = pending;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 1;; ++i) {
+                    Future<String> f = m_pending.take();
+                    if (f == END) {
+                        return;
+                    }
+                    try {
+                        String s = f.get();
+                        if (s != null) {
+                            Console.writeLine(s);
+                        }
+                    } catch (ExecutionException e) {
+                        if (e.getCause() instanceof ChunkException) {
+                            String s = ((ChunkException) e.getCause()).m_sOutput;
+                            if (s != null) {
+                                Console.writeLine(s);
+                            }
+                        }
+                        m_iFailed = i;
+                        m_failure = e.getCause();
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                m_failure = e;
+            }
+            for (Future<String> f; (f = m_pending.poll()) != null;) {
+                f.cancel(true);
+            }
+        }
+
+        /**
+         * throws the failure, if any, naming the failed item by its 1-based
+         * number
+         */
+        void rethrow(String sItem) throws IOException {
+            Throwable t = m_failure;
+            if (t == null) {
+                return;
+            }
+            throw new IOException(m_iFailed > 0
+                    ? String.format("Failed to process %s %d.", sItem, m_iFailed)
+                    : "The output was interrupted.", t);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,364 @@
+/*
+ * Corbit, a text analyzer
+ * 
+ * Copyright (c) 2010-2012, Jun Hatori
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the names of the authors nor the names of its contributors
+ *       may be used to endorse or promote products derived from this
+ *       software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package corbit.commons.io;
+
+import corbit.commons.util.Statics;
+import java.nio.ByteBuffer;
+import java.text.Normalizer;
+import java.util.Arrays;
+
+/**
+ * Splits lines of a corpus into fields without regular expressions. Each line
+ * is copied once into a buffer that is reused for the following lines, or
+ * decoded into it from the UTF-8 bytes of a MappedCorpus, and
+ * the fields are addressed by their offsets in the buffer, so that no string
+ * is created except for the fields that are kept. Strings from a small closed
+ * set, such as tags and arc labels, are returned from an intern table instead
+ * of being created for every occurrence.
+ *
+ * A scanner is not thread-safe; each reader holds its own.
+ */
+public class LineScanner {
+
+    private static final int MAX_INTERNED = 1 << 12;
+    private char[] m_buf = new char[256];
+    private int m_iBegin = 0;
+    private int m_iEnd = 0;
+    private int[] m_ends = new int[64];
+    private int m_iSepLength = 0;
+    private String[] m_interned = new String[64];
+    private int m_iInterned = 0;
+
+    /**
+     * reads s, trimmed in the same way as Statics.trimSpecial()
+     */
+    public void reset(String s) {
+        int iLen = s.length();
+        s.getChars(0, iLen, capacity(iLen), 0);
+        m_iBegin = 0;
+        m_iEnd = iLen;
+        trim();
+    }
+
+    /**
+     * reads the UTF-8 bytes from iBegin to iEnd of bb without trimming them;
+     * malformed sequences are replaced with U+FFFD
+     */
+    public void decode(ByteBuffer bb, int iBegin, int iEnd) {
+        // a byte never decodes to more than one char
+        char[] buf = capacity(iEnd - iBegin);
+        int n = 0;
+        for (int i = iBegin; i < iEnd;) {
+            int b = bb.get(i++);
+            if (b >= 0) {
+                buf[n++] = (char) b;
+                continue;
+            }
+            int nTrail;
+            int iMin;
+            if ((b & 0xe0) == 0xc0) {
+                nTrail = 1;
+                iMin = 0x80;
+                b &= 0x1f;
+            } else if ((b & 0xf0) == 0xe0) {
+                nTrail = 2;
+                iMin = 0x800;
+                b &= 0x0f;
+            } else if ((b & 0xf8) == 0xf0) {
+                nTrail = 3;
+                iMin = 0x10000;
+                b &= 0x07;
+            } else {
+                buf[n++] = '\ufffd';
+                continue;
+            }
+            int c = b;
+            for (; nTrail > 0 && i < iEnd && (bb.get(i) & 0xc0) == 0x80; --nTrail) {
+                c = (c << 6) | (bb.get(i++) & 0x3f);
+            }
+            if (nTrail > 0 || c < iMin || c > Character.MAX_CODE_POINT
+                    || (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE)) {
+                buf[n++] = '\ufffd';
+            } else if (c >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                buf[n++] = Character.highSurrogate(c);
+                buf[n++] = Character.lowSurrogate(c);
+            } else {
+                buf[n++] = (char) c;
+            }
+        }
+        m_iBegin = 0;
+        m_iEnd = n;
+    }
+
+    /**
+     * removes the spaces and line breaks at both ends and a byte order mark
+     * at the beginning, in the same way as Statics.trimSpecial()
+     */
+    public void trim() {
+        char c;
+        while (m_iEnd > m_iBegin && ((c = m_buf[m_iEnd - 1]) == ' ' || c == '\r' || c == '\n')) {
+            --m_iEnd;
+        }
+        while (m_iBegin < m_iEnd && ((c = m_buf[m_iBegin]) == ' ' || c == '\r' || c == '\n' || c == 0xfeff)) {
+            ++m_iBegin;
+        }
+    }
+
+    private char[] capacity(int iSize) {
+        if (m_buf.length < iSize) {
+            m_buf = new char[Math.max(iSize, m_buf.length * 2)];
+        }
+        return m_buf;
+    }
+
+    public int begin() {
+        return m_iBegin;
+    }
+
+    public int end() {
+        return m_iEnd;
+    }
+
+    public boolean isEmpty() {
+        return m_iBegin == m_iEnd;
+    }
+
+    public char charAt(int i) {
+        return m_buf[i];
+    }
+
+    /**
+     * returns the first position of c in [iFrom, iTo), or -1
+     */
+    public int indexOf(char c, int iFrom, int iTo) {
+        for (int i = iFrom; i < iTo; ++i) {
+            if (m_buf[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * returns the first position in [iFrom, iTo) where s begins and ends
+     * before iTo, or -1
+     */
+    public int indexOf(String s, int iFrom, int iTo) {
+        char c = s.charAt(0);
+        int iLast = iTo - s.length();
+        for (int i = iFrom; i <= iLast; ++i) {
+            if (m_buf[i] == c && startsWith(s, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * returns the last position of c in [iFrom, iTo), or -1
+     */
+    public int lastIndexOf(char c, int iFrom, int iTo) {
+        for (int i = iTo - 1; i >= iFrom; --i) {
+            if (m_buf[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean startsWith(String s, int i) {
+        if (i + s.length() > m_iEnd) {
+            return false;
+        }
+        for (int j = 0; j < s.length(); ++j) {
+            if (m_buf[i + j] != s.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * splits the line at the occurrences of sSep and returns the number of
+     * fields, dropping the empty fields at the end as String.split() does;
+     * the fields are then given by fieldBegin() and fieldEnd()
+     */
+    public int split(String sSep) {
+        int n = 0;
+        int i = m_iBegin;
+        for (int j; (j = indexOf(sSep, i, m_iEnd)) >= 0; i = j + sSep.length()) {
+            addField(n++, j);
+        }
+        addField(n++, m_iEnd);
+        m_iSepLength = sSep.length();
+        while (n > 1 && fieldEnd(n - 1) == fieldBegin(n - 1)) {
+            --n;
+        }
+        return n;
+    }
+
+    private void addField(int i, int iEnd) {
+        if (i == m_ends.length) {
+            m_ends = Arrays.copyOf(m_ends, i * 2);
+        }
+        m_ends[i] = iEnd;
+    }
+
+    public int fieldBegin(int i) {
+        return i == 0 ? m_iBegin : m_ends[i - 1] + m_iSepLength;
+    }
+
+    public int fieldEnd(int i) {
+        return m_ends[i];
+    }
+
+    /**
+     * parses a decimal integer with an optional sign in the same way as
+     * Integer.parseInt()
+     */
+    public int parseInt(int iBegin, int iEnd) {
+        int i = iBegin;
+        boolean bNegative = false;
+        if (i < iEnd && (m_buf[i] == '-' || m_buf[i] == '+')) {
+            bNegative = m_buf[i] == '-';
+            ++i;
+        }
+        if (i == iEnd) {
+            throw new NumberFormatException("For input string: \"" + substring(iBegin, iEnd) + "\"");
+        }
+        long l = 0;
+        for (; i < iEnd; ++i) {
+            int d = m_buf[i] - '0';
+            if (d < 0 || d > 9) {
+                throw new NumberFormatException("For input string: \"" + substring(iBegin, iEnd) + "\"");
+            }
+            l = l * 10 + d;
+            if (l > (long) Integer.MAX_VALUE + 1) {
+                throw new NumberFormatException("For input string: \"" + substring(iBegin, iEnd) + "\"");
+            }
+        }
+        if (!bNegative && l > Integer.MAX_VALUE) {
+            throw new NumberFormatException("For input string: \"" + substring(iBegin, iEnd) + "\"");
+        }
+        return (int) (bNegative ? -l : l);
+    }
+
+    public String substring(int iBegin, int iEnd) {
+        return new String(m_buf, iBegin, iEnd - iBegin);
+    }
+
+    /**
+     * returns the NFKC normalization of [iBegin, iEnd), which is only run
+     * through the Normalizer when it contains characters that NFKC can change
+     */
+    public String normalized(int iBegin, int iEnd) {
+        for (int i = iBegin; i < iEnd; ++i) {
+            if (!Statics.isNFKCInert(m_buf[i])) {
+                return Normalizer.normalize(substring(iBegin, iEnd), Normalizer.Form.NFKC);
+            }
+        }
+        return substring(iBegin, iEnd);
+    }
+
+    /**
+     * returns the NFKC normalization of [iBegin, iEnd) as a new array, as
+     * normalized() does
+     */
+    public char[] normalizedChars(int iBegin, int iEnd) {
+        for (int i = iBegin; i < iEnd; ++i) {
+            if (!Statics.isNFKCInert(m_buf[i])) {
+                return Normalizer.normalize(substring(iBegin, iEnd), Normalizer.Form.NFKC).toCharArray();
+            }
+        }
+        return Arrays.copyOfRange(m_buf, iBegin, iEnd);
+    }
+
+    /**
+     * returns [iBegin, iEnd) as the same String instance for every occurrence
+     * of its characters; once the table is full, new strings are created
+     */
+    public String intern(int iBegin, int iEnd) {
+        int h = 0;
+        for (int i = iBegin; i < iEnd; ++i) {
+            h = 31 * h + m_buf[i];
+        }
+        int iMask = m_interned.length - 1;
+        for (int i = mix(h) & iMask;; i = (i + 1) & iMask) {
+            String s = m_interned[i];
+            if (s == null) {
+                break;
+            }
+            if (s.hashCode() == h && regionEquals(s, iBegin, iEnd)) {
+                return s;
+            }
+        }
+        String s = substring(iBegin, iEnd);
+        if (m_iInterned < MAX_INTERNED) {
+            if ((m_iInterned + 1) * 2 > m_interned.length) {
+                String[] old = m_interned;
+                m_interned = new String[old.length * 2];
+                for (String t : old) {
+                    if (t != null) {
+                        putInterned(t);
+                    }
+                }
+            }
+            putInterned(s);
+            ++m_iInterned;
+        }
+        return s;
+    }
+
+    private void putInterned(String s) {
+        int iMask = m_interned.length - 1;
+        int i = mix(s.hashCode()) & iMask;
+        while (m_interned[i] != null) {
+            i = (i + 1) & iMask;
+        }
+        m_interned[i] = s;
+    }
+
+    private boolean regionEquals(String s, int iBegin, int iEnd) {
+        if (s.length() != iEnd - iBegin) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); ++i) {
+            if (s.charAt(i) != m_buf[iBegin + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int mix(int h) {
+        h *= 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
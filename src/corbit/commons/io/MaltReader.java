@@ -30,7 +30,6 @@
 package corbit.commons.io;
 
 import corbit.commons.dict.TagDictionary;
-import corbit.commons.util.Statics;
 import corbit.commons.word.ArcLabel;
 import corbit.commons.word.IndexWord;
 import corbit.commons.word.ParsedSentence;
@@ -39,11 +38,9 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.text.Normalizer;
 import java.util.Arrays;
+import java.util.Set;
 import java.util.TreeSet;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class MaltReader extends ParseReader {
 
@@ -51,49 +48,71 @@ public class MaltReader extends ParseReader {
         super(sFile, dict.generateTagSet(), new TreeSet<>(Arrays.asList(dict.getArcLabels())));
     }
 
+    /**
+     * reads the sentences in src, such as a chunk of a MappedCorpus
+     */
+    public MaltReader(LineSource src, Set<String> setPos, Set<String> setLabel) {
+        super(null, setPos, setLabel);
+        m_corpus = src;
+    }
+
+    private LineSource m_corpus = null;
+    private final LineScanner m_scanner = new LineScanner();
+    private int m_iLine = 0;
+
     @Override
-    protected void iterate() 
-            throws InterruptedException {
-        int iLine = 0;
-        FileEnum fe = new FileEnum(m_sFile);
+    protected ParsedSentence computeNext() {
+        LineScanner ls = m_scanner;
 
         try {
-            while (fe.hasNext()) {
+            if (m_corpus == null) {
+                m_corpus = new MappedCorpus(m_sFile);
+            }
+            for (boolean bEnd = false; !bEnd;) {
                 SentenceBuilder sb = new SentenceBuilder(m_posSet, m_labelSet);
                 int index = 0;
 
-                while (true) {
-                    String l = Statics.trimSpecial(fe.next());
-                    ++iLine;
-                    if (l.length() == 0) {
+                bEnd = true;
+                while (m_corpus.readLine(ls)) {
+                    bEnd = false;
+                    ++m_iLine;
+                    if (ls.isEmpty()) {
                         break;
                     }
 
-                    Pattern re = Pattern.compile("(.*?)\t(.*?)\t(.*?)\t(.*?)");
-                    Matcher mc = re.matcher(l);
+                    // form, tag, head and label; the label takes the rest of the line
+                    int t1 = ls.indexOf('\t', ls.begin(), ls.end());
+                    int t2 = t1 < 0 ? -1 : ls.indexOf('\t', t1 + 1, ls.end());
+                    int t3 = t2 < 0 ? -1 : ls.indexOf('\t', t2 + 1, ls.end());
 
-                    if (!mc.matches() || mc.groupCount() < 4) {
-                        System.err.println(String.format("Error found at line %d. Skipping.", iLine));
+                    if (t3 < 0) {
+                        System.err.println(String.format("Error found at line %d. Skipping.", m_iLine));
                         sb = null;
                         break;
                     }
 
-                    String sForm = Normalizer.normalize(mc.group(1), Normalizer.Form.NFKC);
-                    String sPos = mc.group(2);
-                    int iHead = Integer.parseInt(mc.group(3)) - 1;
-                    ArcLabel label = ArcLabel.getLabel(mc.group(4));
+                    String sForm = ls.normalized(ls.begin(), t1);
+                    String sPos = ls.intern(t1 + 1, t2);
+                    int iHead = ls.parseInt(t2 + 1, t3) - 1;
+                    ArcLabel label = ArcLabel.getLabel(ls.intern(t3 + 1, ls.end()));
                     sb.addWord(index, sForm, sPos, iHead, label);
                     index++;
                 }
 
-                if (sb != null) {
-                    yieldReturn(sb.compile());
+                if (sb != null && !bEnd) {
+                    return sb.compile();
                 }
             }
-        } catch (NumberFormatException | InterruptedException e) {
+        } catch (NumberFormatException | IOException e) {
             e.printStackTrace();
-        } finally {
-            fe.shutdown();
+        }
+        return endOfData();
+    }
+
+    @Override
+    protected void close() {
+        if (m_corpus != null) {
+            m_corpus.close();
         }
     }
 
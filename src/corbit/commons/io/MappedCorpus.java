@@ -0,0 +1,238 @@
+/*
+ * Corbit, a text analyzer
+ * 
+ * Copyright (c) 2010-2012, Jun Hatori
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the names of the authors nor the names of its contributors
+ *       may be used to endorse or promote products derived from this
+ *       software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package corbit.commons.io;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A UTF-8 text file read through memory maps. The lines are found by scanning
+ * the mapped bytes for '\n', and only the bytes of each line are decoded into
+ * the reusable buffer of a LineScanner, so no String is created per line and
+ * the file is not copied through a stream.
+ *
+ * The file can be split into chunks beginning at line starts, which map and
+ * read their own ranges independently so that workers can parse them in
+ * parallel. A chunk maps at most MAX_CHUNK_SIZE bytes, so larger files are
+ * read as several chunks. Corpora of sentences separated by blank lines are
+ * split after blank lines instead, so that no sentence spans two chunks.
+ * A line ends with '\n' or '\r\n'; unlike
+ * BufferedReader, a lone '\r' does not end a line.
+ */
+public class MappedCorpus implements LineSource {
+
+    public static final long MAX_CHUNK_SIZE = 1L << 30;
+    private static final int SCAN_BLOCK = 1 << 16;
+    private final RandomAccessFile m_file;
+    private final FileChannel m_channel;
+    private final long m_lSize;
+    private List<Chunk> m_chunks = null;
+    private int m_iChunk = 0;
+
+    public MappedCorpus(String sFile) throws IOException {
+        m_file = new RandomAccessFile(sFile, "r");
+        m_channel = m_file.getChannel();
+        m_lSize = m_channel.size();
+    }
+
+    public long size() {
+        return m_lSize;
+    }
+
+    /**
+     * splits the file into chunks of about lChunkSize bytes, each of which
+     * begins at a line start and ends after the line containing its last
+     * byte
+     */
+    public List<Chunk> split(long lChunkSize) throws IOException {
+        return split(lChunkSize, false);
+    }
+
+    /**
+     * splits the file into chunks of about lChunkSize bytes, each of which
+     * begins at the file start or after a blank line and ends after the first
+     * blank line following its last byte
+     */
+    public List<Chunk> splitAtBlankLines(long lChunkSize) throws IOException {
+        return split(lChunkSize, true);
+    }
+
+    private List<Chunk> split(long lChunkSize, boolean bBlankLines) throws IOException {
+        if (lChunkSize < 1) {
+            throw new IllegalArgumentException("The chunk size must be positive: " + lChunkSize);
+        }
+        lChunkSize = Math.min(lChunkSize, MAX_CHUNK_SIZE);
+        List<Chunk> l = new ArrayList<>();
+        long lBegin = 0;
+        while (lBegin < m_lSize) {
+            long lEnd = lBegin + lChunkSize >= m_lSize ? m_lSize : lineStart(lBegin + lChunkSize, bBlankLines);
+            if (lEnd - lBegin > MAX_CHUNK_SIZE) {
+                throw new IOException(String.format("A %s longer than %d bytes found at %d.",
+                        bBlankLines ? "paragraph" : "line", MAX_CHUNK_SIZE, lBegin));
+            }
+            l.add(new Chunk(lBegin, lEnd));
+            lBegin = lEnd;
+        }
+        return l;
+    }
+
+    /**
+     * returns the first line start at or after lPos, or with bBlankLine the
+     * first start of a line following an empty line ("\n" or "\r\n")
+     */
+    private long lineStart(long lPos, boolean bBlankLine) throws IOException {
+        ByteBuffer bb = ByteBuffer.allocate(SCAN_BLOCK);
+        // 0: within a line, 1: at a line start, 2: after '\r' at a line start
+        int iState = 0;
+        for (long l = lPos - 1; l < m_lSize; l += SCAN_BLOCK) {
+            bb.clear();
+            int n = m_channel.read(bb, l);
+            for (int i = 0; i < n; ++i) {
+                byte b = bb.get(i);
+                if (b == '\n') {
+                    if (!bBlankLine || iState != 0) {
+                        return l + i + 1;
+                    }
+                    iState = 1;
+                } else {
+                    iState = b == '\r' && iState == 1 ? 2 : 0;
+                }
+            }
+        }
+        return m_lSize;
+    }
+
+    @Override
+    public boolean readLine(LineScanner ls) throws IOException {
+        if (!readRawLine(ls)) {
+            return false;
+        }
+        ls.trim();
+        return true;
+    }
+
+    @Override
+    public boolean readRawLine(LineScanner ls) throws IOException {
+        if (m_chunks == null) {
+            m_chunks = split(MAX_CHUNK_SIZE);
+        }
+        while (m_iChunk < m_chunks.size()) {
+            if (m_chunks.get(m_iChunk).readRawLine(ls)) {
+                return true;
+            }
+            m_chunks.set(m_iChunk++, null);
+        }
+        return false;
+    }
+
+    /**
+     * closes the file; chunks that have been mapped can still be read
+     */
+    @Override
+    public void close() {
+        try {
+            m_file.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public class Chunk implements LineSource {
+
+        private final long m_lBegin;
+        private final long m_lEnd;
+        private MappedByteBuffer m_buf = null;
+        private int m_iPos = 0;
+        private boolean m_bEnd = false;
+
+        private Chunk(long lBegin, long lEnd) {
+            m_lBegin = lBegin;
+            m_lEnd = lEnd;
+        }
+
+        public long begin() {
+            return m_lBegin;
+        }
+
+        public long end() {
+            return m_lEnd;
+        }
+
+        @Override
+        public boolean readLine(LineScanner ls) throws IOException {
+            if (!readRawLine(ls)) {
+                return false;
+            }
+            ls.trim();
+            return true;
+        }
+
+        @Override
+        public boolean readRawLine(LineScanner ls) throws IOException {
+            if (m_bEnd) {
+                return false;
+            }
+            if (m_buf == null) {
+                m_buf = m_channel.map(FileChannel.MapMode.READ_ONLY, m_lBegin, m_lEnd - m_lBegin);
+            }
+            int iLimit = m_buf.limit();
+            if (m_iPos >= iLimit) {
+                close();
+                return false;
+            }
+            int iEnd = m_iPos;
+            while (iEnd < iLimit && m_buf.get(iEnd) != '\n') {
+                ++iEnd;
+            }
+            int iNext = iEnd + 1;
+            if (iEnd > m_iPos && m_buf.get(iEnd - 1) == '\r') {
+                --iEnd;
+            }
+            ls.decode(m_buf, m_iPos, iEnd);
+            m_iPos = iNext;
+            return true;
+        }
+
+        /**
+         * stops reading the chunk; the mapping is released when the buffer is
+         * collected
+         */
+        @Override
+        public void close() {
+            m_buf = null;
+            m_bEnd = true;
+        }
+    }
+}
@@ -29,11 +29,17 @@
  */
 package corbit.commons.io;
 
-import corbit.commons.util.Generator;
+import corbit.commons.util.PullIterator;
 import corbit.commons.word.ParsedSentence;
 import java.util.Set;
 
-public abstract class ParseReader extends Generator<ParsedSentence> {
+public abstract class ParseReader extends PullIterator<ParsedSentence> {
+
+    /**
+     * the number of sentences handed over at a time when a corpus is read
+     * ahead on another thread
+     */
+    public static final int READ_AHEAD_BATCH = 512;
 
     protected String m_sFile;
     protected final Set<String> m_posSet;
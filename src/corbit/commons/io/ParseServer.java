@@ -0,0 +1,236 @@
+/*
+ * Corbit, a text analyzer
+ * 
+ * Copyright (c) 2010-2012, Jun Hatori
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the names of the authors nor the names of its contributors
+ *       may be used to endorse or promote products derived from this
+ *       software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package corbit.commons.io;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A simple HTTP server on the loopback interface that keeps a loaded model
+ * and parses the sentences posted to it.
+ *
+ * POST /parse    parses each line of the request body and returns the outputs
+ *                in the same format as the Run command
+ * GET /health    returns "ok"
+ * POST /shutdown stops the server after the running requests are finished
+ *
+ * Sentences are parsed on a bounded pool of workers; a request is rejected
+ * with 503 if the queue is full and answered with 504 if it is not finished
+ * within the timeout.
+ */
+public class ParseServer {
+
+    public interface Handler {
+
+        /**
+         * Returns the output for a line of input, including the line breaks.
+         */
+        String parse(String sLine) throws Exception;
+    }
+    private final Handler m_handler;
+    private final HttpServer m_server;
+    private final ThreadPoolExecutor m_workers;
+    private final ExecutorService m_dispatcher;
+    private final long m_lTimeout;
+    private final CountDownLatch m_stopped = new CountDownLatch(1);
+    private final AtomicBoolean m_bStopping = new AtomicBoolean(false);
+    private static final int GRACE_SECONDS = 10;
+
+    /**
+     * @param iPort port to listen on the loopback interface
+     * @param iWorkers number of threads parsing sentences
+     * @param iQueueSize maximum number of sentences waiting for a worker
+     * @param lTimeout timeout of each request in milliseconds (0 to disable)
+     */
+    public ParseServer(Handler handler, int iPort, int iWorkers, int iQueueSize, long lTimeout)
+            throws IOException {
+        m_handler = handler;
+        m_lTimeout = lTimeout;
+        m_workers = new ThreadPoolExecutor(iWorkers, iWorkers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(iQueueSize));
+        m_dispatcher = Executors.newFixedThreadPool(iWorkers);
+        m_server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), iPort), 0);
+        m_server.setExecutor(m_dispatcher);
+        m_server.createContext("/parse", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange ex) throws IOException {
+                handleParse(ex);
+            }
+        });
+        m_server.createContext("/health", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange ex) throws IOException {
+                respond(ex, 200, "ok\n");
+            }
+        });
+        m_server.createContext("/shutdown", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange ex) throws IOException {
+                if (!ex.getRequestMethod().equals("POST")) {
+                    respond(ex, 405, "POST required.\n");
+                    return;
+                }
+                respond(ex, 200, "shutting down\n");
+                new Thread() {
+                    @Override
+                    public void run() {
+                        ParseServer.this.stop();
+                    }
+                }.start();
+            }
+        });
+    }
+
+    public int getPort() {
+        return m_server.getAddress().getPort();
+    }
+
+    public void start() {
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                ParseServer.this.stop();
+            }
+        });
+        m_server.start();
+        System.err.println("Listening on http://localhost:" + getPort() + "/parse");
+    }
+
+    /**
+     * Stops accepting requests and waits for the running ones to finish.
+     */
+    public void stop() {
+        if (!m_bStopping.compareAndSet(false, true)) {
+            return;
+        }
+        m_server.stop(GRACE_SECONDS);
+        m_workers.shutdown();
+        m_dispatcher.shutdown();
+        try {
+            m_workers.awaitTermination(GRACE_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.err.println("Server stopped.");
+        m_stopped.countDown();
+    }
+
+    public void awaitTermination() throws InterruptedException {
+        m_stopped.await();
+    }
+
+    private void handleParse(HttpExchange ex) throws IOException {
+        if (!ex.getRequestMethod().equals("POST")) {
+            respond(ex, 405, "POST required.\n");
+            return;
+        }
+
+        List<Future<String>> lOuts = new ArrayList<>();
+        try {
+            BufferedReader br = new BufferedReader(new InputStreamReader(ex.getRequestBody(), "UTF-8"));
+            String sLine;
+            while ((sLine = br.readLine()) != null) {
+                final String _sLine = sLine;
+                lOuts.add(m_workers.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return m_handler.parse(_sLine);
+                    }
+                }));
+            }
+        } catch (RejectedExecutionException e) {
+            cancel(lOuts);
+            respond(ex, 503, "Too many requests.\n");
+            return;
+        }
+
+        long lDeadline = System.currentTimeMillis() + m_lTimeout;
+        StringBuilder sb = new StringBuilder();
+        try {
+            for (Future<String> f : lOuts) {
+                if (m_lTimeout > 0) {
+                    sb.append(f.get(Math.max(0L, lDeadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+                } else {
+                    sb.append(f.get());
+                }
+            }
+        } catch (TimeoutException e) {
+            cancel(lOuts);
+            respond(ex, 504, "Timed out.\n");
+            return;
+        } catch (ExecutionException e) {
+            cancel(lOuts);
+            respond(ex, 500, e.getCause() + "\n");
+            return;
+        } catch (InterruptedException e) {
+            cancel(lOuts);
+            respond(ex, 503, "Interrupted.\n");
+            Thread.currentThread().interrupt();
+            return;
+        }
+        respond(ex, 200, sb.toString());
+    }
+
+    private static void cancel(List<Future<String>> lOuts) {
+        for (Future<String> f : lOuts) {
+            f.cancel(false);
+        }
+    }
+
+    private static void respond(HttpExchange ex, int iStatus, String sBody) throws IOException {
+        byte[] bytes = sBody.getBytes("UTF-8");
+        ex.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        ex.sendResponseHeaders(iStatus, bytes.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+}
\ No newline at end of file
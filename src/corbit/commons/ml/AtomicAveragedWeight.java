@@ -0,0 +1,210 @@
+/*
+ * Corbit, a text analyzer
+ * 
+ * Copyright (c) 2010-2012, Jun Hatori
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the names of the authors nor the names of its contributors
+ *       may be used to endorse or promote products derived from this
+ *       software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package corbit.commons.ml;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Averaged weights that many threads can read and update without locks, for
+ * asynchronous ("Hogwild") training. Each weight is kept as the bits of a
+ * double in an AtomicLongArray and added to by compare-and-set, so concurrent
+ * updates are not lost, except for those racing with a resize of the arrays.
+ *
+ * Averaging is lazy as in AveragedWeight: an update d made at step t adds
+ * d * t to the accumulated updates, so that the average w - wa / t can be
+ * computed once the weights are copied back by copyTo().
+ */
+public class AtomicAveragedWeight implements Weights {
+
+    private volatile AtomicLongArray aw;
+    private volatile AtomicLongArray awa;
+    private final AtomicInteger step;
+    // one past the highest index that may hold a weight
+    private final AtomicInteger bound;
+
+    /**
+     * Copies the weights of v into arrays of iCapacity weights, which should
+     * cover the features known so far with room for those added during
+     * training (see Vocab.weightCapacity()); the arrays still grow if needed.
+     */
+    public AtomicAveragedWeight(AveragedWeight v, int iCapacity) {
+        v.ensureLoaded();
+        int n = Math.max(lastNonZero(v), lastNonZero(v.wa)) + 1;
+        AtomicLongArray w = new AtomicLongArray(Math.max(Math.max(iCapacity, n), 1));
+        AtomicLongArray wa = new AtomicLongArray(w.length());
+        for (int i = 0; i < n; ++i) {
+            w.set(i, Double.doubleToRawLongBits(v.getWithCheck(i)));
+            wa.set(i, Double.doubleToRawLongBits(v.wa.getWithCheck(i)));
+        }
+        aw = w;
+        awa = wa;
+        step = new AtomicInteger(v.iStep);
+        bound = new AtomicInteger(n);
+    }
+
+    private static int lastNonZero(WeightVector v) {
+        int i = v.capacity - 1;
+        while (i >= 0 && v.vector[i] == 0.0d) {
+            --i;
+        }
+        return i;
+    }
+
+    public void nextStep() {
+        step.incrementAndGet();
+    }
+
+    public int getStep() {
+        return step.get();
+    }
+
+    /**
+     * Copies the weights, the accumulated updates and the step back to v,
+     * which must be the weights this object was created from. Only the
+     * indices up to the highest one holding a weight are copied, since v has
+     * no weights beyond them. The weights must not be updated meanwhile.
+     */
+    public void copyTo(AveragedWeight v) {
+        AtomicLongArray w = aw;
+        AtomicLongArray wa = awa;
+        int n = bound.get();
+        for (int i = 0; i < n; ++i) {
+            v.put(i, Double.longBitsToDouble(w.get(i)));
+            v.wa.put(i, Double.longBitsToDouble(wa.get(i)));
+        }
+        v.iStep = step.get();
+    }
+
+    /*
+     * raises the bound to cover index i; called once for each update rather
+     * than for each feature, so that the threads rarely contend for it
+     */
+    private void touch(int i) {
+        for (int n = bound.get(); n <= i && !bound.compareAndSet(n, i + 1); n = bound.get()) {
+        }
+    }
+
+    @Override
+    public boolean isUpdatedConcurrently() {
+        return true;
+    }
+
+    @Override
+    public int capacity() {
+        return aw.length();
+    }
+
+    @Override
+    public double get(int i) {
+        AtomicLongArray w = aw;
+        return i < w.length() ? Double.longBitsToDouble(w.get(i)) : 0.0d;
+    }
+
+    @Override
+    public double getWithCheck(int i) {
+        return get(i);
+    }
+
+    @Override
+    public double score(IntFeatVector v) {
+        AtomicLongArray w = aw;
+        double dScore = 0;
+        for (int p = v.first(); p >= 0; p = v.next(p)) {
+            int i = v.keyAt(p);
+            if (i < w.length()) {
+                dScore += Double.longBitsToDouble(w.get(i)) * v.valueAt(p);
+            }
+        }
+        return dScore;
+    }
+
+    public void put(int i, double d) {
+        if (i >= aw.length()) {
+            grow(i);
+        }
+        aw.set(i, Double.doubleToRawLongBits(d));
+        touch(i);
+    }
+
+    public void append(IntFeatVector v) {
+        append(v, 1.0d);
+    }
+
+    public void append(IntFeatVector v, double d) {
+        double t = step.get();
+        int iMax = -1;
+        for (int p = v.first(); p >= 0; p = v.next(p)) {
+            int i = v.keyAt(p);
+            if (i >= aw.length()) {
+                grow(i);
+            }
+            double dv = v.valueAt(p) * d;
+            add(aw, i, dv);
+            add(awa, i, dv * t);
+            iMax = Math.max(iMax, i);
+        }
+        touch(iMax);
+    }
+
+    private static void add(AtomicLongArray a, int i, double d) {
+        while (true) {
+            long l = a.get(i);
+            if (a.compareAndSet(i, l, Double.doubleToRawLongBits(Double.longBitsToDouble(l) + d))) {
+                return;
+            }
+        }
+    }
+
+    /*
+     * updates made to the old arrays while they are copied may be lost, which
+     * is tolerated in asynchronous training
+     */
+    private synchronized void grow(int i) {
+        int n = aw.length();
+        if (i < n) {
+            return;
+        }
+        int newCapacity = n << 1;
+        while (newCapacity <= i) {
+            newCapacity <<= 1;
+        }
+        awa = copyOf(awa, newCapacity);
+        aw = copyOf(aw, newCapacity);
+    }
+
+    private static AtomicLongArray copyOf(AtomicLongArray a, int n) {
+        AtomicLongArray b = new AtomicLongArray(n);
+        for (int i = 0; i < a.length(); ++i) {
+            b.set(i, a.get(i));
+        }
+        return b;
+    }
+}
\ No newline at end of file
@@ -29,22 +29,108 @@
  */
 package corbit.commons.ml;
 
+import corbit.commons.io.BinaryModel;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * Weights of the averaged perceptron. A model mapped from a binary file
+ * decodes with the mapped weights through getWeight() and
+ * getAveragedWeight(); the dense vectors are filled by loadDense(), which has
+ * to be called before the weights are read through this object, e.g. before
+ * training. Updates load them as well.
+ */
 public class AveragedWeight extends WeightVector {
 
-    WeightVector wa = new WeightVector();
+    WeightVector wa;
     int iStep = 0;
+    // set once the dense vectors are allocated and filled
+    private volatile boolean bDense;
+    // weights and accumulated updates mapped from a binary model until then
+    private SparseWeights mw = null;
+    private SparseWeights mwa = null;
+    // averaged weights mapped from a binary model; dropped once the weights are updated
+    private Weights mapped = null;
 
     public AveragedWeight(AveragedWeight v) {
         super(v);
         wa = new WeightVector(v.wa);
         iStep = v.iStep;
+        mapped = v.mapped;
+        bDense = true;
+    }
+
+    public AveragedWeight() {
+        super(0);
+        wa = new WeightVector(0);
+        bDense = false;
+    }
+
+    @Override
+    protected void ensureLoaded() {
+        if (!bDense) {
+            loadDense();
+        }
+    }
+
+    /**
+     * Copies the mapped weights into the dense vectors, or allocates empty ones
+     * if no model has been mapped. Does nothing once they are loaded.
+     */
+    public synchronized void loadDense() {
+        if (bDense) {
+            return;
+        }
+        int n = DEFAULT_CAPACITY;
+        if (mw != null) {
+            n = Math.max(n, Math.max(mw.capacity(), mwa.capacity()));
+        }
+        vector = new double[n];
+        capacity = n;
+        wa.vector = new double[n];
+        wa.capacity = n;
+        if (mw != null) {
+            mw.copyTo(vector);
+            mwa.copyTo(wa.vector);
+            mw = null;
+            mwa = null;
+        }
+        bDense = true;
+    }
+
+    public void assign(AveragedWeight v) {
+        super.assign(v);
+        wa.assign(v.wa);
+        iStep = v.iStep;
+        mapped = null;
+    }
+
+    /**
+     * Sets the weights to the average of ws (iterative parameter mixing). The
+     * accumulated updates are averaged in the same way, so that the averaged
+     * weights are the average of those of ws if their steps are the same.
+     * ws may contain this object.
+     */
+    public void mix(List<AveragedWeight> ws) {
+        List<WeightVector> was = new ArrayList<>();
+        long lSteps = 0;
+        for (AveragedWeight w : ws) {
+            w.ensureLoaded();
+            was.add(w.wa);
+            lSteps += w.iStep;
+        }
+        average(ws);
+        wa.average(was);
+        iStep = (int) Math.round((double) lSteps / ws.size());
+        mapped = null;
     }
 
     public void nextStep() {
+        mapped = null;
         ++iStep;
     }
 
@@ -53,38 +139,56 @@ public class AveragedWeight extends WeightVector {
     }
 
     public WeightVector getAverageWeight() {
+        ensureLoaded();
+        mapped = null; // the caller may update wa
         return wa;
     }
 
     @Override
-    public void append(IntFeatVector v) {
-        super.append(v);
-        wa.append(IntFeatVector.multiply(v, (double) iStep));
+    public void append(IntFeatVector v, double d) {
+        ensureLoaded();
+        mapped = null;
+        super.append(v, d);
+        wa.append(v, d * (double) iStep);
     }
 
     @Override
-    public void subtract(IntFeatVector v) {
-        super.subtract(v);
-        wa.subtract(IntFeatVector.multiply(v, (double) iStep));
+    public void put(int i, double d) {
+        ensureLoaded();
+        mapped = null;
+        super.put(i, d);
     }
 
-    public AveragedWeight() {
-        wa = new WeightVector();
+    @Override
+    public void clear() {
+        ensureLoaded();
+        mapped = null;
+        super.clear();
     }
 
-    public WeightVector getAveragedWeight() {
-//    	Stopwatch sw = new Stopwatch("Averaging weight...");
-        double dStep = (double) iStep;
-        WeightVector v = new WeightVector(this);
-        for (int i = 0; i < wa.capacity; ++i) {
-            v.put(i, v.get(i) - wa.get(i) / dStep);
-        }
-//      sw.lap();
-        return v;
+    /**
+     * returns the weights to decode with when they are not averaged, which
+     * are read from the mapped model if the dense vectors are not loaded
+     */
+    public Weights getWeight() {
+        return bDense || mw == null ? this : mw;
+    }
+
+    /**
+     * Returns a read-only view of the averaged weights. wa holds the sum of
+     * the updates weighted by the step at which they were made, which stands
+     * for the last-update steps and accumulated sums of each feature, so the
+     * average is w - wa / step and can be computed for each index on access
+     * instead of materializing the whole vector. The view reflects the
+     * current weights; it should not be used across further updates.
+     */
+    public Weights getAveragedWeight() {
+        return mapped != null ? mapped : new AveragedView(this);
     }
 
     @Override
     public void save(PrintWriter sw) {
+        ensureLoaded();
         sw.println(iStep);
         super.save(sw);
         wa.save(sw);
@@ -92,8 +196,96 @@ public class AveragedWeight extends WeightVector {
 
     @Override
     public void load(BufferedReader sr) throws IOException {
+        ensureLoaded();
+        mapped = null;
         iStep = Integer.parseInt(sr.readLine());
         super.load(sr);
         wa.load(sr);
     }
-}
\ No newline at end of file
+
+    /**
+     * Writes the step, the weights, the accumulated updates and the averaged
+     * weights, so that a loaded model can decode with the averaged weights
+     * read directly from the mapped file.
+     */
+    @Override
+    public void save(BinaryModel.Writer w) throws IOException {
+        ensureLoaded();
+        w.putInt(iStep);
+        super.save(w);
+        wa.save(w);
+        SparseWeights.write(new AveragedView(this), w);
+    }
+
+    /**
+     * Maps the weights written by save(BinaryModel.Writer). The dense vectors
+     * are dropped, and filled from the mapped weights when they are accessed.
+     */
+    @Override
+    public void load(ByteBuffer b) {
+        iStep = b.getInt();
+        SparseWeights sw = SparseWeights.read(b);
+        SparseWeights swa = SparseWeights.read(b);
+        SparseWeights sa = SparseWeights.read(b);
+        synchronized (this) {
+            vector = new double[0];
+            capacity = 0;
+            wa.vector = new double[0];
+            wa.capacity = 0;
+            mw = sw;
+            mwa = swa;
+            mapped = sa;
+            bDense = false;
+        }
+        System.err.println(String.format("%d weights mapped.", sw.size()));
+    }
+
+    private static class AveragedView implements Weights {
+
+        private final double[] vector;
+        private final double[] avector;
+        private final int capacity;
+        private final double dStep;
+
+        AveragedView(AveragedWeight w) {
+            w.ensureLoaded();
+            vector = w.vector;
+            avector = w.wa.vector;
+            capacity = Math.max(w.capacity, w.wa.capacity);
+            dStep = (double) w.iStep;
+        }
+
+        @Override
+        public boolean isUpdatedConcurrently() {
+            return false;
+        }
+
+        @Override
+        public int capacity() {
+            return capacity;
+        }
+
+        @Override
+        public double get(int i) {
+            double d = i < vector.length ? vector[i] : 0.0d;
+            return i < avector.length && dStep > 0 ? d - avector[i] / dStep : d;
+        }
+
+        @Override
+        public double getWithCheck(int i) {
+            return (i < capacity) ? get(i) : 0.0;
+        }
+
+        @Override
+        public double score(IntFeatVector v) {
+            double dScore = 0;
+            for (int p = v.first(); p >= 0; p = v.next(p)) {
+                int i = v.keyAt(p);
+                if (i < capacity) {
+                    dScore += get(i) * v.valueAt(p);
+                }
+            }
+            return dScore;
+        }
+    }
+}
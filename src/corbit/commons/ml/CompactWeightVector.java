@@ -0,0 +1,160 @@
+/*
+ * Corbit, a text analyzer
+ * 
+ * Copyright (c) 2010-2012, Jun Hatori
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the names of the authors nor the names of its contributors
+ *       may be used to endorse or promote products derived from this
+ *       software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package corbit.commons.ml;
+
+import java.util.Arrays;
+
+/**
+ * A read-only copy of a weight vector for decoding, which keeps only the
+ * non-zero weights as floats in an open-addressing table instead of a dense
+ * array of doubles.
+ */
+public class CompactWeightVector implements Weights {
+
+    private static final int FREE = -1;
+
+    private final int capacity;
+    private final int[] keys;
+    private final float[] values;
+    private final int mask;
+    private final int shift;
+    private int size;
+
+    public CompactWeightVector(Weights v) {
+        capacity = v.capacity();
+
+        // the non-zero weights in the order of their indices; those mapped
+        // from a binary model are read as they are stored
+        int n = 0;
+        int[] indices;
+        double[] weights;
+        if (v instanceof SparseWeights) {
+            SparseWeights s = (SparseWeights) v;
+            n = s.size();
+            indices = new int[n];
+            weights = new double[n];
+            for (int p = 0; p < n; ++p) {
+                indices[p] = s.keyAt(p);
+                weights[p] = s.valueAt(p);
+            }
+        } else {
+            for (int i = 0; i < capacity; ++i) {
+                if (v.get(i) != 0.0d) {
+                    ++n;
+                }
+            }
+            indices = new int[n];
+            weights = new double[n];
+            for (int i = 0, p = 0; p < n; ++i) {
+                double d = v.get(i);
+                if (d != 0.0d) {
+                    indices[p] = i;
+                    weights[p++] = d;
+                }
+            }
+        }
+
+        // keep the load factor at most 2/3
+        int n2 = 2;
+        while (n2 * 2 < n * 3) {
+            n2 <<= 1;
+        }
+        keys = new int[n2];
+        Arrays.fill(keys, FREE);
+        values = new float[n2];
+        mask = n2 - 1;
+        shift = 32 - Integer.numberOfTrailingZeros(n2);
+
+        for (int j = 0; j < n; ++j) {
+            int i = indices[j];
+            int p = slot(i);
+            while (keys[p] != FREE) {
+                p = (p + 1) & mask;
+            }
+            keys[p] = i;
+            values[p] = (float) weights[j];
+            ++size;
+        }
+    }
+
+    private int slot(int i) {
+        return (i * 0x9E3779B9) >>> shift & mask;
+    }
+
+    /**
+     * returns the number of weights stored
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * returns the approximate number of bytes used by the weights
+     */
+    public long byteSize() {
+        return 8L * keys.length;
+    }
+
+    @Override
+    public boolean isUpdatedConcurrently() {
+        return false;
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public double get(int i) {
+        for (int p = slot(i);; p = (p + 1) & mask) {
+            int k = keys[p];
+            if (k == i) {
+                return values[p];
+            } else if (k == FREE) {
+                return 0.0d;
+            }
+        }
+    }
+
+    @Override
+    public double getWithCheck(int i) {
+        return get(i);
+    }
+
+    @Override
+    public double score(IntFeatVector v) {
+        double dScore = 0;
+        for (int p = v.first(); p >= 0; p = v.next(p)) {
+            dScore += get(v.keyAt(p)) * v.valueAt(p);
+        }
+        return dScore;
+    }
+}
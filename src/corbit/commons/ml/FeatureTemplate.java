@@ -0,0 +1,157 @@
+/*
+ * Corbit, a text analyzer
+ * 
+ * Copyright (c) 2010-2012, Jun Hatori
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the names of the authors nor the names of its contributors
+ *       may be used to endorse or promote products derived from this
+ *       software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package corbit.commons.ml;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A feature template that combines atoms into a 64-bit key without building
+ * the feature string. The pattern is a literal string in which %s, %c and %d
+ * stand for a string atom (an ID given by FeatureAtoms), a character, and an
+ * integer, respectively; e.g. "SH02-%s-%s". The string form, which is what the
+ * vocabulary stores, is rendered only when a key has not been resolved yet.
+ */
+public final class FeatureTemplate {
+
+    private static final long M = 0x9E3779B97F4A7C15L;
+
+    private final String m_pattern;
+    private final String[] m_literals;
+    private final char[] m_types;
+    private final long m_seed;
+
+    public FeatureTemplate(String sPattern) {
+        List<String> literals = new ArrayList<>();
+        StringBuilder sbTypes = new StringBuilder();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < sPattern.length(); ++i) {
+            char c = sPattern.charAt(i);
+            char t = i + 1 < sPattern.length() ? sPattern.charAt(i + 1) : 0;
+            if (c == '%' && (t == 's' || t == 'c' || t == 'd')) {
+                literals.add(sb.toString());
+                sbTypes.append(t);
+                sb.setLength(0);
+                ++i;
+            } else {
+                sb.append(c);
+            }
+        }
+        literals.add(sb.toString());
+
+        m_pattern = sPattern;
+        m_literals = literals.toArray(new String[literals.size()]);
+        m_types = sbTypes.toString().toCharArray();
+
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < sPattern.length(); ++i) {
+            h = (h ^ sPattern.charAt(i)) * 0x100000001B3L;
+        }
+        m_seed = finish(h);
+    }
+
+    public int arity() {
+        return m_types.length;
+    }
+
+    private static long mix(long h, long a) {
+        h = (h ^ a) * M;
+        return h ^ (h >>> 29);
+    }
+
+    private static long finish(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    public long key(long a1) {
+        assert (m_types.length == 1);
+        return finish(mix(m_seed, a1));
+    }
+
+    public long key(long a1, long a2) {
+        assert (m_types.length == 2);
+        return finish(mix(mix(m_seed, a1), a2));
+    }
+
+    public long key(long a1, long a2, long a3) {
+        assert (m_types.length == 3);
+        return finish(mix(mix(mix(m_seed, a1), a2), a3));
+    }
+
+    public long key(long a1, long a2, long a3, long a4) {
+        assert (m_types.length == 4);
+        return finish(mix(mix(mix(mix(m_seed, a1), a2), a3), a4));
+    }
+
+    public long key(long a1, long a2, long a3, long a4, long a5) {
+        assert (m_types.length == 5);
+        return finish(mix(mix(mix(mix(mix(m_seed, a1), a2), a3), a4), a5));
+    }
+
+    public long key(long a1, long a2, long a3, long a4, long a5, long a6) {
+        assert (m_types.length == 6);
+        return finish(mix(mix(mix(mix(mix(mix(m_seed, a1), a2), a3), a4), a5), a6));
+    }
+
+    /**
+     * returns the string form of the feature, which is identical to the one
+     * built by concatenating the literals and the atoms
+     */
+    public String render(FeatureAtoms atoms, long... args) {
+        assert (args.length == m_types.length);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < m_types.length; ++i) {
+            sb.append(m_literals[i]);
+            switch (m_types[i]) {
+                case 's':
+                    sb.append(atoms.get((int) args[i]));
+                    break;
+                case 'c':
+                    sb.append((char) args[i]);
+                    break;
+                default:
+                    sb.append(args[i]);
+                    break;
+            }
+        }
+        sb.append(m_literals[m_types.length]);
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return m_pattern;
+    }
+}
@@ -31,39 +31,214 @@ package corbit.commons.ml;
 
 import corbit.commons.Vocab;
 import corbit.commons.io.Console;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Arrays;
 
-public class IntFeatVector extends HashMap<Integer, Double> {
+/**
+ * A sparse vector from non-negative feature indices to values, stored in
+ * primitive arrays with open addressing. Entries can be visited without
+ * allocation as follows:
+ *
+ * <pre>
+ * for (int p = v.first(); p >= 0; p = v.next(p))
+ *     use(v.keyAt(p), v.valueAt(p));
+ * </pre>
+ */
+public class IntFeatVector {
+
+    private static final int FREE = -1;
+    private static final int MIN_CAPACITY = 8;
+
+    private int[] keys;
+    private double[] values;
+    private int mask;
+    private int size;
+
+    public IntFeatVector() {
+        this(MIN_CAPACITY);
+    }
 
-    private static final long serialVersionUID = 1L;
+    public IntFeatVector(int expected) {
+        int n = MIN_CAPACITY;
+        while (n < expected * 2) {
+            n <<= 1;
+        }
+        allocate(n);
+    }
 
     public IntFeatVector(IntFeatVector v) {
-        super(v);
+        keys = Arrays.copyOf(v.keys, v.keys.length);
+        values = Arrays.copyOf(v.values, v.values.length);
+        mask = v.mask;
+        size = v.size;
     }
 
-    public IntFeatVector() {
-        super();
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new double[capacity];
+        Arrays.fill(keys, FREE);
+        mask = capacity - 1;
     }
 
-    public void append(IntFeatVector v) {
-        Iterator<Integer> it = v.keySet().iterator();
-        while (it.hasNext()) {
-            int i = it.next();
-            double val = containsKey(i) ? get(i) : 0.0d;
-            put(i, val + v.get(i));
+    private static int slot(int key, int mask) {
+        return (key * 0x9E3779B9 >>> 16) & mask;
+    }
+
+    private int find(int key) {
+        for (int p = slot(key, mask);; p = (p + 1) & mask) {
+            int k = keys[p];
+            if (k == key) {
+                return p;
+            } else if (k == FREE) {
+                return -1 - p;
+            }
+        }
+    }
+
+    /* returns the slot of the key, inserting a zero entry if necessary */
+    private int insert(int key) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Negative index: " + key);
+        }
+        int p = find(key);
+        if (p >= 0) {
+            return p;
         }
+        if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length << 1);
+            p = find(key);
+        }
+        p = -1 - p;
+        keys[p] = key;
+        values[p] = 0.0d;
+        ++size;
+        return p;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        double[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; ++i) {
+            int k = oldKeys[i];
+            if (k != FREE) {
+                int p = -1 - find(k);
+                keys[p] = k;
+                values[p] = oldValues[i];
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(int i) {
+        return find(i) >= 0;
+    }
+
+    /**
+     * returns the value of the index, or 0 if it is not contained
+     */
+    public double get(int i) {
+        int p = find(i);
+        return p >= 0 ? values[p] : 0.0d;
+    }
+
+    public void put(int i, double d) {
+        int p = insert(i);
+        values[p] = d;
+    }
+
+    /**
+     * adds d to the value of the index
+     */
+    public void add(int i, double d) {
+        int p = insert(i);
+        values[p] += d;
+    }
+
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, FREE);
+            size = 0;
+        }
+    }
+
+    /*
+     * iteration over the occupied slots
+     */
+
+    public int first() {
+        return next(-1);
+    }
+
+    public int next(int p) {
+        for (++p; p < keys.length; ++p) {
+            if (keys[p] != FREE) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    public int keyAt(int p) {
+        return keys[p];
+    }
+
+    public double valueAt(int p) {
+        return values[p];
+    }
+
+    /*
+     * in-place arithmetic
+     */
+
+    public void append(IntFeatVector v) {
+        append(v, 1.0d);
     }
 
     public void subtract(IntFeatVector v) {
-        Iterator<Integer> it = v.keySet().iterator();
-        while (it.hasNext()) {
-            int i = it.next();
-            double val = containsKey(i) ? get(i) : 0.0d;
-            put(i, val - v.get(i));
+        append(v, -1.0d);
+    }
+
+    /**
+     * adds v multiplied by d
+     */
+    public void append(IntFeatVector v, double d) {
+        int[] vkeys = v.keys;
+        double[] vvalues = v.values;
+        for (int p = 0; p < vkeys.length; ++p) {
+            if (vkeys[p] != FREE) {
+                int q = insert(vkeys[p]);
+                values[q] += vvalues[p] * d;
+            }
+        }
+    }
+
+    public void multiplyBy(double d) {
+        for (int p = 0; p < keys.length; ++p) {
+            if (keys[p] != FREE) {
+                values[p] *= d;
+            }
+        }
+    }
+
+    public void divideBy(double d) {
+        for (int p = 0; p < keys.length; ++p) {
+            if (keys[p] != FREE) {
+                values[p] /= d;
+            }
         }
     }
 
+    /*
+     * arithmetic on copies
+     */
+
     public static IntFeatVector append(IntFeatVector v1, IntFeatVector v2) {
         IntFeatVector v = new IntFeatVector(v1);
         v.append(v2);
@@ -78,47 +253,21 @@ public class IntFeatVector extends HashMap<Integer, Double> {
 
     public static IntFeatVector multiply(IntFeatVector v, double d) {
         IntFeatVector r = new IntFeatVector(v);
-        Iterator<Integer> it = v.keySet().iterator();
-        while (it.hasNext()) {
-            int i = it.next();
-            r.put(i, r.get(i) * d);
-        }
+        r.multiplyBy(d);
         return r;
     }
 
     public static IntFeatVector divide(IntFeatVector v, double d) {
         IntFeatVector r = new IntFeatVector(v);
-        Iterator<Integer> it = v.keySet().iterator();
-        while (it.hasNext()) {
-            int i = it.next();
-            r.put(i, r.get(i) / d);
-        }
+        r.divideBy(d);
         return r;
     }
 
-    public void multiplyBy(double d) {
-        Iterator<Integer> it = keySet().iterator();
-        while (it.hasNext()) {
-            int i = it.next();
-            put(i, get(i) * d);
-        }
-    }
-
-    public void divideBy(double d) {
-        Iterator<Integer> it = keySet().iterator();
-        while (it.hasNext()) {
-            int i = it.next();
-            put(i, get(i) / d);
-        }
-    }
-
     public void print(Vocab voc) {
-        Iterator<Integer> it = keySet().iterator();
-        while (it.hasNext()) {
-            int i = it.next();
-            double d = this.get(i);
+        for (int p = first(); p >= 0; p = next(p)) {
+            double d = values[p];
             if (d != 0.0d) {
-                Console.writeLine(voc.get(i) + "\t" + d);
+                Console.writeLine(voc.get(keys[p]) + "\t" + d);
             }
         }
         Console.writeLine();
@@ -0,0 +1,184 @@
+/*
+ * Corbit, a text analyzer
+ * 
+ * Copyright (c) 2010-2012, Jun Hatori
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the names of the authors nor the names of its contributors
+ *       may be used to endorse or promote products derived from this
+ *       software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package corbit.commons.ml;
+
+import corbit.commons.io.BinaryModel;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Read-only weights on a buffer mapped from a binary model, which keeps only
+ * the non-zero weights with their indices in ascending order. A directory
+ * holds the position of the first entry of each block of 2^BLOCK_BITS
+ * indices, so that a lookup only searches the entries of one block.
+ *
+ * The layout is as follows (little endian): number of entries (int), bound
+ * of the indices (int), number of blocks (int), padding to 8 bytes, block
+ * directory (int[number of blocks + 1]), indices (int[number of entries]),
+ * padding to 8 bytes, weights (double[number of entries]).
+ */
+class SparseWeights implements Weights {
+
+    private static final int BLOCK_BITS = 6;
+    private final IntBuffer starts;
+    private final IntBuffer keys;
+    private final DoubleBuffer values;
+    private final int size;
+    private final int bound;
+
+    private SparseWeights(ByteBuffer b) {
+        size = b.getInt();
+        bound = b.getInt();
+        int nBlocks = b.getInt();
+        BinaryModel.align(b);
+        starts = BinaryModel.slice(b, 4 * (nBlocks + 1)).asIntBuffer();
+        keys = BinaryModel.slice(b, 4 * size).asIntBuffer();
+        BinaryModel.align(b);
+        values = BinaryModel.slice(b, 8 * size).asDoubleBuffer();
+    }
+
+    /**
+     * maps the weights at the position of b and advances b past them
+     */
+    static SparseWeights read(ByteBuffer b) {
+        return new SparseWeights(b);
+    }
+
+    static void write(Weights v, BinaryModel.Writer w) throws IOException {
+        int n = 0;
+        int iBound = 0;
+        for (int i = 0; i < v.capacity(); ++i) {
+            if (v.get(i) != 0.0d) {
+                ++n;
+                iBound = i + 1;
+            }
+        }
+        int nBlocks = (iBound + (1 << BLOCK_BITS) - 1) >> BLOCK_BITS;
+        w.putInt(n);
+        w.putInt(iBound);
+        w.putInt(nBlocks);
+        w.align();
+        int p = 0;
+        for (int i = 0; i < iBound; ++i) {
+            if ((i & ((1 << BLOCK_BITS) - 1)) == 0) {
+                w.putInt(p);
+            }
+            if (v.get(i) != 0.0d) {
+                ++p;
+            }
+        }
+        w.putInt(p);
+        for (int i = 0; i < iBound; ++i) {
+            if (v.get(i) != 0.0d) {
+                w.putInt(i);
+            }
+        }
+        w.align();
+        for (int i = 0; i < iBound; ++i) {
+            double d = v.get(i);
+            if (d != 0.0d) {
+                w.putDouble(d);
+            }
+        }
+    }
+
+    /**
+     * returns the number of weights stored
+     */
+    int size() {
+        return size;
+    }
+
+    int keyAt(int p) {
+        return keys.get(p);
+    }
+
+    double valueAt(int p) {
+        return values.get(p);
+    }
+
+    /**
+     * sets the weights at the stored indices of a, which must be at least as
+     * long as capacity()
+     */
+    void copyTo(double[] a) {
+        for (int p = 0; p < size; ++p) {
+            a[keys.get(p)] = values.get(p);
+        }
+    }
+
+    @Override
+    public boolean isUpdatedConcurrently() {
+        return false;
+    }
+
+    @Override
+    public int capacity() {
+        return bound;
+    }
+
+    @Override
+    public double get(int i) {
+        if (i >= bound) {
+            return 0.0d;
+        }
+        int b = i >> BLOCK_BITS;
+        int lo = starts.get(b);
+        int hi = starts.get(b + 1) - 1;
+        while (lo <= hi) {
+            int m = (lo + hi) >>> 1;
+            int k = keys.get(m);
+            if (k < i) {
+                lo = m + 1;
+            } else if (k > i) {
+                hi = m - 1;
+            } else {
+                return values.get(m);
+            }
+        }
+        return 0.0d;
+    }
+
+    @Override
+    public double getWithCheck(int i) {
+        return get(i);
+    }
+
+    @Override
+    public double score(IntFeatVector v) {
+        double dScore = 0;
+        for (int p = v.first(); p >= 0; p = v.next(p)) {
+            dScore += get(v.keyAt(p)) * v.valueAt(p);
+        }
+        return dScore;
+    }
+}
@@ -29,14 +29,16 @@
  */
 package corbit.commons.ml;
 
+import corbit.commons.io.BinaryModel;
 import corbit.commons.util.Statics;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.Iterator;
+import java.util.List;
 
-public class WeightVector {
+public class WeightVector implements Weights {
 
     protected static final int DEFAULT_CAPACITY = 1 << 24;
     protected double[] vector;
@@ -47,7 +49,13 @@ public class WeightVector {
         capacity = DEFAULT_CAPACITY;
     }
 
+    protected WeightVector(int iCapacity) {
+        vector = new double[iCapacity];
+        capacity = iCapacity;
+    }
+
     public WeightVector(WeightVector v) {
+        v.ensureLoaded();
         vector = Arrays.copyOf(v.vector, v.vector.length);
         capacity = v.capacity;
     }
@@ -56,10 +64,29 @@ public class WeightVector {
         Arrays.fill(vector, 0.0d);
     }
 
+    /**
+     * allocates the dense vector if a subclass defers it; called before the
+     * vector of another object is accessed directly
+     */
+    protected void ensureLoaded() {
+    }
+
+    @Override
+    public boolean isUpdatedConcurrently() {
+        return false;
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
     public double getWithCheck(int i) {
         return (i < capacity) ? vector[i] : 0.0;
     }
 
+    @Override
     public double get(int i) {
         return vector[i];
     }
@@ -85,31 +112,76 @@ public class WeightVector {
         capacity = i;
     }
 
-    public void append(IntFeatVector v) {
-        Iterator<Integer> it = v.keySet().iterator();
-        while (it.hasNext()) {
-            int i = it.next();
-            ensureCapacity(i);
-            vector[i] = vector[i] + v.get(i);
+    /**
+     * copies the weights of v
+     */
+    public void assign(WeightVector v) {
+        ensureLoaded();
+        v.ensureLoaded();
+        if (capacity < v.capacity) {
+            vector = new double[v.capacity];
+            capacity = v.capacity;
+        }
+        System.arraycopy(v.vector, 0, vector, 0, v.capacity);
+        Arrays.fill(vector, v.capacity, capacity, 0.0d);
+    }
+
+    /**
+     * sets the weights to the average of vs, which may contain this vector
+     */
+    protected void average(List<? extends WeightVector> vs) {
+        boolean bSelf = false;
+        ensureLoaded();
+        for (WeightVector v : vs) {
+            v.ensureLoaded();
+            bSelf |= v == this;
+            if (v.capacity > capacity) {
+                resize(v.capacity);
+            }
+        }
+        if (!bSelf) {
+            Arrays.fill(vector, 0.0d);
         }
+        for (WeightVector v : vs) {
+            if (v == this) {
+                continue;
+            }
+            for (int i = 0; i < v.capacity; ++i) {
+                vector[i] += v.vector[i];
+            }
+        }
+        double d = vs.size();
+        for (int i = 0; i < capacity; ++i) {
+            vector[i] /= d;
+        }
+    }
+
+    public void append(IntFeatVector v) {
+        append(v, 1.0d);
     }
 
     public void subtract(IntFeatVector v) {
-        Iterator<Integer> it = v.keySet().iterator();
-        while (it.hasNext()) {
-            int i = it.next();
+        append(v, -1.0d);
+    }
+
+    /**
+     * adds v multiplied by d without materializing the scaled vector
+     */
+    public void append(IntFeatVector v, double d) {
+        for (int p = v.first(); p >= 0; p = v.next(p)) {
+            int i = v.keyAt(p);
             ensureCapacity(i);
-            vector[i] = vector[i] - v.get(i);
+            vector[i] = vector[i] + v.valueAt(p) * d;
         }
     }
 
+    @Override
     public double score(IntFeatVector v) {
         double dScore = 0;
-        Iterator<Integer> it = v.keySet().iterator();
-        while (it.hasNext()) {
-            int i = it.next();
+        for (int p = v.first(); p >= 0; p = v.next(p)) {
+            int i = v.keyAt(p);
             if (i < capacity) {
-                dScore += get(i) * v.get(i);
+                dScore += vector[i] * v.valueAt(p);
             }
         }
         return dScore;
@@ -150,4 +222,20 @@ public class WeightVector {
         }
         System.err.println(String.format("%d/%d weights loaded.", iNumElem, iMaxIndex));
     }
+
+    /**
+     * writes the non-zero weights with their indices (see SparseWeights)
+     */
+    public void save(BinaryModel.Writer w) throws IOException {
+        SparseWeights.write(this, w);
+    }
+
+    public void load(ByteBuffer b) {
+        SparseWeights s = SparseWeights.read(b);
+        if (s.capacity() > 0) {
+            ensureCapacity(s.capacity() - 1);
+        }
+        s.copyTo(vector);
+        System.err.println(String.format("%d weights loaded.", s.size()));
+    }
 }
@@ -76,6 +76,7 @@ public class SDAction
 	private final String m_action;
 	private final String m_tag;
 	private final int m_length;
+	private final String m_string;
 
 	private SDAction(String s)
 	{
@@ -94,6 +95,9 @@ public class SDAction
 		m_action = sAct;
 		m_tag = sTag;
 		m_length = length;
+		m_string = length > 0 ?
+				sAct + length + "-" + sTag :
+				sTag != null ? sAct + "-" + sTag : sAct;
 	}
 
 	public static SDAction getLabeledReduceAction(boolean bRight, ArcLabel label)
@@ -202,9 +206,7 @@ public class SDAction
 	@Override
 	public String toString()
 	{
-		return m_length > 0 ?
-				m_action + m_length + "-" + m_tag :
-				m_tag != null ? m_action + "-" + m_tag : m_action;
+		return m_string;
 	}
 
 }
@@ -0,0 +1,136 @@
+/*
+ * Corbit, a text analyzer
+ * 
+ * Copyright (c) 2010-2012, Jun Hatori
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the names of the authors nor the names of its contributors
+ *       may be used to endorse or promote products derived from this
+ *       software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package corbit.commons.util;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An immutable sequence that can be extended and concatenated in constant
+ * time by sharing the existing sequences instead of copying them. Each node
+ * stands for left + right + [last], where left and right may be absent.
+ */
+public final class Chain<T> implements Iterable<T> {
+
+    private static final Chain<Object> EMPTY = new Chain<>(null, null, null, 0);
+
+    private final Chain<T> left;
+    private final Chain<T> right;
+    private final T last;
+    private final int size;
+
+    private Chain(Chain<T> left, Chain<T> right, T last, int size) {
+        this.left = left;
+        this.right = right;
+        this.last = last;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> Chain<T> empty() {
+        return (Chain<T>) EMPTY;
+    }
+
+    /**
+     * returns [t]
+     */
+    public static <T> Chain<T> of(T t) {
+        return new Chain<>(null, null, t, 1);
+    }
+
+    /**
+     * returns c + [t]
+     */
+    public static <T> Chain<T> of(Chain<T> c, T t) {
+        return of(c, null, t);
+    }
+
+    /**
+     * returns c1 + c2 + [t]
+     */
+    public static <T> Chain<T> of(Chain<T> c1, Chain<T> c2, T t) {
+        if (c1 != null && c1.size == 0) {
+            c1 = null;
+        }
+        if (c2 != null && c2.size == 0) {
+            c2 = null;
+        }
+        int n = 1 + (c1 != null ? c1.size : 0) + (c2 != null ? c2.size : 0);
+        return new Chain<>(c1, c2, t, n);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<T> toList() {
+        T[] a = (T[]) new Object[size];
+        Deque<Chain<T>> nodes = new ArrayDeque<>();
+        Deque<Integer> ends = new ArrayDeque<>();
+        if (size > 0) {
+            nodes.push(this);
+            ends.push(size);
+        }
+        // fill the array from the end of each node's range
+        while (!nodes.isEmpty()) {
+            Chain<T> c = nodes.pop();
+            int end = ends.pop();
+            a[--end] = c.last;
+            if (c.right != null) {
+                nodes.push(c.right);
+                ends.push(end);
+                end -= c.right.size;
+            }
+            if (c.left != null) {
+                nodes.push(c.left);
+                ends.push(end);
+            }
+        }
+        return Arrays.asList(a);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return toList().iterator();
+    }
+
+    @Override
+    public String toString() {
+        return toList().toString();
+    }
+}
\ No newline at end of file
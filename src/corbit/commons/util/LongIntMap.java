@@ -0,0 +1,178 @@
+/*
+ * Corbit, a text analyzer
+ * 
+ * Copyright (c) 2010-2012, Jun Hatori
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the names of the authors nor the names of its contributors
+ *       may be used to endorse or promote products derived from this
+ *       software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package corbit.commons.util;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * An open-addressing map from primitive long keys to int values. Lookups are
+ * lock-free and may run concurrently with insertions, which are serialized.
+ */
+public class LongIntMap {
+
+    private static final long FREE = 0L;
+
+    private static final class Table {
+
+        final AtomicLongArray keys;
+        final AtomicIntegerArray values;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new AtomicLongArray(capacity);
+            values = new AtomicIntegerArray(capacity);
+            mask = capacity - 1;
+        }
+    }
+
+    private volatile Table m_table;
+    private volatile boolean m_bHasFree;
+    private volatile int m_freeValue;
+    private int m_size;
+
+    public LongIntMap() {
+        this(16);
+    }
+
+    public LongIntMap(int capacity) {
+        int n = 16;
+        while (n < capacity * 2) {
+            n <<= 1;
+        }
+        m_table = new Table(n);
+    }
+
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ h >>> 32) & mask;
+    }
+
+    public int size() {
+        return m_size;
+    }
+
+    /**
+     * returns the value associated with the key, or iDefault if there is none
+     */
+    public int get(long key, int iDefault) {
+        if (key == FREE) {
+            return m_bHasFree ? m_freeValue : iDefault;
+        }
+        Table t = m_table;
+        for (int i = slot(key, t.mask);; i = (i + 1) & t.mask) {
+            long k = t.keys.get(i);
+            if (k == key) {
+                return t.values.get(i);
+            } else if (k == FREE) {
+                return iDefault;
+            }
+        }
+    }
+
+    public synchronized void put(long key, int value) {
+        if (key == FREE) {
+            if (!m_bHasFree) {
+                ++m_size;
+            }
+            m_freeValue = value;
+            m_bHasFree = true;
+            return;
+        }
+        Table t = m_table;
+        if ((m_size + 1) * 2 > t.mask + 1) {
+            t = rehash(t, (t.mask + 1) << 1);
+            m_table = t;
+        }
+        if (insert(t, key, value)) {
+            ++m_size;
+        }
+    }
+
+    private static boolean insert(Table t, long key, int value) {
+        for (int i = slot(key, t.mask);; i = (i + 1) & t.mask) {
+            long k = t.keys.get(i);
+            if (k == key) {
+                t.values.set(i, value);
+                return false;
+            } else if (k == FREE) {
+                // the value must be visible before the key is published
+                t.values.set(i, value);
+                t.keys.set(i, key);
+                return true;
+            }
+        }
+    }
+
+    private static Table rehash(Table t, int capacity) {
+        Table tNew = new Table(capacity);
+        for (int i = 0; i <= t.mask; ++i) {
+            long k = t.keys.get(i);
+            if (k != FREE) {
+                insert(tNew, k, t.values.get(i));
+            }
+        }
+        return tNew;
+    }
+
+    /**
+     * replaces every value v with mapping[v]; entries with a negative value,
+     * or mapped to a negative value, are removed
+     */
+    public synchronized void remap(int[] mapping) {
+        Table t = m_table;
+        Table tNew = new Table(t.mask + 1);
+        int iNewSize = 0;
+        for (int i = 0; i <= t.mask; ++i) {
+            long k = t.keys.get(i);
+            int v = t.values.get(i);
+            if (k != FREE && v >= 0 && v < mapping.length && mapping[v] >= 0) {
+                insert(tNew, k, mapping[v]);
+                ++iNewSize;
+            }
+        }
+        if (m_bHasFree) {
+            int v = m_freeValue;
+            m_bHasFree = v >= 0 && v < mapping.length && mapping[v] >= 0;
+            if (m_bHasFree) {
+                m_freeValue = mapping[v];
+                ++iNewSize;
+            }
+        }
+        m_size = iNewSize;
+        m_table = tNew;
+    }
+
+    public synchronized void clear() {
+        m_table = new Table(16);
+        m_bHasFree = false;
+        m_size = 0;
+    }
+}
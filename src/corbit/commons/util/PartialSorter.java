@@ -0,0 +1,140 @@
+/*
+ * Corbit, a text analyzer
+ * 
+ * Copyright (c) 2010-2012, Jun Hatori
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the names of the authors nor the names of its contributors
+ *       may be used to endorse or promote products derived from this
+ *       software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package corbit.commons.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Partial sort of a list, as used for beam pruning. The scratch arrays are
+ * kept and reused across calls, so that sorting does not allocate once they
+ * have grown to the largest list; an instance must not be shared by threads.
+ */
+public class PartialSorter<T> {
+
+    private int[] m_heap = new int[16];
+    private long[] m_selected = new long[1];
+    private final ArrayList<T> m_head = new ArrayList<>();
+
+    /**
+     * Rearranges l so that its first k elements are the same as those of a
+     * stable sort with c, i.e. equal elements stay in their original order.
+     * The remaining elements follow in their original relative order. Takes
+     * O(n log k) time instead of O(n log n) for sorting the whole list.
+     */
+    public void sort(List<T> l, int k, Comparator<? super T> c) {
+        int n = l.size();
+        if (k > n) {
+            k = n;
+        }
+        if (k <= 0) {
+            return;
+        }
+        if (m_heap.length < k) {
+            m_heap = new int[Math.max(k, m_heap.length * 2)];
+        }
+        int[] heap = m_heap;
+
+        // max-heap of the indices of the k smallest elements seen so far
+        int size = 0;
+        for (int i = 0; i < n; ++i) {
+            if (size < k) {
+                int j = size++;
+                while (j > 0) {
+                    int parent = (j - 1) >> 1;
+                    if (!precedes(l, c, heap[parent], i)) {
+                        break;
+                    }
+                    heap[j] = heap[parent];
+                    j = parent;
+                }
+                heap[j] = i;
+            } else if (precedes(l, c, i, heap[0])) {
+                siftDown(l, c, heap, 0, i, k);
+            }
+        }
+
+        // heapsort the selected indices into the order of the stable sort
+        for (int m = k - 1; m > 0; --m) {
+            int i = heap[m];
+            heap[m] = heap[0];
+            siftDown(l, c, heap, 0, i, m);
+        }
+
+        int iWords = (n + 63) >> 6;
+        if (m_selected.length < iWords) {
+            m_selected = new long[Math.max(iWords, m_selected.length * 2)];
+        }
+        long[] selected = m_selected;
+        for (int i = 0; i < k; ++i) {
+            selected[heap[i] >> 6] |= 1L << heap[i];
+            m_head.add(l.get(heap[i]));
+        }
+        // move the others to the end, keeping their order
+        for (int i = n - 1, j = n - 1; i >= 0; --i) {
+            if ((selected[i >> 6] & 1L << i) == 0) {
+                l.set(j--, l.get(i));
+            }
+        }
+        for (int i = 0; i < k; ++i) {
+            l.set(i, m_head.get(i));
+        }
+        for (int w = 0; w < iWords; ++w) {
+            selected[w] = 0L;
+        }
+        m_head.clear();
+    }
+
+    /* puts i in the place of heap[j] in the max-heap heap[0..size) */
+    private static <T> void siftDown(List<T> l, Comparator<? super T> c, int[] heap, int j, int i, int size) {
+        while (true) {
+            int child = 2 * j + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && precedes(l, c, heap[child], heap[child + 1])) {
+                ++child;
+            }
+            if (!precedes(l, c, i, heap[child])) {
+                break;
+            }
+            heap[j] = heap[child];
+            j = child;
+        }
+        heap[j] = i;
+    }
+
+    /* whether the i-th element comes before the j-th in a stable sort */
+    private static <T> boolean precedes(List<T> l, Comparator<? super T> c, int i, int j) {
+        int r = c.compare(l.get(i), l.get(j));
+        return r < 0 || r == 0 && i < j;
+    }
+}
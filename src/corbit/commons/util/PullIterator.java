@@ -0,0 +1,120 @@
+/*
+ * Corbit, a text analyzer
+ * 
+ * Copyright (c) 2010-2012, Jun Hatori
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the names of the authors nor the names of its contributors
+ *       may be used to endorse or promote products derived from this
+ *       software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package corbit.commons.util;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An iterator whose elements are read on demand by computeNext() in the
+ * calling thread, which calls endOfData() instead at the end. Elements may be
+ * null. The resources of the iterator are released by close(), which is
+ * called once at the end of the elements or by shutdown(), whichever comes
+ * first.
+ */
+public abstract class PullIterator<T> implements Iterator<T>, Iterable<T> {
+
+    private enum State {
+
+        NOT_READY, READY, DONE, CLOSED
+    }
+    private State state = State.NOT_READY;
+    private T nextValue = null;
+
+    /**
+     * returns the next element, or the value of endOfData() if there is none
+     */
+    protected abstract T computeNext();
+
+    protected final T endOfData() {
+        state = State.DONE;
+        return null;
+    }
+
+    protected void close() {
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (state == State.NOT_READY) {
+            T value;
+            try {
+                value = computeNext();
+            } catch (RuntimeException e) {
+                shutdown();
+                throw e;
+            }
+            if (state == State.DONE) {
+                shutdown();
+            } else {
+                nextValue = value;
+                state = State.READY;
+            }
+        }
+        return state == State.READY;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T value = nextValue;
+        nextValue = null;
+        state = State.NOT_READY;
+        return value;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    public void shutdown() {
+        if (state != State.CLOSED) {
+            state = State.CLOSED;
+            nextValue = null;
+            close();
+        }
+    }
+
+    /**
+     * returns an iterator reading this one ahead on another thread in batches
+     * of iBatch elements
+     */
+    public ReadAhead<T> readAhead(int iBatch) {
+        return new ReadAhead<>(this, iBatch);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Corbit, a text analyzer
+ * 
+ * Copyright (c) 2010-2012, Jun Hatori
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the names of the authors nor the names of its contributors
+ *       may be used to endorse or promote products derived from this
+ *       software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package corbit.commons.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads another iterator ahead on a background thread, which hands the
+ * elements over in batches, so that reading overlaps with the work of the
+ * consumer at the cost of one handoff per batch rather than per element.
+ * At most two batches are held besides the one being consumed.
+ */
+public class ReadAhead<T> extends PullIterator<T> {
+
+    private static final List<Object> END = new ArrayList<>();
+    private final BlockingQueue<List<Object>> m_queue = new ArrayBlockingQueue<>(2);
+    private final PullIterator<T> m_source;
+    private final int m_iBatch;
+    private final Thread m_thread;
+    private volatile RuntimeException m_thrown = null;
+    private Iterator<Object> m_batch = null;
+
+    public ReadAhead(PullIterator<T> source, int iBatch) {
+        if (iBatch < 1) {
+            throw new IllegalArgumentException("The batch size must be positive: " + iBatch);
+        }
+        m_source = source;
+        m_iBatch = iBatch;
+        m_thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    List<Object> l = new ArrayList<>(m_iBatch);
+                    while (m_source.hasNext()) {
+                        l.add(m_source.next());
+                        if (l.size() == m_iBatch) {
+                            m_queue.put(l);
+                            l = new ArrayList<>(m_iBatch);
+                        }
+                    }
+                    if (!l.isEmpty()) {
+                        m_queue.put(l);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } catch (RuntimeException e) {
+                    m_thrown = e;
+                } finally {
+                    m_source.shutdown();
+                }
+                try {
+                    m_queue.put(END);
+                } catch (InterruptedException e) {
+                }
+            }
+        });
+        m_thread.setDaemon(true);
+        m_thread.start();
+    }
+
+    @Override
+    protected T computeNext() {
+        while (m_batch == null || !m_batch.hasNext()) {
+            List<Object> l;
+            try {
+                l = m_queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return endOfData();
+            }
+            if (l == END) {
+                if (m_thrown != null) {
+                    throw m_thrown;
+                }
+                return endOfData();
+            }
+            m_batch = l.iterator();
+        }
+        @SuppressWarnings("unchecked")
+        T value = (T) m_batch.next();
+        return value;
+    }
+
+    @Override
+    protected void close() {
+        m_thread.interrupt();
+    }
+}
@@ -29,6 +29,7 @@
  */
 package corbit.commons.util;
 
+import java.text.Normalizer;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -101,18 +102,34 @@ public class Statics {
     }
 
     public static String trimSpecial(String s) {
-        while (true) {
-            int iLen = s.length();
-            if (iLen == 0) {
-                break;
-            }
-            char c;
-            if ((c = s.charAt(iLen - 1)) == ' ' || c == '\r' || c == '\n') {
-                s = s.substring(0, iLen - 1);
-            } else if ((c = s.charAt(0)) == ' ' || c == '\r' || c == '\n' || c == 0xfeff) {
-                s = s.substring(1, iLen);
-            } else {
-                break;
+        int iBegin = 0;
+        int iEnd = s.length();
+        char c;
+        while (iEnd > iBegin && ((c = s.charAt(iEnd - 1)) == ' ' || c == '\r' || c == '\n')) {
+            --iEnd;
+        }
+        while (iBegin < iEnd && ((c = s.charAt(iBegin)) == ' ' || c == '\r' || c == '\n' || c == 0xfeff)) {
+            ++iBegin;
+        }
+        return s.substring(iBegin, iEnd);
+    }
+
+    /**
+     * true if NFKC never changes c whatever the characters around it, which
+     * holds for ASCII and the unified CJK ideographs
+     */
+    public static boolean isNFKCInert(char c) {
+        return c < 0x80 || (c >= 0x4e00 && c <= 0x9fff) || (c >= 0x3400 && c <= 0x4dbf);
+    }
+
+    /**
+     * NFKC-normalizes s, skipping the Normalizer when all the characters of s
+     * are inert
+     */
+    public static String normalizeNFKC(String s) {
+        for (int i = 0; i < s.length(); ++i) {
+            if (!isNFKCInert(s.charAt(i))) {
+                return Normalizer.normalize(s, Normalizer.Form.NFKC);
             }
         }
         return s;
@@ -32,7 +32,7 @@ package corbit.commons.word;
 import corbit.commons.util.Statics;
 import java.util.Arrays;
 
-public class UnsegmentedSentence {
+public class UnsegmentedSentence implements CharSequence {
 
     int hash = 0;
     final char[] chars;
@@ -41,6 +41,7 @@ public class UnsegmentedSentence {
         chars = _chars;
     }
 
+    @Override
     public int length() {
         return chars.length;
     }
@@ -49,6 +50,11 @@ public class UnsegmentedSentence {
         return new String(chars, begin, end - begin);
     }
 
+    @Override
+    public CharSequence subSequence(int begin, int end) {
+        return substring(begin, end);
+    }
+
     public String substringWithPadding(int begin, int end) {
         String s = "";
         if (begin < 0) {
@@ -62,6 +68,7 @@ public class UnsegmentedSentence {
         return s;
     }
 
+    @Override
     public char charAt(int index) {
         return chars[index];
     }
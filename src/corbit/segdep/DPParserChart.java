@@ -31,7 +31,6 @@
 package corbit.segdep;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -39,6 +38,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 
 import corbit.commons.util.Pair;
+import corbit.commons.util.PartialSorter;
 import corbit.commons.util.Statics;
 
 public class DPParserChart
@@ -49,6 +49,9 @@ public class DPParserChart
 	double m_dMargin = 0.0d;
 	boolean m_dp = true;
 	LinkedHashMap<SRParserState,Pair<SRParserState,double[]>> m_entries;
+	// the entries being pruned; kept with the chart so that its array is reused
+	private final List<Entry<SRParserState,Pair<SRParserState,double[]>>> m_pruned = new ArrayList<Entry<SRParserState,Pair<SRParserState,double[]>>>();
+	private final PartialSorter<Entry<SRParserState,Pair<SRParserState,double[]>>> m_sorter = new PartialSorter<Entry<SRParserState,Pair<SRParserState,double[]>>>();
 
 	SRParserStateGenerator m_generator;
 
@@ -128,6 +131,17 @@ public class DPParserChart
 		m_iEvaluatedState = 0;
 	}
 
+	/**
+	 * Clears the entries and all the statistics, so that the chart can be
+	 * reused for another sentence.
+	 */
+	public void reset()
+	{
+		clear();
+		m_iTotalState = 0;
+		m_iMergedState = 0;
+	}
+
 	public SRParserState getKey(SRParserState s)
 	{
 		return m_entries.get(s).first;
@@ -144,7 +158,7 @@ public class DPParserChart
 			m_entries.remove(s);
 			m_entries.put(sMerged, new Pair<SRParserState,double[]>(sMerged, new double[] { sMerged.gold ? sMerged.scprf - m_dMargin : sMerged.scprf, sMerged.scins }));
 			++m_iMergedState;
-			if (_s.preds.size() == 1 && sMerged.preds.size() == 2)
+			if (_s.preds.length == 1 && sMerged.preds.length == 2)
 				++m_iMergedState;
 			m_iEvaluatedState += sMerged.nstates;
 			return sMerged;
@@ -159,7 +173,7 @@ public class DPParserChart
 
 	public static Pair<SRParserState,SRParserState> horizontalPrune(DPParserChart[] charts, int curidx, int goldidx, int iBeam)
 	{
-		List<Entry<SRParserState,Pair<SRParserState,double[]>>> l = new ArrayList<Entry<SRParserState,Pair<SRParserState,double[]>>>();
+		List<Entry<SRParserState,Pair<SRParserState,double[]>>> l = charts[0].m_pruned;
 
 		for (int i = 0; i < charts.length; ++i)
 		{
@@ -167,7 +181,7 @@ public class DPParserChart
 				l.add(p);
 			charts[i].m_entries.clear();
 		}
-		sort(l);
+		charts[0].sort(l, iBeam);
 		double[] dLastScore = new double[] { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
 		for (int i = 0; i < l.size(); ++i)
 		{
@@ -178,16 +192,18 @@ public class DPParserChart
 			charts[state.curstep].m_entries.put(state, value);
 		}
 		SRParserState _sref = null;
-		return new Pair<SRParserState,SRParserState>(l.get(0).getKey(), _sref);
+		SRParserState sBest = l.get(0).getKey();
+		l.clear();
+		return new Pair<SRParserState,SRParserState>(sBest, _sref);
 	}
 
 	public void prune(int iBeam)
 	{
-		List<Entry<SRParserState,Pair<SRParserState,double[]>>> l = new ArrayList<Entry<SRParserState,Pair<SRParserState,double[]>>>();
+		List<Entry<SRParserState,Pair<SRParserState,double[]>>> l = m_pruned;
 		for (Entry<SRParserState,Pair<SRParserState,double[]>> p: m_entries.entrySet())
 			l.add(p);
 		m_entries.clear();
-		sort(l);
+		sort(l, iBeam);
 		double[] dLastScore = new double[] { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
 		for (int i = 0; i < l.size(); ++i)
 		{
@@ -197,11 +213,11 @@ public class DPParserChart
 				break;
 			m_entries.put(state, value);
 		}
+		l.clear();
 	}
 
-	static void sort(List<Entry<SRParserState,Pair<SRParserState,double[]>>> l)
-	{
-		Collections.sort(l, new Comparator<Entry<SRParserState,Pair<SRParserState,double[]>>>()
+	static final Comparator<Entry<SRParserState,Pair<SRParserState,double[]>>> SCORE_ORDER =
+		new Comparator<Entry<SRParserState,Pair<SRParserState,double[]>>>()
 		{
 			public int compare(Entry<SRParserState,Pair<SRParserState,double[]>> p1,
 					Entry<SRParserState,Pair<SRParserState,double[]>> p2)
@@ -210,7 +226,20 @@ public class DPParserChart
 				double[] d2 = p2.getValue().second;
 				return d1[0] < d2[0] ? 1 : (d1[0] == d2[0] ? (d1[1] < d2[1] ? 1 : d1[1] == d2[1] ? 0 : -1) : -1);
 			}
-		});
+		};
+
+	/*
+	 * Only the first iBeam + 1 entries need to be in order: the pruning loops
+	 * stop at the first entry beyond the beam that does not tie dLastScore.
+	 * dLastScore stays at the lowest possible score as in the original code,
+	 * so entries beyond the beam that tie the last one in it are dropped, and
+	 * only those scored (-inf, -inf) are kept; if the (iBeam + 1)-th entry is
+	 * one of them so are all the rest, which then keep their original order
+	 * just as with a full (stable) sort.
+	 */
+	private void sort(List<Entry<SRParserState,Pair<SRParserState,double[]>>> l, int iBeam)
+	{
+		m_sorter.sort(l, iBeam + 1, SCORE_ORDER);
 	}
 
 	public SRParserState getBestEntry()
@@ -40,8 +40,10 @@ import corbit.commons.dict.CTB5TagDictionary;
 import corbit.commons.dict.CTB7TagDictionary;
 import corbit.commons.dict.TagDictionary;
 import corbit.commons.io.CTBReader;
+import corbit.commons.io.CompiledReader;
 import corbit.commons.io.Console;
 import corbit.commons.io.MaltReader;
+import corbit.commons.io.MappedCorpus;
 import corbit.commons.io.ParseReader;
 import corbit.commons.util.GlobalConf;
 
@@ -81,6 +83,11 @@ class Program
 			parser.initTagDictionary(lArgs.get(i));
 			lArgs.remove(i);
 		}
+		else if (lArgs.get(i).equals("--compact-weights"))
+		{
+			lArgs.remove(i);
+			parser.m_bCompactWeights = true;
+		}
 		else if (lArgs.get(i).equals("--no-feature-cache"))
 		{
 			lArgs.remove(i);
@@ -129,6 +136,11 @@ class Program
 			lArgs.remove(i);
 			parser.m_bCompressedModel = false;
 		}
+		else if (lArgs.get(i).equals("--binary-model"))
+		{
+			lArgs.remove(i);
+			parser.m_bBinaryModel = true;
+		}
 		else if (lArgs.get(i).equals("--show-stats"))
 		{
 			lArgs.remove(i);
@@ -184,7 +196,7 @@ class Program
 	 * @throws IOException
 	 * @throws ClassNotFoundException
 	 */
-	public static void main(String[] args) throws IOException, ClassNotFoundException
+	public static void main(String[] args) throws IOException, ClassNotFoundException, InterruptedException
 	{
 		Console.open();
 		List<String> lArgs = new LinkedList<String>(java.util.Arrays.asList(args));
@@ -292,6 +304,35 @@ class Program
 					lArgs.remove(i);
 					parser.m_bShuffle = false;
 				}
+				else if (lArgs.get(i).equals("--ipm"))
+				{
+					lArgs.remove(i);
+					parser.m_iMixWorkers = Integer.parseInt(lArgs.get(i));
+					lArgs.remove(i);
+				}
+				else if (lArgs.get(i).equals("--async-train"))
+				{
+					lArgs.remove(i);
+					parser.m_iAsyncTrain = Integer.parseInt(lArgs.get(i));
+					lArgs.remove(i);
+				}
+				else if (lArgs.get(i).equals("--hash-bits"))
+				{
+					lArgs.remove(i);
+					parser.m_iHashBits = Integer.parseInt(lArgs.get(i));
+					lArgs.remove(i);
+				}
+				else if (lArgs.get(i).equals("--signed-hash"))
+				{
+					lArgs.remove(i);
+					parser.m_bSignedHash = true;
+				}
+				else if (lArgs.get(i).equals("--ipm-interval"))
+				{
+					lArgs.remove(i);
+					parser.m_iMixInterval = Integer.parseInt(lArgs.get(i));
+					lArgs.remove(i);
+				}
 				else if (evalCommonOpt(parser, i, lArgs))
 					;
 				else if (evalExperimentalOpt(conf, i, lArgs))
@@ -322,6 +363,7 @@ class Program
 				else
 					System.err.println(sModelFile + " already exists. Will be overwritten.");
 			}
+			parser.initFeatureHashing();
 			if (sDictFile == null) usage("Error: dictionary file must be specified.", true);
 			if (sDictFile != null && !bResume)
 				parser.loadDictFromFile(sDictFile, iDictThreshold);
@@ -336,6 +378,7 @@ class Program
 			else
 			{
 				parser.loadModel(lArgs.get(1));
+				parser.freezeVocab();
 
 				String sParseFile = null;
 				boolean bPrintParams = false;
@@ -388,6 +431,7 @@ class Program
 				// TENTATIVE: for use of frequency map in dictionary
 				if (sDictFile != null)
 					parser.loadDictFromFile(sDictFile, iDictThreshold);
+				parser.compactWeights();
 				parser.test(lArgs.get(2), sParseFile);
 			}
 		}
@@ -398,10 +442,14 @@ class Program
 			else
 			{
 				parser.loadModel(lArgs.get(1));
+				parser.freezeVocab();
 				// parser.printDictFeatureWeights();
 				boolean bPrintParams = false;
 				String sDictFile = null;
 				int iDictThreshold = 0;
+				int iQueueSize = 1024;
+				boolean bQueueSize = false;
+				String sInputFile = null;
 				for (int i = 2; i < lArgs.size();)
 				{
 					if (lArgs.get(i).equals("--print-params"))
@@ -409,6 +457,19 @@ class Program
 						lArgs.remove(i);
 						bPrintParams = true;
 					}
+					else if (lArgs.get(i).equals("--input"))
+					{
+						lArgs.remove(i);
+						sInputFile = lArgs.get(i);
+						lArgs.remove(i);
+					}
+					else if (lArgs.get(i).equals("--queue"))
+					{
+						lArgs.remove(i);
+						iQueueSize = Integer.parseInt(lArgs.get(i));
+						bQueueSize = true;
+						lArgs.remove(i);
+					}
 					else if (lArgs.get(i).equals("--dict"))
 					{
 						lArgs.remove(i);
@@ -428,10 +489,70 @@ class Program
 					else
 						++i;
 				}
+				// the chunks of --input are bounded by the number of threads instead
+				if (sInputFile != null && bQueueSize)
+					usage("Error: --queue cannot be used with --input", true);
 				if (bPrintParams) parser.printProperties();
 				if (sDictFile != null) parser.loadDictFromFile(sDictFile, iDictThreshold);
+				parser.compactWeights();
 				System.err.println("Ready.");
-				parser.run();
+				if (sInputFile != null)
+					parser.run(sInputFile);
+				else
+					parser.run(iQueueSize);
+			}
+			System.err.println("done.");
+		}
+		else if (lArgs.get(0).equals("Serve"))
+		{
+			if (lArgs.size() < 2)
+				usage();
+			else
+			{
+				parser.loadModel(lArgs.get(1));
+				parser.freezeVocab();
+				boolean bPrintParams = false;
+				int iPort = 8090;
+				int iQueueSize = 1024;
+				long lTimeout = 60000;
+				for (int i = 2; i < lArgs.size();)
+				{
+					if (lArgs.get(i).equals("--print-params"))
+					{
+						lArgs.remove(i);
+						bPrintParams = true;
+					}
+					else if (lArgs.get(i).equals("--port"))
+					{
+						lArgs.remove(i);
+						iPort = Integer.parseInt(lArgs.get(i));
+						lArgs.remove(i);
+					}
+					else if (lArgs.get(i).equals("--queue"))
+					{
+						lArgs.remove(i);
+						iQueueSize = Integer.parseInt(lArgs.get(i));
+						lArgs.remove(i);
+					}
+					else if (lArgs.get(i).equals("--timeout"))
+					{
+						lArgs.remove(i);
+						lTimeout = Long.parseLong(lArgs.get(i));
+						lArgs.remove(i);
+					}
+					else if (evalCommonOpt(parser, i, lArgs))
+						;
+					else if (lArgs.get(i).startsWith("-"))
+					{
+						Console.writeLine("Unknown option: " + lArgs.get(i));
+						System.exit(-1);
+					}
+					else
+						++i;
+				}
+				if (bPrintParams) parser.printProperties();
+				parser.compactWeights();
+				parser.serve(iPort, iQueueSize, lTimeout);
 			}
 			System.err.println("done.");
 		}
@@ -456,6 +577,37 @@ class Program
 					throw new IllegalArgumentException("Unknown type: " + sType);
 			}
 		}
+		else if (lArgs.get(0).equals("CompileCorpus"))
+		{
+			if (lArgs.size() < 3)
+				usage();
+			else
+			{
+				for (int i = 3; i < lArgs.size();)
+					if (!evalCommonOpt(parser, i, lArgs))
+						usage("Unknown option: " + lArgs.get(i), true);
+				// the tags are normalized with the dictionary of the model when loaded
+				MappedCorpus corpus = new MappedCorpus(lArgs.get(1));
+				ParseReader pr = parser.m_inputFileFormat == ParseReader.Format.CTB
+						? new CTBReader(corpus, null, null)
+						: new MaltReader(corpus, null, null);
+				CompiledReader.compile(pr, lArgs.get(2));
+			}
+		}
+		else if (lArgs.get(0).equals("ConvertModel"))
+		{
+			if (lArgs.size() < 3)
+				usage();
+			else
+			{
+				for (int i = 3; i < lArgs.size();)
+					if (!evalCommonOpt(parser, i, lArgs))
+						usage("Unknown option: " + lArgs.get(i), true);
+				parser.loadModel(lArgs.get(1));
+				parser.m_bBinaryModel = true;
+				parser.saveModel(lArgs.get(2));
+			}
+		}
 		else if (lArgs.get(0).equals("PrintWeights"))
 		{
 			parser.loadModel(lArgs.get(1));
@@ -479,6 +631,12 @@ class Program
 		System.err.println();
 		System.err.println("Run (model-file-to-load) [options..] < (input-file) > (output-file)");
 		System.err.println("  --print-params       print the list of model and program parameters");
+		System.err.println("  --queue (int)        set the maximum number of sentences being parsed or waiting to be written (default: 1024)");
+		System.err.println("  --input (file)       read the input from the file instead of the standard input; the file is memory-mapped");
+		System.err.println("                       and split into chunks of 1MB, each of which is parsed by one of the --parallel threads;");
+		System.err.println("                       at most two chunks per thread are in flight, so --queue cannot be used with it");
+		System.err.println("  --compact-weights    keep only the non-zero weights in floats to save memory");
+		System.err.println("                       (can also be used for Test and Serve commands)");
 		System.err.println();
 		System.err.println("Train (train-file) (dev-file) (#iteration) (model-file-to-save) --dict (dict-file) (threshold) [options..]");
 		System.err.println("  --dict (file) (int)  use the file (made using CreateDict command) as a POS tag dictionary");
@@ -496,6 +654,13 @@ class Program
 		System.err.println("  --char-type          use character-type features (recommended for out-domain evaluation)");
 		System.err.println("  --no-lemma-filter    use all lexical information (default: only words with >2 frequencies)");
 		System.err.println("  --no-shuffle         disable shuffling of training instances");
+		System.err.println("  --ipm (num)          train on (num) shards of the training data in parallel and mix the weights");
+		System.err.println("                       (iterative parameter mixing, McDonald et al. (2010))");
+		System.err.println("  --ipm-interval (num) mix the weights after every (num) sentences of each shard (default: each iteration)");
+		System.err.println("  --async-train (num)  train with (num) threads updating shared weights without locks (Hogwild);");
+		System.err.println("                       faster, but the model depends on the thread scheduling");
+		System.err.println("  --hash-bits (num)    hash the features into 2^(num) weights (num <= 24) instead of indexing them");
+		System.err.println("  --signed-hash        negate the values of half of the hashed features to reduce the effect of collisions");
 		System.err.println("  --use-trie           use Patricia trie to store the feature index (default: HashMap)");
 		System.err.println("  --load (file)        load a model file and continue training");
 		System.err.println("  --resume             resume training if a temporary file is availale");
@@ -504,6 +669,7 @@ class Program
 		System.err.println("  --no-parse           disable dependency parsing (i.e. segmentation and POS tagging only)");
 		System.err.println("  --no-average         disable averaged perceptron (i.e. non-averaged perceptron)");
 		System.err.println("  --no-dp              disable dynamic programming as described in Huang and Sagae (2010)");
+		System.err.println("  --binary-model       save the model in the binary format, which is memory-mapped on loading");
 		System.err.println();
 		System.err.println("  (options below can also be used for Test command)");
 		System.err.println("  --parallel (num)     specified the number of CPUs to use for decoding");
@@ -515,6 +681,20 @@ class Program
 		System.err.println("  --save-pos (file)    save the output POS tags to the file");
 		System.err.println("  --save-parse (file)  save the output POS tags and parse trees to the file");
 		System.err.println();
+		System.err.println("Serve (model-file-to-load) [options..]");
+		System.err.println("  --port (num)         listen on the port of localhost (default: 8090)");
+		System.err.println("                       POST sentences (one per line) to /parse to get the outputs of Run");
+		System.err.println("  --parallel (num)     set the number of worker threads");
+		System.err.println("  --queue (num)        set the maximum number of sentences waiting for a worker (default: 1024)");
+		System.err.println("  --timeout (msec)     set the timeout of each request (default: 60000; 0 to disable)");
+		System.err.println();
+		System.err.println("ConvertModel (model-file-to-load) (model-file-to-save) [--no-compress]");
+		System.err.println("                       convert a text model into the binary format");
+		System.err.println();
+		System.err.println("CompileCorpus (corpus-file) (file-to-save) [--input-format <malt|ctb>]");
+		System.err.println("                       convert a corpus into a binary file of interned words and heads, which can be");
+		System.err.println("                       given to Train and Test in place of the corpus to skip parsing the text");
+		System.err.println();
 		// System.err.println("CreateDict <ctb5|ctb7> (target-file) (dict-file-to-save)");
 	}
 
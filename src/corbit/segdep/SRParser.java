@@ -33,28 +33,40 @@ package corbit.segdep;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.text.Normalizer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import corbit.commons.SRParserEvaluator;
-import corbit.commons.dict.TagDictionary;
+import corbit.commons.dict.AhoCorasick;
 import corbit.commons.io.CTBReader;
+import corbit.commons.io.CompiledCorpus;
+import corbit.commons.io.CompiledReader;
 import corbit.commons.io.Console;
+import corbit.commons.io.CorpusLoader;
+import corbit.commons.io.LinePipeline;
+import corbit.commons.io.LineScanner;
+import corbit.commons.io.LineSource;
+import corbit.commons.io.MappedCorpus;
 import corbit.commons.io.MaltReader;
+import corbit.commons.io.ParseServer;
 import corbit.commons.io.ParseReader;
 import corbit.commons.io.ParseWriter;
+import corbit.commons.ml.AtomicAveragedWeight;
 import corbit.commons.ml.AveragedWeight;
 import corbit.commons.ml.IntFeatVector;
-import corbit.commons.ml.WeightVector;
+import corbit.commons.ml.Weights;
 import corbit.commons.transition.SDAction;
 import corbit.commons.util.Pair;
+import corbit.commons.util.PullIterator;
 import corbit.commons.util.Statics;
 import corbit.commons.util.StepCounter;
 import corbit.commons.util.Stopwatch;
@@ -69,6 +81,8 @@ import corbit.segdep.transition.SRParserTransition.SRParserTransitionParameter;
 
 public class SRParser extends SRParserModel
 {
+	static final long INPUT_CHUNK_SIZE = 1 << 20;
+
 	private class ParseResult
 	{
 		final SRParserState parsedState;
@@ -90,7 +104,15 @@ public class SRParser extends SRParserModel
 		private final SRParserTransition trans;
 		private final SRParserHandler handler;
 		private final SRParserStateGenerator generator;
-		private final WeightVector weight;
+		private final Weights weight;
+		private final ThreadLocal<DecodingArena> arenas = new ThreadLocal<DecodingArena>()
+		{
+			@Override
+			protected DecodingArena initialValue()
+			{
+				return new DecodingArena(m_bDP, generator);
+			}
+		};
 
 		private final SRParserStats stats;
 		private final ExecutorService execMove;
@@ -98,6 +120,11 @@ public class SRParser extends SRParserModel
 		private final boolean bTrain;
 
 		private SentenceParser(boolean bTrain)
+		{
+			this(bTrain, bTrain ? m_weight : getDecodingWeight(), bTrain && m_iParallel > 1);
+		}
+
+		private SentenceParser(boolean bTrain, Weights weight, boolean bParallelMove)
 		{
 			this.bTrain = bTrain;
 
@@ -106,12 +133,12 @@ public class SRParser extends SRParserModel
 			handler.setTagDictionary(m_dict);
 			if (m_wordlists != null) handler.setWordList(m_wordlists);
 			generator = new SRParserStateGenerator(handler, m_bDP, m_bEvalDelay);
-			weight = (!bTrain && m_bAveraged) ? m_weight.getAveragedWeight() : m_weight;
+			this.weight = weight;
 			SRParserTransitionParameter params = new SRParserTransitionParameter(
 					m_bAssignGoldSeg, m_bAssignGoldTag, m_bGoldArc, m_bParse, m_bUseFeatureCache, m_bValidateTag);
 			trans = new SRParserCharBasedTransition(generator, handler, weight, m_dict, stats, params, m_bAlignArcChar);
 
-			bParallelMove = bTrain && m_iParallel > 1;
+			this.bParallelMove = bParallelMove;
 			execMove = bParallelMove ? Executors.newCachedThreadPool() : null;
 		}
 
@@ -120,9 +147,9 @@ public class SRParser extends SRParserModel
 			return stats;
 		}
 
-		private IntFeatVector getPrefixFeatures(SRParserState s)
+		private IntFeatVector getPrefixFeatureDelta(SRParserState sGold, SRParserState sOut)
 		{
-			return trans.getPrefixFeatures(s);
+			return trans.getPrefixFeatureDelta(sGold, sOut);
 		}
 
 		private void shutdown()
@@ -132,27 +159,36 @@ public class SRParser extends SRParserModel
 
 		private SRParserTransition.Decision[] preprocess(UnsegmentedSentence sent)
 		{
-			if (m_preprocWords == null || sent.length() < 2) return null;
+			if (m_preprocMatcher == null || sent.length() < 2) return null;
 
-			final int maxWordLength = TagDictionary.getMaxWordLength();
+			final AhoCorasick ac = m_preprocMatcher;
 			final int length = sent.length();
 			SRParserTransition.Decision[] decision = new SRParserTransition.Decision[length + 1];
 
-			// TODO: Tentative inefficient implementation
+			/* farthest end of the words beginning at each position */
+			int[] ends = new int[length + 1];
+			boolean bFound = false;
 
-			for (int i = 0; i < length; ++i)
+			for (int i = 0, s = ac.root(); i < length; ++i)
 			{
-				for (int l = 1; l <= Math.min(maxWordLength, length - i); ++l)
+				s = ac.next(s, sent.charAt(i));
+				for (int o = ac.firstOutput(s); o != AhoCorasick.NONE; o = ac.nextOutput(o))
 				{
-					if (m_preprocWords.contains(sent.substring(i, i + l)))
-					{
-						if (decision[i] != SRParserTransition.Decision.IN_WORD)
-							decision[i] = SRParserTransition.Decision.SEGMENT;
-						for (int k = i + 1; k < i + l; ++k)
-							decision[k] = SRParserTransition.Decision.IN_WORD;
-						if (decision[i + l] != SRParserTransition.Decision.IN_WORD)
-							decision[i + l] = SRParserTransition.Decision.SEGMENT;
-					}
+					int b = i + 1 - ac.getLength(o);
+					decision[b] = decision[i + 1] = SRParserTransition.Decision.SEGMENT;
+					ends[b] = Math.max(ends[b], i + 1);
+					bFound = true;
+				}
+			}
+
+			/* a boundary inside any of the words is not a word boundary */
+			if (bFound)
+			{
+				for (int i = 0, iEnd = 0; i <= length; ++i)
+				{
+					if (i < iEnd)
+						decision[i] = SRParserTransition.Decision.IN_WORD;
+					iEnd = Math.max(iEnd, ends[i]);
 				}
 			}
 
@@ -173,14 +209,11 @@ public class SRParser extends SRParserModel
 			int iLastStep = m_bAlignArcChar ? 2 * sent.length() : sent.length();
 			int iNumChart = iLastStep + 1;
 
-			DPParserChart[] charts1 = new DPParserChart[iNumChart];
-			DPParserChart[] charts2 = new DPParserChart[iNumChart];
-
-			for (int i = 0; i < iNumChart; ++i)
-			{
-				charts1[i] = new DPParserChart(m_bDP, generator, 0.0d);
-				charts2[i] = new DPParserChart(m_bDP, generator, 0.0d);
-			}
+			// the charts of the previous sentence parsed by this thread are recycled
+			DecodingArena arena = arenas.get();
+			arena.reset();
+			DPParserChart[] charts1 = arena.charts(iNumChart);
+			DPParserChart[] charts2 = arena.charts(iNumChart);
 
 			charts1[0].updateEntry(sr);
 
@@ -326,6 +359,8 @@ public class SRParser extends SRParserModel
 
 		final SentenceParser handler = new SentenceParser(bTrain);
 		SRParserStats stats = handler.stats();
+		if (bTrain && m_iParallel > 1)
+			m_fvocab.setConcurrent(); // the moves of a state are expanded in parallel
 		
 		for (int iPhase = 0; iPhase < Math.ceil((float)gsents.size() / (float)iParallelSent); ++iPhase)
 		{
@@ -396,10 +431,7 @@ public class SRParser extends SRParserModel
 	
 				if (bTrain && !bResult)
 				{
-					IntFeatVector vg = handler.getPrefixFeatures(sg);
-					IntFeatVector vo = handler.getPrefixFeatures(sr == null ? so : sr);
-					IntFeatVector vd = IntFeatVector.subtract(vg, vo);
-					vdTotal.append(vd);
+					vdTotal.append(handler.getPrefixFeatureDelta(sg, sr == null ? so : sr));
 				}
 				
 				/*
@@ -454,12 +486,223 @@ public class SRParser extends SRParserModel
 		return eval.evalTotal();
 	}
 
+	/*
+	 * Iterative parameter mixing (McDonald et al., 2010): the training sentences are
+	 * dealt to m_iMixWorkers shards, each of which is trained on by a worker thread
+	 * with its own copy of the weights (the first worker trains m_weight itself), and
+	 * the copies are averaged into m_weight after every m_iMixInterval sentences of
+	 * each shard (0: at the end of the epoch). With one worker, this is the same as
+	 * the sequential training.
+	 */
+	private double mixIterateOnce(final List<ParsedSentence> gsents)
+	{
+		final int iWorkers = m_iMixWorkers;
+		final int iSize = m_iLimitSent > 0 ? Math.min(gsents.size(), m_iLimitSent + 1) : gsents.size();
+		final int iShardSize = (iSize + iWorkers - 1) / iWorkers;
+		final int iInterval = m_iMixInterval > 0 ? m_iMixInterval : Math.max(iShardSize, 1);
+
+		SRParserEvaluator eval = new SRParserEvaluator(m_dict, m_bParse, false, m_bShowOutput, m_bInfreqAsOOV, m_bShowStats);
+		StepCounter cnt = new StepCounter(m_bShowOutput ? 0 : 100);
+		final ExecutorService execShard = Executors.newFixedThreadPool(iWorkers);
+		List<AveragedWeight> lWeights = new ArrayList<AveragedWeight>();
+		List<Future<ParsedSentence[]>> lOuts = new ArrayList<Future<ParsedSentence[]>>();
+
+		m_fvocab.setConcurrent();
+		lWeights.add(m_weight);
+		for (int k = 1; k < iWorkers; ++k)
+			lWeights.add(new AveragedWeight(m_weight));
+
+		try
+		{
+			for (int iBegin = 0; iBegin < iShardSize; iBegin += iInterval)
+			{
+				final int iEnd = Math.min(iBegin + iInterval, iShardSize);
+				lOuts.clear();
+				if (iBegin > 0)
+					for (int k = 1; k < iWorkers; ++k)
+						lWeights.get(k).assign(m_weight);
+				for (int k = 0; k < iWorkers; ++k)
+					lOuts.add(execShard.submit(trainShard(gsents, iSize, lWeights.get(k), k, iBegin, iEnd)));
+
+				ParsedSentence[][] outs = new ParsedSentence[iWorkers][];
+				for (int k = 0; k < iWorkers; ++k)
+					outs[k] = lOuts.get(k).get();
+
+				/*
+				 * Mix the weights and evaluate the outputs in the order of the corpus
+				 */
+				m_weight.mix(lWeights);
+
+				for (int j = iBegin; j < iEnd; ++j)
+				{
+					for (int k = 0; k < iWorkers; ++k)
+					{
+						int iSent = j * iWorkers + k;
+						ParsedSentence osent = outs[k][j - iBegin];
+						if (iSent >= iSize || osent == null) continue;
+						eval.evalSentence(osent, gsents.get(iSent));
+						cnt.increment();
+					}
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			throw new RuntimeException(e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new RuntimeException(e);
+		}
+		finally
+		{
+			execShard.shutdown();
+		}
+
+		cnt.dispose();
+		return eval.evalTotal();
+	}
+
+	/*
+	 * trains w on the sentences j * m_iMixWorkers + k (iBegin <= j < iEnd) one by one,
+	 * and returns the outputs (null for skipped sentences)
+	 */
+	private Callable<ParsedSentence[]> trainShard(
+			final List<ParsedSentence> gsents, final int iSize,
+			final AveragedWeight w, final int k, final int iBegin, final int iEnd)
+	{
+		return new Callable<ParsedSentence[]>() {
+			public ParsedSentence[] call()
+			{
+				SentenceParser sp = new SentenceParser(true, w, false);
+				SRParserEvaluator eval = new SRParserEvaluator(m_dict, m_bParse, false, false, m_bInfreqAsOOV, false);
+				ParsedSentence[] outs = new ParsedSentence[iEnd - iBegin];
+
+				try
+				{
+					for (int j = iBegin; j < iEnd; ++j)
+					{
+						int iSent = j * m_iMixWorkers + k;
+						if (iSent >= iSize) break;
+
+						IntFeatVector vd = new IntFeatVector();
+						outs[j - iBegin] = trainSentence(sp, eval, gsents.get(iSent), iSent, vd);
+						if (vd.size() > 0) w.append(vd);
+						w.nextStep();
+					}
+				}
+				finally
+				{
+					sp.shutdown();
+				}
+				return outs;
+			}
+		};
+	}
+
+	/*
+	 * Asynchronous training (Hogwild; Niu et al., 2011): m_iAsyncTrain threads take the
+	 * training sentences in turn and apply their updates directly to a lock-free copy
+	 * of the weights shared by all of them, which is copied back to m_weight at the end
+	 * of the epoch. The result depends on the scheduling of the threads.
+	 */
+	private double asyncIterateOnce(final List<ParsedSentence> gsents)
+	{
+		final int iSize = m_iLimitSent > 0 ? Math.min(gsents.size(), m_iLimitSent + 1) : gsents.size();
+		final AtomicAveragedWeight w = new AtomicAveragedWeight(m_weight, m_fvocab.weightCapacity());
+		final AtomicInteger next = new AtomicInteger();
+		final ParsedSentence[] outs = new ParsedSentence[iSize];
+
+		SRParserEvaluator eval = new SRParserEvaluator(m_dict, m_bParse, false, m_bShowOutput, m_bInfreqAsOOV, m_bShowStats);
+		StepCounter cnt = new StepCounter(m_bShowOutput ? 0 : 100);
+		ExecutorService execSent = Executors.newFixedThreadPool(m_iAsyncTrain);
+		List<Future<?>> lOuts = new ArrayList<Future<?>>();
+
+		m_fvocab.setConcurrent();
+		for (int k = 0; k < m_iAsyncTrain; ++k)
+		{
+			lOuts.add(execSent.submit(new Runnable() {
+				public void run()
+				{
+					SentenceParser sp = new SentenceParser(true, w, false);
+					SRParserEvaluator eval = new SRParserEvaluator(m_dict, m_bParse, false, false, m_bInfreqAsOOV, false);
+					try
+					{
+						for (int iSent; (iSent = next.getAndIncrement()) < iSize;)
+						{
+							IntFeatVector vd = new IntFeatVector();
+							outs[iSent] = trainSentence(sp, eval, gsents.get(iSent), iSent, vd);
+							if (vd.size() > 0) w.append(vd);
+							w.nextStep();
+						}
+					}
+					finally
+					{
+						sp.shutdown();
+					}
+				}
+			}));
+		}
+
+		try
+		{
+			for (Future<?> f: lOuts)
+				f.get();
+		}
+		catch (InterruptedException e)
+		{
+			throw new RuntimeException(e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new RuntimeException(e);
+		}
+		finally
+		{
+			execSent.shutdown();
+		}
+		w.copyTo(m_weight);
+
+		for (int iSent = 0; iSent < iSize; ++iSent)
+		{
+			if (outs[iSent] == null) continue;
+			eval.evalSentence(outs[iSent], gsents.get(iSent));
+			cnt.increment();
+		}
+
+		cnt.dispose();
+		return eval.evalTotal();
+	}
+
+	/*
+	 * parses a training sentence and returns the output (null if no states remain);
+	 * the perceptron update for the sentence is added to vd
+	 */
+	private ParsedSentence trainSentence(SentenceParser sp, SRParserEvaluator eval, ParsedSentence gsent, int iSent, IntFeatVector vd)
+	{
+		ParseResult result = sp.parseSentence(createSentenceToProcess(gsent), gsent);
+		SRParserState so = result.parsedState;
+
+		if (so == null)
+		{
+			System.err.println("no states remaining at line " + iSent + " . skipped.");
+			return null;
+		}
+
+		ParsedSentence osent = SRParserState.getParsedResult(so);
+		if (!eval.evalSentence(osent, gsent))
+		{
+			vd.append(sp.getPrefixFeatureDelta(result.goldState, result.refState == null ? so : result.refState));
+		}
+		return osent;
+	}
+
 	public boolean parallelProceedOneStep(
 			DPParserChart[] charts1,
 			DPParserChart[] charts2,
 			int curstep,
 			final SRParserTransition trans,
-			WeightVector w,
+			Weights w,
 			final ParsedSentence gsent,
 			final boolean bAdd,
 			final boolean bSingleBeam,
@@ -524,7 +767,7 @@ public class SRParser extends SRParserModel
 			DPParserChart[] charts2,
 			int curstep,
 			SRParserTransition trans,
-			WeightVector w,
+			Weights w,
 			ParsedSentence gsent,
 			boolean bAdd,
 			boolean bSingleBeam)
@@ -564,61 +807,110 @@ public class SRParser extends SRParserModel
 		sw.lap();
 	}
 	
-	public void run() throws IOException
+	/*
+	 * reads sentences from stdin, parses them on m_iParallel threads and writes
+	 * the results in the input order; at most iQueueSize sentences are in flight
+	 */
+	public void run(int iQueueSize) throws IOException, InterruptedException
 	{
 		BufferedReader br = new BufferedReader(new InputStreamReader(System.in, "UTF8"));
 		final SentenceParser sp = new SentenceParser(false);
 		
-		final ExecutorService execSent = Executors.newFixedThreadPool(m_iParallel);
-		List<Future<ParseResult>> lOuts = new ArrayList<Future<ParseResult>>();
+		LinePipeline pipeline = new LinePipeline(new LinePipeline.Processor() {
+			public String process(String sLine)
+			{
+				String buf = Statics.normalizeNFKC(sLine);
+				UnsegmentedSentence sent = new UnsegmentedSentence(buf.toCharArray());
+				ParseResult pr = sp.parseSentence(sent, null);
+				return formatResult(SRParserState.getParsedResult(pr.parsedState));
+			}
+		}, m_iParallel, iQueueSize);
+		
+		try
+		{
+			pipeline.run(br);
+		}
+		finally
+		{
+			sp.shutdown();
+		}
+	}
 
-		String buf = "";
+	/**
+	 * Parses the lines of sInputFile as run() does, reading the file through
+	 * memory maps in chunks of INPUT_CHUNK_SIZE bytes, each of which is decoded
+	 * and parsed by one of the m_iParallel workers; at most two chunks per
+	 * worker are in flight
+	 */
+	public void run(String sInputFile) throws IOException, InterruptedException
+	{
+		final SentenceParser sp = new SentenceParser(false);
+		
+		LinePipeline pipeline = new LinePipeline(new LinePipeline.ScannerProcessor() {
+			public String process(LineScanner ls)
+			{
+				UnsegmentedSentence sent = new UnsegmentedSentence(ls.normalizedChars(ls.begin(), ls.end()));
+				ParseResult pr = sp.parseSentence(sent, null);
+				return formatResult(SRParserState.getParsedResult(pr.parsedState));
+			}
+		}, m_iParallel, 2 * m_iParallel);
 		
-		while (buf != null)
+		MappedCorpus corpus = new MappedCorpus(sInputFile);
+		try
 		{
-			lOuts.clear();
-			int nSent = 0;
-			
-			do {
-				buf = br.readLine();
-				if (buf == null) break;
-				
-				final String _buf = buf;
-				lOuts.add(execSent.submit(new Callable<ParseResult>() {
-					public ParseResult call() {
-						String buf = Normalizer.normalize(_buf, Normalizer.Form.NFKC);
-						UnsegmentedSentence sent = new UnsegmentedSentence(buf.toCharArray());
-						return sp.parseSentence(sent, null);
-					}
-				}));
-			} while (br.ready() && nSent++ < 10000);
-			
-			for (int i=0; i<lOuts.size(); ++i)
+			pipeline.run(corpus.split(INPUT_CHUNK_SIZE));
+		}
+		finally
+		{
+			corpus.close();
+			sp.shutdown();
+		}
+	}
+
+	/*
+	 * output of a sentence in the format of the Run command, without the last line break
+	 */
+	private String formatResult(ParsedSentence osent)
+	{
+		StringBuilder sb = new StringBuilder();
+		if (m_bParse)
+		{
+			for (IndexWord w : osent)
+				sb.append(String.format("%d\t%s\t%s\t%d%n", w.index, w.form, w.tag, w.head));
+		}
+		else
+		{
+			for (IndexWord iw: osent)
+				sb.append(iw.form + "/" + iw.tag + " ");
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Parses sentences posted over HTTP on the loopback interface until the
+	 * server is shut down. One SentenceParser is shared by the m_iParallel
+	 * workers of the server, as in run().
+	 */
+	public void serve(int iPort, int iQueueSize, long lTimeout) throws IOException, InterruptedException
+	{
+		final SentenceParser sp = new SentenceParser(false);
+		ParseServer server = new ParseServer(new ParseServer.Handler() {
+			public String parse(String sLine)
 			{
-				try
-				{
-					ParseResult pr = lOuts.get(i).get();
-					ParsedSentence osent = SRParserState.getParsedResult(pr.parsedState);
-					if (m_bParse)
-					{
-						for (IndexWord w : osent)
-							Console.writeLine(String.format("%d\t%s\t%s\t%d", w.index, w.form, w.tag, w.head));
-						Console.writeLine();
-					}
-					else
-					{
-						for (IndexWord iw: osent)
-							Console.write(iw.form + "/" + iw.tag + " ");
-						Console.writeLine();
-					}
-				}
-				catch (InterruptedException e) { e.printStackTrace(); }
-				catch (ExecutionException e) { e.printStackTrace(); }
+				String buf = Statics.normalizeNFKC(sLine);
+				UnsegmentedSentence sent = new UnsegmentedSentence(buf.toCharArray());
+				return String.format("%s%n", formatResult(SRParserState.getParsedResult(sp.parseSentence(sent, null).parsedState)));
 			}
+		}, iPort, m_iParallel, iQueueSize, lTimeout);
+		try
+		{
+			server.start();
+			server.awaitTermination();
+		}
+		finally
+		{
+			sp.shutdown();
 		}
-		
-		if (execSent != null) execSent.shutdown();
-		sp.shutdown();
 	}
 
 	public void train(String sTrainFile, String sDevFile, String sSaveFile, int iMaxPerceptIt) throws IOException
@@ -630,6 +922,7 @@ public class SRParser extends SRParserModel
 		
 		if (m_bShuffle) Statics.shuffle(lt);
 
+		m_weight.loadDense();
 		if (++m_iTrainIteration > 1)
 			Console.writeLine("resumed from iteration #" + m_iTrainIteration);
 
@@ -642,7 +935,12 @@ public class SRParser extends SRParserModel
 			 * Training
 			 */
 			sw = new Stopwatch("Perceptron training: loop " + m_iTrainIteration);
-			parallelIterateOnce(lt, true, null);
+			if (m_iAsyncTrain > 0)
+				asyncIterateOnce(lt);
+			else if (m_iMixWorkers > 0)
+				mixIterateOnce(lt);
+			else
+				parallelIterateOnce(lt, true, null);
 			sw.lap();
 			if (m_bRebuildVocab) m_fvocab.rebuild(m_weight);
 			gc();
@@ -677,21 +975,38 @@ public class SRParser extends SRParserModel
 		swTotal.lap();
 	}
 
-	private List<ParsedSentence> loadCorpus(String sFile)
+	/**
+	 * reads the sentences of sFile, which is split into chunks built on
+	 * m_iParallel threads unless it is a compiled corpus
+	 */
+	private List<ParsedSentence> loadCorpus(String sFile) throws IOException
 	{
-		ParseReader ct;
-		if (m_inputFileFormat == ParseReader.Format.CTB)
-			ct = new CTBReader(sFile, m_dict);
-		else if (m_inputFileFormat == ParseReader.Format.MALT)
-			ct = new MaltReader(sFile, m_dict);
-		else
-			throw new IllegalArgumentException("Unsupported format: " + m_inputFileFormat.name());
-		
-		List<ParsedSentence> lt = new ArrayList<ParsedSentence>();
-		for (ParsedSentence p: ct)
-			if (p != null) lt.add(p);
-		ct.shutdown();
-		return lt;
+		final Set<String> setPos = m_dict.generateTagSet();
+		final Set<String> setLabel = new TreeSet<String>(Arrays.asList(m_dict.getArcLabels()));
+		if (CompiledCorpus.isCompiledCorpus(sFile))
+		{
+			List<ParsedSentence> lt = new ArrayList<ParsedSentence>();
+			for (ParsedSentence p : new CompiledReader(new CompiledCorpus(sFile), setPos, setLabel))
+				lt.add(p);
+			return lt;
+		}
+
+		final ParseReader.Format format = m_inputFileFormat;
+		if (format != ParseReader.Format.CTB && format != ParseReader.Format.MALT)
+			throw new IllegalArgumentException("Unsupported format: " + format.name());
+
+		CorpusLoader<ParsedSentence> loader = new CorpusLoader<ParsedSentence>(new CorpusLoader.ReaderFactory<ParsedSentence>()
+		{
+			@Override
+			public PullIterator<ParsedSentence> open(LineSource src)
+			{
+				if (format == ParseReader.Format.CTB)
+					return new CTBReader(src, setPos, setLabel);
+				else
+					return new MaltReader(src, setPos, setLabel);
+			}
+		}, format == ParseReader.Format.MALT, m_iParallel);
+		return loader.load(sFile);
 	}
 	
 	static Runtime runtime = Runtime.getRuntime();
@@ -31,12 +31,10 @@
 package corbit.segdep;
 
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 import corbit.commons.ml.IntFeatVector;
 import corbit.commons.transition.SDAction;
-import corbit.commons.util.Pair;
+import corbit.commons.util.Chain;
 import corbit.commons.word.DepChunkTree;
 import corbit.commons.word.UnsegmentedSentence;
 import corbit.segdep.handler.DelayedFeature;
@@ -53,17 +51,18 @@ class SRParserDPState extends SRParserState
 			int idend,
 			double scprf,
 			double scins,
-			List<IntFeatVector> fvins,
+			Chain<IntFeatVector> fvins,
 			List<DelayedFeature> fvdelay,
-			Set<SRParserState> preds,
+			SRParserState[] preds,
 			SRParserState pred0,
-			Map<SRParserState,Pair<List<IntFeatVector>,Double>> trans,
+			IntFeatVector[] fvtrans,
+			double[] sctrans,
 			SRParserTransition.Decision[] decision,
-			List<SDAction> lstact,
+			Chain<SDAction> lstact,
 			boolean gold,
 			long states)
 	{
-		super(sent, stack, curidx, curstep, idbgn, idend, scprf, scins, fvins, fvdelay, preds, pred0, trans, decision, lstact, gold, states);
+		super(sent, stack, curidx, curstep, idbgn, idend, scprf, scins, fvins, fvdelay, preds, pred0, fvtrans, sctrans, decision, lstact, gold, states);
 	}
 
 	@Override
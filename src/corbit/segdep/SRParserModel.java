@@ -41,31 +41,40 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 import corbit.commons.Vocab;
+import corbit.commons.dict.AhoCorasick;
 import corbit.commons.dict.CTB5TagDictionary;
 import corbit.commons.dict.CTB7TagDictionary;
 import corbit.commons.dict.TagDictionary;
+import corbit.commons.io.BinaryModel;
 import corbit.commons.io.Console;
 import corbit.commons.io.FileEnum;
 import corbit.commons.io.ParseReader;
 import corbit.commons.ml.AveragedWeight;
-import corbit.commons.ml.WeightVector;
+import corbit.commons.ml.CompactWeightVector;
+import corbit.commons.ml.Weights;
 import corbit.commons.util.Stopwatch;
 
 public class SRParserModel
 {
 	protected final Vocab m_fvocab;
 	protected AveragedWeight m_weight;
+	// weights for decoding made by compactWeights(), which releases m_weight
+	protected Weights m_compactWeight;
 	protected TagDictionary m_dict;
 	protected Vocab[] m_wordlists;
 	protected Set<String> m_preprocWords;
+	protected AhoCorasick m_preprocMatcher;
 
 	/*
 	 * beginning of main
@@ -80,6 +89,7 @@ public class SRParserModel
 		m_preprocWords = new HashSet<String>();
 		m_preprocWords.add(" "); // half-width space
 		m_preprocWords.add("　"); // full-width space
+		buildPreprocMatcher();
 
 		initTagDictionary(0);
 	}
@@ -102,6 +112,7 @@ public class SRParserModel
 
 	public void printWeights()
 	{
+		m_weight.loadDense();
 		for (String s: m_fvocab.getKeys())
 			Console.writeLine(s + "\t" + m_weight.get(m_fvocab.get(s)));
 	}
@@ -111,6 +122,52 @@ public class SRParserModel
 		m_fvocab.setUseTrie();
 	}
 
+	/**
+	 * moves the vocabularies of a loaded model out of the heap for inference
+	 */
+	public void freezeVocab()
+	{
+		m_fvocab.freeze();
+		if (m_wordlists != null)
+			for (Vocab v: m_wordlists)
+				v.freeze();
+	}
+
+	/**
+	 * hashes the features into 2^m_iHashBits weights instead of indexing them
+	 * in the vocabulary if m_iHashBits is set
+	 */
+	public void initFeatureHashing()
+	{
+		if (m_iHashBits > 0)
+			m_fvocab.setHashed(m_iHashBits, m_bSignedHash);
+	}
+
+	/**
+	 * replaces the weights with a compact, read-only copy holding only the
+	 * non-zero weights to decode with as floats; the model
+	 * cannot be trained or saved afterwards
+	 */
+	public void compactWeights()
+	{
+		if (!m_bCompactWeights)
+			return;
+		CompactWeightVector w = new CompactWeightVector(m_bAveraged ? m_weight.getAveragedWeight() : m_weight.getWeight());
+		m_compactWeight = w;
+		m_weight = null;
+		System.err.println(String.format("%d weights compacted into %d bytes.", w.size(), w.byteSize()));
+	}
+
+	/**
+	 * returns the weights to decode with
+	 */
+	protected Weights getDecodingWeight()
+	{
+		if (m_compactWeight != null)
+			return m_compactWeight;
+		return m_bAveraged ? m_weight.getAveragedWeight() : m_weight.getWeight();
+	}
+
 	public void loadDictFromFile(String sFile, int iThreshold) throws IOException
 	{
 		m_dict.clear();
@@ -127,9 +184,20 @@ public class SRParserModel
 			++nLine;
 		}
 		fe.shutdown();
+		buildPreprocMatcher();
 		System.err.println(nLine + " words to pre-segment loaded.");
 	}
 
+	private void buildPreprocMatcher()
+	{
+		/* words longer than the maximum word length are never pre-segmented */
+		List<String> l = new ArrayList<String>();
+		for (String s: m_preprocWords)
+			if (s.length() <= TagDictionary.getMaxWordLength())
+				l.add(s);
+		m_preprocMatcher = new AhoCorasick(l);
+	}
+
 	public void saveModel(String sFile) throws IOException
 	{
 		Stopwatch sw = new Stopwatch("Saving model...");
@@ -146,22 +214,27 @@ public class SRParserModel
 		 * save model components
 		 */
 
-		OutputStream os = m_bCompressedModel ?
-				new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(ftmp))) :
-				new BufferedOutputStream(new FileOutputStream(ftmp));
-		PrintWriter pw = new PrintWriter(new OutputStreamWriter(os, "UTF-8"));
-		saveProperties(pw);
-		m_fvocab.save(pw);
-		pw.println(m_dict != null);
-		os.flush();
-		if (m_dict != null)
-			m_dict.saveToStream(pw);
-		m_weight.save(pw);
-		pw.println(m_wordlists == null ? 0 : m_wordlists.length);
-		if (m_wordlists != null)
-			for (int i = 0; i < m_wordlists.length; ++i)
-				m_wordlists[i].save(pw);
-		pw.close();
+		if (m_bBinaryModel)
+			saveBinaryModel(ftmp);
+		else
+		{
+			OutputStream os = m_bCompressedModel ?
+					new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(ftmp))) :
+					new BufferedOutputStream(new FileOutputStream(ftmp));
+			PrintWriter pw = new PrintWriter(new OutputStreamWriter(os, "UTF-8"));
+			saveProperties(pw);
+			m_fvocab.save(pw);
+			pw.println(m_dict != null);
+			os.flush();
+			if (m_dict != null)
+				m_dict.saveToStream(pw);
+			m_weight.save(pw);
+			pw.println(m_wordlists == null ? 0 : m_wordlists.length);
+			if (m_wordlists != null)
+				for (int i = 0; i < m_wordlists.length; ++i)
+					m_wordlists[i].save(pw);
+			pw.close();
+		}
 
 		/*
 		 * rename the temporary file
@@ -175,8 +248,73 @@ public class SRParserModel
 		sw.lap();
 	}
 
+	/*
+	 * The binary model holds the same components as the text model in separate
+	 * sections; the properties and the tag dictionary are kept in text.
+	 */
+	private void saveBinaryModel(File f) throws IOException
+	{
+		BinaryModel.Writer w = new BinaryModel.Writer(f);
+		try
+		{
+			StringWriter sw = new StringWriter();
+			PrintWriter pw = new PrintWriter(sw);
+			saveProperties(pw);
+			pw.flush();
+			w.putText("PROPS", sw.toString());
+			m_fvocab.save(w, "VOCAB");
+			if (m_dict != null)
+			{
+				sw = new StringWriter();
+				pw = new PrintWriter(sw);
+				m_dict.saveToStream(pw);
+				pw.flush();
+				w.putText("DICT", sw.toString());
+			}
+			w.beginSection("WEIGHT");
+			m_weight.save(w);
+			w.endSection();
+			if (m_wordlists != null)
+				for (int i = 0; i < m_wordlists.length; ++i)
+					m_wordlists[i].save(w, "WLIST" + i);
+		}
+		finally
+		{
+			w.close();
+		}
+	}
+
+	private void loadBinaryModel(String sFile) throws IOException
+	{
+		System.err.println("Mapping model..");
+		BinaryModel model = new BinaryModel(sFile);
+		loadProperties(model.getTextSection("PROPS"));
+		initTagDictionary(m_iTagSet);
+		if (m_bUseTrie)
+			setUseTrie();
+		initFeatureHashing();
+		m_fvocab.load(model, "VOCAB");
+		if (model.hasSection("DICT"))
+			m_dict.loadFromStream(model.getTextSection("DICT"));
+		m_weight.load(model.getSection("WEIGHT"));
+		int nWordLists = 0;
+		while (model.hasSection("WLIST" + nWordLists))
+			++nWordLists;
+		if (nWordLists > 0)
+		{
+			m_wordlists = new Vocab[nWordLists];
+			for (int i = 0; i < nWordLists; ++i)
+				m_wordlists[i] = new Vocab(model, "WLIST" + i);
+		}
+	}
+
 	public void loadModel(String sFile) throws IOException, ClassNotFoundException
 	{
+		if (BinaryModel.isBinaryModel(sFile))
+		{
+			loadBinaryModel(sFile);
+			return;
+		}
 		System.err.println("Loading model..");
 		InputStream is = m_bCompressedModel ?
 				new GZIPInputStream(new FileInputStream(sFile)) :
@@ -186,6 +324,7 @@ public class SRParserModel
 		initTagDictionary(m_iTagSet);
 		if (m_bUseTrie)
 			setUseTrie();
+		initFeatureHashing();
 		m_fvocab.load(sr);
 		if (Boolean.parseBoolean(sr.readLine()) == true)
 			m_dict.loadFromStream(sr);
@@ -204,7 +343,7 @@ public class SRParserModel
 	{
 		if (m_wordlists != null)
 		{
-			WeightVector w = m_weight.getAveragedWeight();
+			Weights w = m_weight.getAveragedWeight();
 			for (int i = 0; i < m_wordlists.length; ++i)
 			{
 				for (int j = 1; j <= 32; ++j)
@@ -247,6 +386,7 @@ public class SRParserModel
 
 	int m_iBeam = 8;
 	int m_iTagSet = 0; // 0: CTB5, 1: CTB7
+	int m_iHashBits = 0; // feature hashing (0: disabled)
 
 	double m_dParserWeight = 0.5d;
 
@@ -264,6 +404,7 @@ public class SRParserModel
 	boolean m_bShuffle = true;
 	boolean m_bValidateTag = true;
 	boolean m_bCharType = false;
+	boolean m_bSignedHash = false;
 
 	/*
 	 * training status (used to resume training)
@@ -278,12 +419,17 @@ public class SRParserModel
 	 */
 
 	transient int m_iParallel = 1;
+	transient int m_iMixWorkers = 0; // iterative parameter mixing
+	transient int m_iMixInterval = 0;
+	transient int m_iAsyncTrain = 0; // asynchronous (Hogwild) training
 	transient ParseReader.Format m_inputFileFormat = ParseReader.Format.MALT;
 	transient boolean m_bShowOutput = false;
 	transient boolean m_bLoadOnMemory = true;
+	transient boolean m_bCompactWeights = false; // decode with the non-zero weights only
 	transient boolean m_bSaveEach = false;
 	transient boolean m_bCheckOpts = false;
 	transient boolean m_bCompressedModel = true;
+	transient boolean m_bBinaryModel = false;
 	transient boolean m_bSaveOnlyPos = false;
 	transient boolean m_bShowStats = false;
 	transient boolean m_bRebuildVocab = false;
@@ -33,14 +33,11 @@ package corbit.segdep;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 import corbit.commons.ml.IntFeatVector;
 import corbit.commons.transition.SDAction;
-import corbit.commons.util.Pair;
+import corbit.commons.util.Chain;
 import corbit.commons.word.DepChunk;
 import corbit.commons.word.DepChunkTree;
 import corbit.commons.word.ParsedSentence;
@@ -75,16 +72,18 @@ public class SRParserState implements Comparable<SRParserState>
 	public final double scins;
 
 	/** inside feature vector */
-	public final List<IntFeatVector> fvins;
+	public final Chain<IntFeatVector> fvins;
 	/** delayed feature vector */
 	public final List<DelayedFeature> fvdelay;
 
-	/** predictor states */
-	public final Set<SRParserState> preds;
+	/** predictor states, in the order of compareTo without duplicates */
+	public final SRParserState[] preds;
 	/** predictor state with the highest prefix score */
 	public final SRParserState pred0;
-	/** transition score and vector cache from its predictor states */
-	public final Map<SRParserState,Pair<List<IntFeatVector>,Double>> trans;
+	/** transition vectors from the predictor states, parallel to preds (cached only in training) */
+	public final IntFeatVector[] fvtrans;
+	/** transition scores from the predictor states, parallel to preds */
+	public final double[] sctrans;
 	/** preprocessing and pruning decisions forced during decoding */
 	public final SRParserTransition.Decision[] decision;
 
@@ -92,7 +91,7 @@ public class SRParserState implements Comparable<SRParserState>
 	public SRParserHandler.AtomicFeatures atoms;
 
 	/** inside action sequence */
-	public final List<SDAction> lstact;
+	public final Chain<SDAction> lstact;
 
 	/** whether or not the state contains the gold derivation in its graph-structured stack*/
 	public boolean gold;
@@ -108,13 +107,14 @@ public class SRParserState implements Comparable<SRParserState>
 			int idend,
 			double scprf,
 			double scins,
-			List<IntFeatVector> fvins,
+			Chain<IntFeatVector> fvins,
 			List<DelayedFeature> fvdelay,
-			Set<SRParserState> preds,
+			SRParserState[] preds,
 			SRParserState pred0,
-			Map<SRParserState,Pair<List<IntFeatVector>,Double>> trans,
+			IntFeatVector[] fvtrans,
+			double[] sctrans,
 			SRParserTransition.Decision[] decision,
-			List<SDAction> lstact,
+			Chain<SDAction> lstact,
 			boolean gold,
 			long states)
 	{
@@ -131,13 +131,25 @@ public class SRParserState implements Comparable<SRParserState>
 		this.preds = preds;
 		this.fvdelay = fvdelay;
 		this.lstact = lstact;
-		this.trans = trans;
+		this.fvtrans = fvtrans;
+		this.sctrans = sctrans;
 		this.decision = decision;
 		this.gold = gold;
 		this.nstates = states;
 		this.atoms = null;
 	}
 
+	/**
+	 * Returns the position of the predictor state in preds, or -1.
+	 */
+	public int indexOfPred(SRParserState p)
+	{
+		for (int i = 0; i < preds.length; ++i)
+			if (preds[i] == p || preds[i].equals(p))
+				return i;
+		return -1;
+	}
+
 	public DepChunkTree[] pushStack(DepChunkTree t)
 	{
 		DepChunkTree[] _pstck = new DepChunkTree[pstck.length];
@@ -172,9 +184,16 @@ public class SRParserState implements Comparable<SRParserState>
 
 	public static List<SDAction> getActionSequence(SRParserState s)
 	{
-		List<SDAction> l = new LinkedList<SDAction>();
+		List<Chain<SDAction>> lc = new ArrayList<Chain<SDAction>>();
+		int n = 0;
 		for (; s != null; s = s.pred0)
-			l.addAll(0, s.lstact);
+		{
+			lc.add(s.lstact);
+			n += s.lstact.size();
+		}
+		List<SDAction> l = new ArrayList<SDAction>(n);
+		for (int i = lc.size() - 1; i >= 0; --i)
+			l.addAll(lc.get(i).toList());
 		return l;
 	}
 
@@ -185,7 +204,7 @@ public class SRParserState implements Comparable<SRParserState>
 		List<DepChunkTree> lc = new ArrayList<DepChunkTree>();
 		List<DepChunkTree> _lc = new ArrayList<DepChunkTree>();
 
-		for (SRParserState _s = s; _s != null; _s = _s.preds.size() > 0 ? _s.pred0 : null)
+		for (SRParserState _s = s; _s != null; _s = _s.preds.length > 0 ? _s.pred0 : null)
 		{
 			lc.add(_s.pstck[0]);
 			while (lc.size() > 0)
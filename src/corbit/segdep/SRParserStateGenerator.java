@@ -30,17 +30,13 @@
 
 package corbit.segdep;
 
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.TreeSet;
-import java.util.Map.Entry;
 
 import corbit.commons.ml.IntFeatVector;
 import corbit.commons.transition.SDAction;
-import corbit.commons.util.Pair;
+import corbit.commons.util.Chain;
 import corbit.commons.word.DepChunkTree;
 import corbit.commons.word.UnsegmentedSentence;
 import corbit.segdep.handler.DelayedFeature;
@@ -51,6 +47,10 @@ public class SRParserStateGenerator
 {
 	private static final int m_szStack = 3;
 
+	private static final SRParserState[] NO_PREDS = new SRParserState[0];
+	private static final IntFeatVector[] NO_FVTRANS = new IntFeatVector[0];
+	private static final double[] NO_SCTRANS = new double[0];
+
 	private final SRParserHandler m_fhandler;
 
 	private final boolean m_bDP;
@@ -65,30 +65,16 @@ public class SRParserStateGenerator
 
 	public SRParserState create(UnsegmentedSentence sent, SRParserTransition.Decision[] decision)
 	{
-		SRParserState s = m_bDP ?
-				new SRParserDPState(
-						sent,
-						new DepChunkTree[m_szStack],
-						0, 0, -1, -1, 0.0d, 0.0d,
-						new LinkedList<IntFeatVector>(),
-						m_bEvalDelay ? new LinkedList<DelayedFeature>() : null, new TreeSet<SRParserState>(),
-						null,
-						new LinkedHashMap<SRParserState,Pair<List<IntFeatVector>,Double>>(),
-						decision,
-						new LinkedList<SDAction>(),
-						true,
-						1) :
-				new SRParserState(
-						sent,
-						new DepChunkTree[m_szStack],
-						0, 0, -1, -1, 0.0d, 0.0d,
-						new LinkedList<IntFeatVector>(),
-						m_bEvalDelay ? new LinkedList<DelayedFeature>() : null, new TreeSet<SRParserState>(),
-						null,
-						new LinkedHashMap<SRParserState,Pair<List<IntFeatVector>,Double>>(),
-						decision,
-						new LinkedList<SDAction>(),
-						true, 1);
+		SRParserState s = generate(
+				sent,
+				new DepChunkTree[m_szStack],
+				0, 0, -1, -1, 0.0d, 0.0d,
+				Chain.<IntFeatVector>empty(),
+				m_bEvalDelay ? new ArrayList<DelayedFeature>() : null,
+				NO_PREDS, null, NO_FVTRANS, NO_SCTRANS,
+				decision,
+				Chain.<SDAction>empty(),
+				true, 1, false);
 
 		s.pstck[0] = new DepChunkTree(s.sent, -1, -1, DepChunkTree.rootTag, -2, -2, null);
 //		for (int i = 0; i < sent.numChunks(); ++i)
@@ -100,33 +86,19 @@ public class SRParserStateGenerator
 		return s;
 	}
 
-	SRParserState copy(SRParserState s)
+	SRParserState copy(SRParserState s, SRParserState[] preds, IntFeatVector[] fvtrans, double[] sctrans)
 	{
-		SRParserState sNew = m_bDP ?
-				new SRParserDPState(
-						s.sent,
-						s.cloneStack(),
-						s.curidx, s.curstep, s.idbgn, s.idend, s.scprf, s.scins,
-						s.fvins != null ? new LinkedList<IntFeatVector>(s.fvins) : null,
-						m_bEvalDelay ? new LinkedList<DelayedFeature>(s.fvdelay) : null, new TreeSet<SRParserState>(s.preds),
-						s.pred0,
-						new LinkedHashMap<SRParserState,Pair<List<IntFeatVector>,Double>>(s.trans),
-						s.decision,
-						new LinkedList<SDAction>(s.lstact), s.gold,
-						s.nstates) :
-				new SRParserState(
-						s.sent,
-						s.cloneStack(),
-						s.curidx, s.curstep, s.idbgn, s.idend, s.scprf, s.scins,
-						s.fvins != null ? new LinkedList<IntFeatVector>(s.fvins) : null,
-						m_bEvalDelay ? new LinkedList<DelayedFeature>(s.fvdelay) : null, new TreeSet<SRParserState>(s.preds),
-						s.pred0,
-						new LinkedHashMap<SRParserState,Pair<List<IntFeatVector>,Double>>(s.trans),
-						s.decision,
-						new LinkedList<SDAction>(s.lstact),
-						s.gold,
-						s.nstates);
-
+		SRParserState sNew = generate(
+				s.sent,
+				s.cloneStack(),
+				s.curidx, s.curstep, s.idbgn, s.idend, s.scprf, s.scins,
+				s.fvins, s.fvdelay,
+				preds, s.pred0, fvtrans, sctrans,
+				s.decision,
+				s.lstact,
+				s.gold,
+				s.nstates,
+				false);
 		sNew.atoms = s.atoms;
 		return sNew;
 	}
@@ -140,26 +112,53 @@ public class SRParserStateGenerator
 			int idend,
 			double scprf,
 			double scins,
-			List<IntFeatVector> fvins,
+			Chain<IntFeatVector> fvins,
 			List<DelayedFeature> fvdelay,
-			Set<SRParserState> preds,
+			SRParserState[] preds,
 			SRParserState pred0,
-			Map<SRParserState,Pair<List<IntFeatVector>,Double>> trans,
+			IntFeatVector[] fvtrans,
+			double[] sctrans,
 			SRParserTransition.Decision[] decision,
-			List<SDAction> lstact,
+			Chain<SDAction> lstact,
 			boolean gold,
 			long states)
+	{
+		return generate(sent, stack, curidx, curstep, idbgn, idend, scprf, scins,
+				fvins, fvdelay, preds, pred0, fvtrans, sctrans, decision, lstact, gold, states, true);
+	}
+
+	private SRParserState generate(
+			UnsegmentedSentence sent,
+			DepChunkTree[] stack,
+			int curidx,
+			int curstep,
+			int idbgn,
+			int idend,
+			double scprf,
+			double scins,
+			Chain<IntFeatVector> fvins,
+			List<DelayedFeature> fvdelay,
+			SRParserState[] preds,
+			SRParserState pred0,
+			IntFeatVector[] fvtrans,
+			double[] sctrans,
+			SRParserTransition.Decision[] decision,
+			Chain<SDAction> lstact,
+			boolean gold,
+			long states,
+			boolean bCalcAtoms)
 	{
 		SRParserState s = m_bDP ?
 				new SRParserDPState(
 						sent, stack,
 						curidx, curstep, idbgn, idend, scprf, scins,
-						fvins, fvdelay, preds, pred0, trans, decision, lstact, gold, states) :
+						fvins, fvdelay, preds, pred0, fvtrans, sctrans, decision, lstact, gold, states) :
 				new SRParserState(
 						sent, stack,
 						curidx, curstep, idbgn, idend, scprf, scins,
-						fvins, fvdelay, preds, pred0, trans, decision, lstact, gold, states);
-		s.calcAtomicFeatures(m_fhandler);
+						fvins, fvdelay, preds, pred0, fvtrans, sctrans, decision, lstact, gold, states);
+		if (bCalcAtoms)
+			s.calcAtomicFeatures(m_fhandler);
 		return s;
 	}
 
@@ -174,18 +173,43 @@ public class SRParserStateGenerator
 			ps2 = _ps;
 		}
 
-		SRParserState ps = copy(ps1);
-
-		for (SRParserState _ps: ps2.preds)
-			if (!ps.preds.contains(_ps))
-				ps.preds.add(_ps);
-
-		for (Entry<SRParserState,Pair<List<IntFeatVector>,Double>> p: ps2.trans.entrySet())
+		/*
+		 * Merge the sorted predictor arrays; on a tie the predictor of ps1 and
+		 * its transition are kept, as the tree set and the map used to do.
+		 */
+		SRParserState[] preds1 = ps1.preds;
+		SRParserState[] preds2 = ps2.preds;
+		int n1 = preds1.length;
+		int n2 = preds2.length;
+		SRParserState[] preds = new SRParserState[n1 + n2];
+		IntFeatVector[] fvtrans = new IntFeatVector[n1 + n2];
+		double[] sctrans = new double[n1 + n2];
+		int i = 0, j = 0, k = 0;
+		while (i < n1 || j < n2)
 		{
-			SRParserState sk = p.getKey();
-			if (!ps.trans.containsKey(sk))
-				ps.trans.put(sk, p.getValue());
+			int c = i == n1 ? 1 : j == n2 ? -1 : preds1[i].compareTo(preds2[j]);
+			if (c <= 0)
+			{
+				preds[k] = preds1[i];
+				fvtrans[k] = ps1.fvtrans[i];
+				sctrans[k++] = ps1.sctrans[i++];
+				if (c == 0) ++j;
+			}
+			else
+			{
+				preds[k] = preds2[j];
+				fvtrans[k] = ps2.fvtrans[j];
+				sctrans[k++] = ps2.sctrans[j++];
+			}
 		}
+		if (k < preds.length)
+		{
+			preds = Arrays.copyOf(preds, k);
+			fvtrans = Arrays.copyOf(fvtrans, k);
+			sctrans = Arrays.copyOf(sctrans, k);
+		}
+
+		SRParserState ps = copy(ps1, preds, fvtrans, sctrans);
 
 		ps.gold = ps1.gold || ps2.gold && ps1.pstck[0].equals(ps2.pstck[0]);
 
@@ -35,8 +35,9 @@ import java.util.Set;
 import java.util.TreeSet;
 
 import corbit.commons.Vocab;
+import corbit.commons.ml.FeatureTemplate;
 import corbit.commons.ml.IntFeatVector;
-import corbit.commons.ml.WeightVector;
+import corbit.commons.ml.Weights;
 import corbit.commons.transition.SDAction;
 import corbit.commons.util.Pair;
 import corbit.commons.util.Statics;
@@ -61,6 +62,12 @@ public class SRParserCharBasedHandler extends SRParserHandler
 		final String spqp1;
 		final String spqp2;
 
+		/* atom IDs of the strings above, used for template-based features */
+		final int ifqp1;
+		final int ifqp2;
+		final int ipqp1;
+		final int ipqp2;
+
 		private final int hash1;
 		
 		public AtomicTaggingFeatures(int curstep, int curidx, int spanbgn, int spanend,
@@ -74,6 +81,10 @@ public class SRParserCharBasedHandler extends SRParserHandler
 			this.sfqp2 = sfqp2;
 			this.spqp1 = spqp1;
 			this.spqp2 = spqp2;
+			this.ifqp1 = atom(sfqp1);
+			this.ifqp2 = atom(sfqp2);
+			this.ipqp1 = atom(spqp1);
+			this.ipqp2 = atom(spqp2);
 			this.hash1 = hash1();
 		}
 
@@ -137,6 +148,17 @@ public class SRParserCharBasedHandler extends SRParserHandler
 		final String spst1lc;
 		final String punct;
 		final boolean adjoin;
+
+		final int ifst0;
+		final int ifst1;
+		final int ipst0;
+		final int ipst1;
+		final int ipst2;
+		final int ipst0rc;
+		final int ipst0lc;
+		final int ipst1rc;
+		final int ipst1lc;
+		final int ipunct;
 		
 		final TreeSet<DelayedFeature> fvdelay; // must be ordered
 	
@@ -163,6 +185,16 @@ public class SRParserCharBasedHandler extends SRParserHandler
 			this.spst1lc = spst1lc;
 			this.punct = sPunct;
 			this.adjoin = bAdjoin;
+			this.ifst0 = atom(sfst0);
+			this.ifst1 = atom(sfst1);
+			this.ipst0 = atom(spst0);
+			this.ipst1 = atom(spst1);
+			this.ipst2 = atom(spst2);
+			this.ipst0rc = atom(spst0rc);
+			this.ipst0lc = atom(spst0lc);
+			this.ipst1rc = atom(spst1rc);
+			this.ipst1lc = atom(spst1lc);
+			this.ipunct = atom(sPunct);
 			
 			this.fvdelay = fvdelay != null ? new TreeSet<DelayedFeature>(fvdelay) : null;
 			this.hash2 = hash2();
@@ -288,6 +320,86 @@ public class SRParserCharBasedHandler extends SRParserHandler
 		}
 	}
 
+	/*
+	 * feature templates
+	 */
+	
+	private static final FeatureTemplate SH00 = new FeatureTemplate("SH00-%c%s-%s");
+	private static final FeatureTemplate SH001 = new FeatureTemplate("SH001-%c-%s");
+	private static final FeatureTemplate SH002 = new FeatureTemplate("SH002-%c%s-%s");
+	private static final FeatureTemplate SH01 = new FeatureTemplate("SH01-%s-%s");
+	private static final FeatureTemplate SH02 = new FeatureTemplate("SH02-%s-%s-%s");
+	private static final FeatureTemplate SH03 = new FeatureTemplate("SH03-%s-%s");
+	private static final FeatureTemplate SH04 = new FeatureTemplate("SH04-%c%d-%s");
+	private static final FeatureTemplate SH05 = new FeatureTemplate("SH05-%c%d-%s");
+	private static final FeatureTemplate SH06 = new FeatureTemplate("SH06-%c%c-%s");
+	private static final FeatureTemplate SH07 = new FeatureTemplate("SH07-%c%c-%s");
+	private static final FeatureTemplate SH08 = new FeatureTemplate("SH08-%c%c-%s");
+	private static final FeatureTemplate SH09 = new FeatureTemplate("SH09-%s%c-%s");
+	private static final FeatureTemplate SH10 = new FeatureTemplate("SH10-%c%s-%s");
+	private static final FeatureTemplate SH11 = new FeatureTemplate("SH11-%c%c-%s");
+	private static final FeatureTemplate SH12 = new FeatureTemplate("SH12-%c%c-%s");
+	private static final FeatureTemplate SH13 = new FeatureTemplate("SH13-%s%d-%s");
+	private static final FeatureTemplate SH14 = new FeatureTemplate("SH14-%d%s-%s");
+	private static final FeatureTemplate SH15 = new FeatureTemplate("SH15-%s-%s-%s");
+	private static final FeatureTemplate SH16 = new FeatureTemplate("SH16-%s-%s-%s");
+	private static final FeatureTemplate SH17 = new FeatureTemplate("SH17-%s-%s-%s-%s");
+	private static final FeatureTemplate SH18 = new FeatureTemplate("SH18-%s-%s-%s");
+	private static final FeatureTemplate SH19 = new FeatureTemplate("SH19-%s-%s-%s");
+	private static final FeatureTemplate SH20 = new FeatureTemplate("SH20-%s-%s%c-%s");
+	private static final FeatureTemplate SH21 = new FeatureTemplate("SH21-%s-%s%c-%s");
+	private static final FeatureTemplate SH22 = new FeatureTemplate("SH22-%c%s%c%s-%s");
+	private static final FeatureTemplate SH23 = new FeatureTemplate("SH23-%s%c-%s");
+	private static final FeatureTemplate SH24 = new FeatureTemplate("SH24-%s%c-%s");
+	private static final FeatureTemplate SH25 = new FeatureTemplate("SH25-%s%c-%s");
+	private static final FeatureTemplate SH26 = new FeatureTemplate("SH26-%s%c%c-%s");
+	private static final FeatureTemplate SH27 = new FeatureTemplate("SH27-%s%c%c-%s");
+	private static final FeatureTemplate SH28 = new FeatureTemplate("SH28-%s%c-%s-%s");
+	private static final FeatureTemplate SH29 = new FeatureTemplate("SH29-%s%c-%s-%s");
+	private static final FeatureTemplate SH30 = new FeatureTemplate("SH30-%s%c-%s%c-%s");
+	private static final FeatureTemplate SH31 = new FeatureTemplate("SH31-%s%c%c-%s");
+	private static final FeatureTemplate SH90 = new FeatureTemplate("SH90-%d-%s");
+	private static final FeatureTemplate SH91 = new FeatureTemplate("SH91-%d-%d-%s");
+	private static final FeatureTemplate SH92 = new FeatureTemplate("SH92-%d-%d-%d-%s");
+	private static final FeatureTemplate DD00 = new FeatureTemplate("DD00-%d-%d-%s");
+	private static final FeatureTemplate DD01 = new FeatureTemplate("DD01-%d-%d-%s-%s");
+	private static final FeatureTemplate DN00 = new FeatureTemplate("DN00-%d-%d-%s");
+	private static final FeatureTemplate DN01 = new FeatureTemplate("DN01-%d-%d-%s-%s");
+
+	/* the last two atoms of FP01-FP17 are the action label and the word-level flag */
+	private static final FeatureTemplate FP01 = new FeatureTemplate("FP01-%s-%s-%d");
+	private static final FeatureTemplate FP02 = new FeatureTemplate("FP02-%s-%s-%d");
+	private static final FeatureTemplate FP03 = new FeatureTemplate("FP03-%s-%s-%s-%d");
+	private static final FeatureTemplate FP04 = new FeatureTemplate("FP04-%s-%s-%d");
+	private static final FeatureTemplate FP05 = new FeatureTemplate("FP05-%s-%s-%d");
+	private static final FeatureTemplate FP06 = new FeatureTemplate("FP06-%s-%s-%s-%d");
+	private static final FeatureTemplate FP10 = new FeatureTemplate("FP10-%s-%s-%s-%d");
+	private static final FeatureTemplate FP11 = new FeatureTemplate("FP11-%s-%s-%s-%d");
+	private static final FeatureTemplate FP13 = new FeatureTemplate("FP13-%s-%s-%s-%s-%d");
+	private static final FeatureTemplate FP14 = new FeatureTemplate("FP14-%s-%s-%s-%s-%d");
+	private static final FeatureTemplate FP15 = new FeatureTemplate("FP15-%s-%s-%s-%s-%d");
+	private static final FeatureTemplate FP16 = new FeatureTemplate("FP16-%s-%s-%s-%s-%d");
+	private static final FeatureTemplate FP17 = new FeatureTemplate("FP17-%s-%s-%s-%s-%s-%d");
+	private static final FeatureTemplate FP07 = new FeatureTemplate("FP07-%s-%s");
+	private static final FeatureTemplate FP08 = new FeatureTemplate("FP08-%s-%s");
+	private static final FeatureTemplate FP09 = new FeatureTemplate("FP09-%s-%s-%s");
+	private static final FeatureTemplate FP12 = new FeatureTemplate("FP12-%s-%s-%s");
+	private static final FeatureTemplate FP18 = new FeatureTemplate("FP18-%s-%s-%s-%s");
+	private static final FeatureTemplate FP19 = new FeatureTemplate("FP19-%s-%s-%s-%s");
+	private static final FeatureTemplate FP20 = new FeatureTemplate("FP20-%s-%s-%s-%s");
+	private static final FeatureTemplate FP21 = new FeatureTemplate("FP21-%s-%s-%s-%s");
+	private static final FeatureTemplate FP22 = new FeatureTemplate("FP22-%s-%s-%s-%s");
+	private static final FeatureTemplate FP23 = new FeatureTemplate("FP23-%s-%s-%s-%s");
+	private static final FeatureTemplate FP24 = new FeatureTemplate("FP24-%s-%s-%s-%s");
+	private static final FeatureTemplate FP25 = new FeatureTemplate("FP25-%s-%s-%s-%s");
+	private static final FeatureTemplate FP26 = new FeatureTemplate("FP26-%s-%s-%s-%s");
+	private static final FeatureTemplate FP27 = new FeatureTemplate("FP27-%s-%s-%s-%s");
+	private static final FeatureTemplate FP28 = new FeatureTemplate("FP28-%s-%s-%s-%s");
+	private static final FeatureTemplate FP29 = new FeatureTemplate("FP29--%s");
+	private static final FeatureTemplate FP30 = new FeatureTemplate("FP30-%s-%s-%s");
+	private static final FeatureTemplate FP31 = new FeatureTemplate("FP31-%s-%s");
+	private static final FeatureTemplate FP32 = new FeatureTemplate("FP32-%s-%s-%s-%s");
+
 	/*
 	 * beginning of main
 	 */
@@ -297,6 +409,12 @@ public class SRParserCharBasedHandler extends SRParserHandler
 	protected final boolean m_bCharType;
 	protected final double m_dParserWeight;
 	
+	/* atom IDs of frequently used strings */
+	private final int m_iEmpty;
+	private final int m_iOOR;
+	private final int m_iShift;
+	private final int m_iAppend;
+	
 	public SRParserCharBasedHandler(Vocab v, boolean bParse, boolean bLemmaFilter, boolean bCharType, double dParserWeight)
 	{
 		super(v);
@@ -304,13 +422,18 @@ public class SRParserCharBasedHandler extends SRParserHandler
 		m_bLemmaFilter = bLemmaFilter;
 		m_bCharType = bCharType;
 		m_dParserWeight = dParserWeight;
+		m_iEmpty = atom("");
+		m_iOOR = atom(OOR);
+		m_iShift = atom(SDAction.SHIFT.toString());
+		m_iAppend = atom(SDAction.APPEND.toString());
 	}
 
 	/**
-	 * This function should be executed with a VM option that enables efficient concatenation of strings (such as --XX:AggressiveOpts) 
+	 * Features are looked up by template keys, so that no feature string is built
+	 * except for the first occurrence of each feature.
 	 */
 	@Override
-	public Pair<IntFeatVector, Double> getFeatures(SRParserState s0, SDAction act, List<DelayedFeature> vd, boolean bAdd, WeightVector w, SRParserTransition.SRParserCache cache)
+	public Pair<IntFeatVector, Double> getFeatures(SRParserState s0, SDAction act, List<DelayedFeature> vd, boolean bAdd, Weights w, SRParserTransition.SRParserCache cache)
 	{
 		if (!m_bParse) return getTaggingFeatures(s0, act, vd, bAdd, w, cache);
 		
@@ -325,8 +448,11 @@ public class SRParserCharBasedHandler extends SRParserHandler
 		int spanend = atoms.spanend;
 		String sfqp1 = atoms.sfqp1;
 		String sfqp2 = atoms.sfqp2;
-		String spqp2 = atoms.spqp2;
 		String spqp1 = atoms.spqp1;
+		int ifqp1 = atoms.ifqp1;
+		int ifqp2 = atoms.ifqp2;
+		int ipqp2 = atoms.ipqp2;
+		int ipqp1 = atoms.ipqp1;
 
 		/*
 		 *  Evaluate chunking and tagging features
@@ -339,26 +465,15 @@ public class SRParserCharBasedHandler extends SRParserHandler
 		
 		int ln_sfqp1 = sfqp1.equals(OOR) ? 0 : sfqp1.length();
 		int ln_sfqp2 = sfqp2.equals(OOR) ? 0 : sfqp2.length();
-		String ln_sfqp1s = Integer.toString(Math.min(ln_sfqp1, wordNormLength));
-		String ln_sfqp2s = Integer.toString(Math.min(ln_sfqp2, wordNormLength));
-		String c_sfqp1_b = sfqp1.substring(0, 1);
-		String c_sfqp1_e = ln_sfqp1 > 0 ? sfqp1.substring(ln_sfqp1 - 1, ln_sfqp1) : OOR;
-		String c_sfqp2_e = ln_sfqp2 > 0 ? sfqp2.substring(ln_sfqp2 - 1, ln_sfqp2) : OOR;
-		
-		AtomicParsingFeatures atoms2 = (AtomicParsingFeatures)atoms;
-		String sfst0 = atoms2.sfst0;
-		String sfst1 = atoms2.sfst1;
-		String spst0 = atoms2.spst0;
-		String spst1 = atoms2.spst1;
-		String spst2 = atoms2.spst2;
-		String spst0rc = atoms2.spst0rc;
-		String spst0lc = atoms2.spst0lc;
-		String spst1rc = atoms2.spst1rc;
-		String spst1lc = atoms2.spst1lc;
-		String sPunct = atoms2.punct;
-		boolean bAdjoin = atoms2.adjoin;
-		
-		String c0 = curidx < szSent ? s0.sent.substring(curidx, curidx + 1) : OOR;
+		int ln_sfqp1n = Math.min(ln_sfqp1, wordNormLength);
+		int ln_sfqp2n = Math.min(ln_sfqp2, wordNormLength);
+		char c_sfqp1_b = sfqp1.charAt(0);
+		char c_sfqp1_e = ln_sfqp1 > 0 ? sfqp1.charAt(ln_sfqp1 - 1) : OOR.charAt(0);
+		char c_sfqp2_e = ln_sfqp2 > 0 ? sfqp2.charAt(ln_sfqp2 - 1) : OOR.charAt(0);
+		
+		int iAct = atom(act.toString());
+		
+		char c0 = curidx < szSent ? s0.sent.charAt(curidx) : OOR.charAt(0);
 
 		/*
 		 * balancing features (original)
@@ -366,9 +481,9 @@ public class SRParserCharBasedHandler extends SRParserHandler
 		
 		{
 			if (act == SDAction.APPEND || act.isShiftTagAction())
-				sc += addFeature(v, "SH00-" + c_sfqp1_e + spqp1, "", 1.0, bAdd, w);
-			sc += addFeature(v, "SH001-" + c_sfqp1_e, act.toString(), 1.0, bAdd, w);
-			sc += addFeature(v, "SH002-" + c_sfqp1_e + spqp1, act.toString(), 1.0, bAdd, w);
+				sc += addFeature(v, SH00, c_sfqp1_e, ipqp1, m_iEmpty, 1.0, bAdd, w);
+			sc += addFeature(v, SH001, c_sfqp1_e, iAct, 1.0, bAdd, w);
+			sc += addFeature(v, SH002, c_sfqp1_e, ipqp1, iAct, 1.0, bAdd, w);
 		}
 
 		/*
@@ -378,26 +493,26 @@ public class SRParserCharBasedHandler extends SRParserHandler
 		{
 			if (act == SDAction.APPEND)
 			{
-				String sLabel = act.isShiftTagAction() ? SDAction.SHIFT.toString() : act.toString();
+				int iLabel = act.isShiftTagAction() ? m_iShift : iAct;
 				
 				double _sc = 0.0;
 				
-				String c1 = curidx - 1 >= 0 ? Character.toString(s0.sent.charAtIgnoreRange(curidx - 1)) : OOR;
+				char c1 = s0.sent.charAtIgnoreRange(curidx - 1);
 				
 				/* character bigrams within the word */
-				sc += addFeature(v, "SH07-" + c0 + c1, sLabel, 1.0, bAdd, w);
+				sc += addFeature(v, SH07, c0, c1, iLabel, 1.0, bAdd, w);
 				/* tag on a word containing char */
 //				sc += addFeature(v, "SH25a-" + spqp1 + c0, sLabel, 1.0, bAdd, w);
 				if (act == SDAction.APPEND)
-					sc += addFeature(v, "SH25-" + spqp1 + c0, "", 1.0, bAdd, w); // shared with shift-tag action
+					sc += addFeature(v, SH25, ipqp1, c0, m_iEmpty, 1.0, bAdd, w); // shared with shift-tag action
 				/* tag on a word starting with char and containing char */
-				sc += addFeature(v, "SH26-" + spqp1 + c0 + c_sfqp1_b, sLabel, 1.0, bAdd, w);
+				sc += addFeature(v, SH26, ipqp1, c0, c_sfqp1_b, iLabel, 1.0, bAdd, w);
 				/* tag on a word ending with char and containing char */
 //				for (String s: m_dict.getSeenTags(c_sfqp1_b))
 //					sc += addFeature(v, "SH28a-" + spqp1 + c0 + SEP + s, sLabel, 1.0, bAdd, w);
-				sc += addFeature(v, "SH28-" + spqp1 + c0 + SEP + m_dict.getCharType(c_sfqp1_b.charAt(0)), sLabel, 1.0, bAdd, w);
+				sc += addFeature(v, SH28, ipqp1, c0, atom(m_dict.getCharType(c_sfqp1_b)), iLabel, 1.0, bAdd, w);
 				/* tag and character bigrams with in the word */
-				sc += addFeature(v, "SH31-" + spqp1 + c0 + c1, sLabel, 1.0, bAdd, w);
+				sc += addFeature(v, SH31, ipqp1, c0, c1, iLabel, 1.0, bAdd, w);
 
 				sc += _sc;
 			}
@@ -410,7 +525,7 @@ public class SRParserCharBasedHandler extends SRParserHandler
 			 */
 			if (spanend - spanbgn == ln_sfqp1) // for shift or first reduce-left/right
 			{
-				String sLabel = act == SDAction.APPEND ? SDAction.APPEND.toString() : SDAction.SHIFT.toString();
+				int iLabel = act == SDAction.APPEND ? m_iAppend : m_iShift;
 			
 				if (cache != null && !bAdd && act != SDAction.APPEND && cache.wordScore().containsKey(s0))
 					sc += cache.wordScore().get(s0); // use cached information to improve speed
@@ -428,67 +543,67 @@ public class SRParserCharBasedHandler extends SRParserHandler
 						{
 							if (m_wordlists[i].contains(sfqp1))
 							{
-								_sc += addFeature(v, "DD00-" + (i + 1) + SEP + ln_sfqp1s, sLabel, 1.0, bAdd, w);
-								_sc += addFeature(v, "DD01-" + (i + 1) + SEP + ln_sfqp1s + SEP + spqp1, sLabel, 1.0, bAdd, w);
+								_sc += addFeature(v, DD00, i + 1, ln_sfqp1n, iLabel, 1.0, bAdd, w);
+								_sc += addFeature(v, DD01, i + 1, ln_sfqp1n, ipqp1, iLabel, 1.0, bAdd, w);
 							}
 							else
 							{
-								_sc += addFeature(v, "DN00-" + (i + 1) + SEP + ln_sfqp1s, sLabel, 1.0, bAdd, w);
-								_sc += addFeature(v, "DN01-" + (i + 1) + SEP + ln_sfqp1s + SEP + spqp1, sLabel, 1.0, bAdd, w);
+								_sc += addFeature(v, DN00, i + 1, ln_sfqp1n, iLabel, 1.0, bAdd, w);
+								_sc += addFeature(v, DN01, i + 1, ln_sfqp1n, ipqp1, iLabel, 1.0, bAdd, w);
 							}
 						}
 					}
 					
 					// (1) word unigram
-					_sc += addFeature(v, "SH01-" + sfqp1, sLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH01, ifqp1, iLabel, 1.0, bAdd, w);
 					// (2) word bigram
-					_sc += addFeature(v, "SH02-" + sfqp2 + SEP + sfqp1, sLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH02, ifqp2, ifqp1, iLabel, 1.0, bAdd, w);
 					// (3) single-character word
 					if (ln_sfqp1 == 1)
-						_sc += addFeature(v, "SH03-" + sfqp1, sLabel, 1.0, bAdd, w);
+						_sc += addFeature(v, SH03, ifqp1, iLabel, 1.0, bAdd, w);
 					// (4) lemma and length with starting character
-					_sc += addFeature(v, "SH04-" + c_sfqp1_b + ln_sfqp1s, sLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH04, c_sfqp1_b, ln_sfqp1n, iLabel, 1.0, bAdd, w);
 					// (5) lemma and length with ending character
-					_sc += addFeature(v, "SH05-" + c_sfqp1_e + ln_sfqp1s, sLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH05, c_sfqp1_e, ln_sfqp1n, iLabel, 1.0, bAdd, w);
 					// (6) space-separated characters
-					_sc += addFeature(v, "SH06-" + c_sfqp1_e + c0, sLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH06, c_sfqp1_e, c0, iLabel, 1.0, bAdd, w);
 					// (8) the first and last character of the word
-					_sc += addFeature(v, "SH08-" + c_sfqp1_b + c_sfqp1_e, sLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH08, c_sfqp1_b, c_sfqp1_e, iLabel, 1.0, bAdd, w);
 					// (9) word and next character
-					_sc += addFeature(v, "SH09-" + sfqp1 + c0, sLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH09, ifqp1, c0, iLabel, 1.0, bAdd, w);
 					// (10) word and previous character
-					_sc += addFeature(v, "SH10-" + c_sfqp2_e + sfqp1, sLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH10, c_sfqp2_e, ifqp1, iLabel, 1.0, bAdd, w);
 					// (11) the starting characters of two consecutive words
-					_sc += addFeature(v, "SH11-" + c_sfqp1_b + c0, sLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH11, c_sfqp1_b, c0, iLabel, 1.0, bAdd, w);
 					// (12) the ending characters of two consecutive words
-					_sc += addFeature(v, "SH12-" + c_sfqp2_e + c_sfqp1_e, sLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH12, c_sfqp2_e, c_sfqp1_e, iLabel, 1.0, bAdd, w);
 					// (13) word length with previous word
-					_sc += addFeature(v, "SH13-" + sfqp2 + ln_sfqp1s, sLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH13, ifqp2, ln_sfqp1n, iLabel, 1.0, bAdd, w);
 					// (14) word length with next word
-					_sc += addFeature(v, "SH14-" + ln_sfqp2s + sfqp1, sLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH14, ln_sfqp2n, ifqp1, iLabel, 1.0, bAdd, w);
 					
 					// (15) tag and word
-					_sc += addFeature(v, "SH15-" + sfqp1 + SEP + spqp1, sLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH15, ifqp1, ipqp1, iLabel, 1.0, bAdd, w);
 					
 					if (!m_bLemmaFilter || ln_sfqp1 < 3)
 					{
-						_sc += addFeature(v, "SH19-" + spqp2 + SEP + sfqp1, sLabel, 1.0, bAdd, w);
-						_sc += addFeature(v, "SH20-" + sfqp1 + SEP + spqp1 + c_sfqp2_e, sLabel, 1.0, bAdd, w);
-						_sc += addFeature(v, "SH21-" + sfqp1 + SEP + spqp1 + c0, sLabel, 1.0, bAdd, w);
+						_sc += addFeature(v, SH19, ipqp2, ifqp1, iLabel, 1.0, bAdd, w);
+						_sc += addFeature(v, SH20, ifqp1, ipqp1, c_sfqp2_e, iLabel, 1.0, bAdd, w);
+						_sc += addFeature(v, SH21, ifqp1, ipqp1, c0, iLabel, 1.0, bAdd, w);
 					}
 					if (ln_sfqp1 == 1)
-						_sc += addFeature(v, "SH22-" + c_sfqp2_e + sfqp1 + c0 + spqp1, sLabel, 1.0, bAdd, w);
-					_sc += addFeature(v, "SH24-" + spqp1 + c_sfqp1_e, sLabel, 1.0, bAdd, w);
+						_sc += addFeature(v, SH22, c_sfqp2_e, ifqp1, c0, ipqp1, iLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH24, ipqp1, c_sfqp1_e, iLabel, 1.0, bAdd, w);
 					
 					for (int i = 0; i < sfqp1.length() - 1; ++i)
-						_sc += addFeature(v, "SH27-" + spqp1 + sfqp1.charAt(i) + c_sfqp1_e, sLabel, 1.0, bAdd, w);
+						_sc += addFeature(v, SH27, ipqp1, sfqp1.charAt(i), c_sfqp1_e, iLabel, 1.0, bAdd, w);
 
-					String sCat = m_dict.getCharType(c_sfqp1_e.charAt(0));
+					int iCat = atom(m_dict.getCharType(c_sfqp1_e));
 					for (int i = 0; i < sfqp1.length() - 1; ++i)
 					{
 //						for (String s: m_dict.getSeenTags(c_sfqp1_e))
 //							_sc += addFeature(v, "SH29a-" + spqp1 + sfqp1.charAt(i) + SEP + s, sLabel, 1.0, bAdd, w);
-						_sc += addFeature(v, "SH29-" + spqp1 + sfqp1.charAt(i) + SEP + sCat, sLabel, 1.0, bAdd, w);
+						_sc += addFeature(v, SH29, ipqp1, sfqp1.charAt(i), iCat, iLabel, 1.0, bAdd, w);
 					}
 					
 					/*
@@ -517,21 +632,22 @@ public class SRParserCharBasedHandler extends SRParserHandler
 			
 			if (act.isShiftTagAction())
 			{
-				String sLabel = "";
+				int iLabel = m_iEmpty;
 				String spqf1 = act.getTag();
+				int ipqf1 = atom(spqf1);
 				
-				sc += addFeature(v, "SH16-" + spqp1 + SEP + spqf1, sLabel, 1.0, bAdd, w);
-				sc += addFeature(v, "SH17-" + spqp2 + SEP + spqp1 + SEP + spqf1, sLabel, 1.0, bAdd, w);
+				sc += addFeature(v, SH16, ipqp1, ipqf1, iLabel, 1.0, bAdd, w);
+				sc += addFeature(v, SH17, ipqp2, ipqp1, ipqf1, iLabel, 1.0, bAdd, w);
 				if (!m_bLemmaFilter || ln_sfqp1 < 3)
-					sc += addFeature(v, "SH18-" + sfqp1 + SEP + spqf1, sLabel, 1.0, bAdd, w);
-				sc += addFeature(v, "SH23-" + spqf1 + c0, sLabel, 1.0, bAdd, w);
+					sc += addFeature(v, SH18, ifqp1, ipqf1, iLabel, 1.0, bAdd, w);
+				sc += addFeature(v, SH23, ipqf1, c0, iLabel, 1.0, bAdd, w);
 //				sc += addFeature(v, "SH25a-" + spqp1 + c0, sLabel, 1.0, bAdd, w);
-				sc += addFeature(v, "SH25-" + spqf1 + c0, "", 1.0, bAdd, w); // shared with append action
+				sc += addFeature(v, SH25, ipqf1, c0, m_iEmpty, 1.0, bAdd, w); // shared with append action
 //				for (String s: m_dict.getSeenTags(c0))
 //					sc += addFeature(v, "SH28a-" + c0 + spqf1 + SEP + s, sLabel, 1.0, bAdd, w);
 //				for (String s: m_dict.getSeenTags(c0))
 //					sc += addFeature(v, "SH28b-" + c0 + spqf1 + SEP + s, sLabel, 1.0, bAdd, w);
-				sc += addFeature(v, "SH30-" + spqf1 + c0 + SEP + spqp1 + c_sfqp1_e, sLabel, 1.0, bAdd, w);
+				sc += addFeature(v, SH30, ipqf1, c0, ipqp1, c_sfqp1_e, iLabel, 1.0, bAdd, w);
 
 				/*
 				 * Evaluated delayed features
@@ -552,7 +668,7 @@ public class SRParserCharBasedHandler extends SRParserHandler
 		 * Parsing features
 		 */
 		if (m_bParse)
-			sc += addHS10ParserFeatures(act, vd, bAdd, w, v, curidx, szSent, sfst0, sfst1, spst0, spst1, spst2, spst0rc, spst0lc, spst1rc, spst1lc, sPunct, bAdjoin, spanend - spanbgn == ln_sfqp1);
+			sc += addHS10ParserFeatures(act, vd, bAdd, w, v, curidx, szSent, atoms, spanend - spanbgn == ln_sfqp1);
 		
 		return new Pair<IntFeatVector, Double>(v, sc);
 	}
@@ -560,17 +676,34 @@ public class SRParserCharBasedHandler extends SRParserHandler
 	/**
 	 * Add dependency parser features from Huang and Sagae (2010)
 	 */
-	double addHS10ParserFeatures(SDAction act, List<DelayedFeature> vd, boolean bAdd, WeightVector w, IntFeatVector v, int curidx, final int szSent,
-			String sfst0, String sfst1, String spst0, String spst1, String spst2,
-			String spst0rc, String spst0lc, String spst1rc, String spst1lc, String sPunct, boolean bAdjoin, boolean bWordLevel)
+	double addHS10ParserFeatures(SDAction act, List<DelayedFeature> vd, boolean bAdd, Weights w, IntFeatVector v, int curidx, final int szSent,
+			AtomicParsingFeatures atoms, boolean bWordLevel)
 	{
 		String sfqf1 = curidx < szSent ? null : OOR;
 		String spqf1 = curidx < szSent ? null : OOR;
 		String spqf2 = curidx < szSent - 1 ? null : OOR;
 
+		/* strings are needed only by delayed features */
+		String sfst0 = atoms.sfst0;
+		String spst0 = atoms.spst0;
+		String spst1 = atoms.spst1;
+		
+		int ifst0 = atoms.ifst0;
+		int ifst1 = atoms.ifst1;
+		int ipst0 = atoms.ipst0;
+		int ipst1 = atoms.ipst1;
+		int ipst2 = atoms.ipst2;
+		int ipst0rc = atoms.ipst0rc;
+		int ipst0lc = atoms.ipst0lc;
+		int ipst1rc = atoms.ipst1rc;
+		int ipst1lc = atoms.ipst1lc;
+		int ipunct = atoms.ipunct;
+		boolean bAdjoin = atoms.adjoin;
+
 		double sc = 0.0;
 		
 		String sParseLabel = act.toString();
+		int iParseLabel = atom(sParseLabel);
 		
 		final double weight = m_dParserWeight;
 		
@@ -578,26 +711,26 @@ public class SRParserCharBasedHandler extends SRParserHandler
 		 * For all actions
 		 */
 		{
-			String sParseLabel1 = sParseLabel + "-" + (bWordLevel ? 1 : 0);
+			int iWordLevel = bWordLevel ? 1 : 0;
 
-			sc += addFeature(v, "FP01-" + sfst0, sParseLabel1, weight, bAdd, w);
-			sc += addFeature(v, "FP02-" + spst0, sParseLabel1, weight, bAdd, w);
-			sc += addFeature(v, "FP03-" + sfst0 + SEP + spst0, sParseLabel1, weight, bAdd, w);
+			sc += addFeature(v, FP01, ifst0, iParseLabel, iWordLevel, weight, bAdd, w);
+			sc += addFeature(v, FP02, ipst0, iParseLabel, iWordLevel, weight, bAdd, w);
+			sc += addFeature(v, FP03, ifst0, ipst0, iParseLabel, iWordLevel, weight, bAdd, w);
 	
-			sc += addFeature(v, "FP04-" + sfst1, sParseLabel1, weight, bAdd, w);
-			sc += addFeature(v, "FP05-" + spst1, sParseLabel1, weight, bAdd, w);
-			sc += addFeature(v, "FP06-" + sfst1 + SEP + spst1, sParseLabel1, weight, bAdd, w);
+			sc += addFeature(v, FP04, ifst1, iParseLabel, iWordLevel, weight, bAdd, w);
+			sc += addFeature(v, FP05, ipst1, iParseLabel, iWordLevel, weight, bAdd, w);
+			sc += addFeature(v, FP06, ifst1, ipst1, iParseLabel, iWordLevel, weight, bAdd, w);
 	
-			sc += addFeature(v, "FP10-" + sfst0 + SEP + sfst1, sParseLabel1, weight, bAdd, w);
-			sc += addFeature(v, "FP11-" + spst0 + SEP + spst1, sParseLabel1, weight, bAdd, w);
+			sc += addFeature(v, FP10, ifst0, ifst1, iParseLabel, iWordLevel, weight, bAdd, w);
+			sc += addFeature(v, FP11, ipst0, ipst1, iParseLabel, iWordLevel, weight, bAdd, w);
 			
 			if (act != SDAction.APPEND)
 			{
-				sc += addFeature(v, "FP13-" + sfst0 + SEP + spst0 + SEP + spst1, sParseLabel1, weight, bAdd, w);
-				sc += addFeature(v, "FP14-" + sfst0 + SEP + spst0 + SEP + sfst1, sParseLabel1, weight, bAdd, w);
-				sc += addFeature(v, "FP15-" + sfst0 + SEP + sfst1 + SEP + spst1, sParseLabel1, weight, bAdd, w);
-				sc += addFeature(v, "FP16-" + spst0 + SEP + sfst1 + SEP + spst1, sParseLabel1, weight, bAdd, w);
-				sc += addFeature(v, "FP17-" + sfst0 + SEP + spst0 + SEP + sfst1 + SEP + spst1, sParseLabel1, weight, bAdd, w);
+				sc += addFeature(v, FP13, ifst0, ipst0, ipst1, iParseLabel, iWordLevel, weight, bAdd, w);
+				sc += addFeature(v, FP14, ifst0, ipst0, ifst1, iParseLabel, iWordLevel, weight, bAdd, w);
+				sc += addFeature(v, FP15, ifst0, ifst1, ipst1, iParseLabel, iWordLevel, weight, bAdd, w);
+				sc += addFeature(v, FP16, ipst0, ifst1, ipst1, iParseLabel, iWordLevel, weight, bAdd, w);
+				sc += addFeature(v, FP17, ifst0, ipst0, ifst1, ipst1, iParseLabel, iWordLevel, weight, bAdd, w);
 			}
 		}
 
@@ -659,37 +792,42 @@ public class SRParserCharBasedHandler extends SRParserHandler
 			}
 			else
 			{
+				// any of the first two queue items is out of range here, or null otherwise
+				int ifqf1 = m_iOOR;
+				int ipqf1 = m_iOOR;
+				int ipqf2 = m_iOOR;
+				
 				if (sfqf1 != null)
-					sc += addFeature(v, "FP07-" + sfqf1, sParseLabel2, weight, bAdd, w);
+					sc += addFeature(v, FP07, ifqf1, iParseLabel, weight, bAdd, w);
 				
 				if (spqf1 != null)
 				{
-					sc += addFeature(v, "FP08-" + spqf1, sParseLabel2, weight, bAdd, w);
-					sc += addFeature(v, "FP09-" + sfqf1 + SEP + spqf1, sParseLabel2, weight, bAdd, w);
-					sc += addFeature(v, "FP12-" + spst0 + SEP + spqf1, sParseLabel2, weight, bAdd, w);
-					sc += addFeature(v, "FP19-" + spst0 + SEP + spst1 + SEP + spqf1, sParseLabel2, weight, bAdd, w);
-					sc += addFeature(v, "FP21-" + sfst0 + SEP + spst1 + SEP + spqf1, sParseLabel2, weight, bAdd, w);
+					sc += addFeature(v, FP08, ipqf1, iParseLabel, weight, bAdd, w);
+					sc += addFeature(v, FP09, ifqf1, ipqf1, iParseLabel, weight, bAdd, w);
+					sc += addFeature(v, FP12, ipst0, ipqf1, iParseLabel, weight, bAdd, w);
+					sc += addFeature(v, FP19, ipst0, ipst1, ipqf1, iParseLabel, weight, bAdd, w);
+					sc += addFeature(v, FP21, ifst0, ipst1, ipqf1, iParseLabel, weight, bAdd, w);
 	
 					if (spqf2 != null)
 					{
-						sc += addFeature(v, "FP18-" + spst0 + SEP + spqf1 + SEP + spqf2, sParseLabel2, weight, bAdd, w);
-						sc += addFeature(v, "FP20-" + sfst0 + SEP + spqf1 + SEP + spqf2, sParseLabel2, weight, bAdd, w);
+						sc += addFeature(v, FP18, ipst0, ipqf1, ipqf2, iParseLabel, weight, bAdd, w);
+						sc += addFeature(v, FP20, ifst0, ipqf1, ipqf2, iParseLabel, weight, bAdd, w);
 					}
 				}
 			}
 	
-			sc += addFeature(v, "FP22-" + spst0 + SEP + spst1 + SEP + spst1lc, sParseLabel2, weight, bAdd, w);
-			sc += addFeature(v, "FP23-" + spst0 + SEP + spst1 + SEP + spst1rc, sParseLabel2, weight, bAdd, w);
-			sc += addFeature(v, "FP24-" + spst0 + SEP + spst0rc + SEP + spst1, sParseLabel2, weight, bAdd, w);
-			sc += addFeature(v, "FP25-" + spst0 + SEP + spst1lc + SEP + spst1, sParseLabel2, weight, bAdd, w);
-			sc += addFeature(v, "FP26-" + sfst0 + SEP + spst1 + SEP + spst1rc, sParseLabel2, weight, bAdd, w);
-			sc += addFeature(v, "FP27-" + sfst0 + SEP + spst1 + SEP + spst0lc, sParseLabel2, weight, bAdd, w);
-			sc += addFeature(v, "FP28-" + spst0 + SEP + spst1 + SEP + spst2, sParseLabel2, weight, bAdd, w);
+			sc += addFeature(v, FP22, ipst0, ipst1, ipst1lc, iParseLabel, weight, bAdd, w);
+			sc += addFeature(v, FP23, ipst0, ipst1, ipst1rc, iParseLabel, weight, bAdd, w);
+			sc += addFeature(v, FP24, ipst0, ipst0rc, ipst1, iParseLabel, weight, bAdd, w);
+			sc += addFeature(v, FP25, ipst0, ipst1lc, ipst1, iParseLabel, weight, bAdd, w);
+			sc += addFeature(v, FP26, ifst0, ipst1, ipst1rc, iParseLabel, weight, bAdd, w);
+			sc += addFeature(v, FP27, ifst0, ipst1, ipst0lc, iParseLabel, weight, bAdd, w);
+			sc += addFeature(v, FP28, ipst0, ipst1, ipst2, iParseLabel, weight, bAdd, w);
 	
-			sc += addFeature(v, "FP29-", sParseLabel2, bAdjoin ? weight : 0.0, bAdd, w);
-			sc += addFeature(v, "FP30-" + spst0 + SEP + spst1, sParseLabel2, bAdjoin ? weight : 0.0, bAdd, w);
-			sc += addFeature(v, "FP31-" + sPunct, sParseLabel2, weight, bAdd, w);
-			sc += addFeature(v, "FP32-" + spst0 + SEP + spst1 + SEP + sPunct, sParseLabel2, weight, bAdd, w);
+			sc += addFeature(v, FP29, iParseLabel, bAdjoin ? weight : 0.0, bAdd, w);
+			sc += addFeature(v, FP30, ipst0, ipst1, iParseLabel, bAdjoin ? weight : 0.0, bAdd, w);
+			sc += addFeature(v, FP31, ipunct, iParseLabel, weight, bAdd, w);
+			sc += addFeature(v, FP32, ipst0, ipst1, ipunct, iParseLabel, weight, bAdd, w);
 		}
 		
 		return sc;
@@ -700,7 +838,7 @@ public class SRParserCharBasedHandler extends SRParserHandler
 	 * This function exactly follows their original implementation for comparison, 
 	 * and should not be modified.
 	 */
-	private Pair<IntFeatVector, Double> getTaggingFeatures(SRParserState s0, SDAction act, List<DelayedFeature> vd, boolean bAdd, WeightVector w, SRParserTransition.SRParserCache cache)
+	private Pair<IntFeatVector, Double> getTaggingFeatures(SRParserState s0, SDAction act, List<DelayedFeature> vd, boolean bAdd, Weights w, SRParserTransition.SRParserCache cache)
 	{
 		IntFeatVector v = bAdd ? new IntFeatVector() : null;
 		double sc = 0.0;
@@ -711,8 +849,10 @@ public class SRParserCharBasedHandler extends SRParserHandler
 		int curidx = atoms.curidx;
 		String sfqp1 = atoms.sfqp1;
 		String sfqp2 = atoms.sfqp2;
-		String spqp2 = atoms.spqp2;
-		String spqp1 = atoms.spqp1;
+		int ifqp1 = atoms.ifqp1;
+		int ifqp2 = atoms.ifqp2;
+		int ipqp2 = atoms.ipqp2;
+		int ipqp1 = atoms.ipqp1;
 
 		/*
 		 *  Evaluate chunking and tagging features
@@ -725,37 +865,37 @@ public class SRParserCharBasedHandler extends SRParserHandler
 		
 		int ln_sfqp1 = sfqp1.equals(OOR) ? 0 : sfqp1.length();
 		int ln_sfqp2 = sfqp2.equals(OOR) ? 0 : sfqp2.length();
-		String ln_sfqp1s = Integer.toString(Math.min(ln_sfqp1, wordNormLength));
-		String ln_sfqp2s = Integer.toString(Math.min(ln_sfqp2, wordNormLength));
-		String c_sfqp1_b = sfqp1.substring(0, 1);
-		String c_sfqp1_e = ln_sfqp1 > 0 ? sfqp1.substring(ln_sfqp1 - 1, ln_sfqp1) : OOR;
-		String c_sfqp2_e = ln_sfqp2 > 0 ? sfqp2.substring(ln_sfqp2 - 1, ln_sfqp2) : OOR;
+		int ln_sfqp1n = Math.min(ln_sfqp1, wordNormLength);
+		int ln_sfqp2n = Math.min(ln_sfqp2, wordNormLength);
+		char c_sfqp1_b = sfqp1.charAt(0);
+		char c_sfqp1_e = ln_sfqp1 > 0 ? sfqp1.charAt(ln_sfqp1 - 1) : OOR.charAt(0);
+		char c_sfqp2_e = ln_sfqp2 > 0 ? sfqp2.charAt(ln_sfqp2 - 1) : OOR.charAt(0);
 		
-		String c0 = curidx < szSent ? s0.sent.substring(curidx, curidx + 1) : OOR;
+		char c0 = curidx < szSent ? s0.sent.charAt(curidx) : OOR.charAt(0);
 		
 		if (act == SDAction.APPEND)
 		{
-			String sLabel = "";
+			int iLabel = m_iEmpty;
 			
-			String c1 = s0.curidx - 1 >= 0 ? Character.toString(s0.sent.charAt(s0.curidx - 1)) : OOR;
+			char c1 = s0.curidx - 1 >= 0 ? s0.sent.charAt(s0.curidx - 1) : OOR.charAt(0);
 			
 			// character bigrams within the word
-			sc += addFeature(v, "SH07-" + c0 + c1, sLabel, 1.0, bAdd, w);
+			sc += addFeature(v, SH07, c0, c1, iLabel, 1.0, bAdd, w);
 			// tag on a word containing char
-			sc += addFeature(v, "SH25-" + spqp1 + c0, "", 1.0, bAdd, w); // shared with shift-tag action
+			sc += addFeature(v, SH25, ipqp1, c0, m_iEmpty, 1.0, bAdd, w); // shared with shift-tag action
 			// tag on a word starting with char and containing char
-			sc += addFeature(v, "SH26-" + spqp1 + c0 + c_sfqp1_b, sLabel, 1.0, bAdd, w);
+			sc += addFeature(v, SH26, ipqp1, c0, c_sfqp1_b, iLabel, 1.0, bAdd, w);
 			// tag on a word ending with char and containing char
-			sc += addFeature(v, "SH28-" + spqp1 + c0 + SEP + m_dict.getCharType(c_sfqp1_b.charAt(0)), sLabel, 1.0, bAdd, w);
+			sc += addFeature(v, SH28, ipqp1, c0, atom(m_dict.getCharType(c_sfqp1_b)), iLabel, 1.0, bAdd, w);
 			// tag and character bigrams with in the word
-			sc += addFeature(v, "SH31-" + spqp1 + c0 + c1, sLabel, 1.0, bAdd, w);
+			sc += addFeature(v, SH31, ipqp1, c0, c1, iLabel, 1.0, bAdd, w);
 			
 			// additional features to incorporate word-class information (original)
 			if (m_bCharType)
 			{
-				sc += addFeature(v, "SH90-" + (s0.sent.charTypeAt(curidx) == 4 ? "1" : "0"), sLabel, 1.0, bAdd, w);
-				sc += addFeature(v, "SH91-" + s0.sent.charTypeAt(curidx - 1) + SEP + s0.sent.charTypeAt(curidx), sLabel, 1.0, bAdd, w);
-				sc += addFeature(v, "SH92-" + s0.sent.charTypeAt(curidx - 2) + SEP + s0.sent.charTypeAt(curidx - 1) + SEP + s0.sent.charTypeAt(curidx), sLabel, 1.0, bAdd, w);
+				sc += addFeature(v, SH90, s0.sent.charTypeAt(curidx) == 4 ? 1 : 0, iLabel, 1.0, bAdd, w);
+				sc += addFeature(v, SH91, s0.sent.charTypeAt(curidx - 1), s0.sent.charTypeAt(curidx), iLabel, 1.0, bAdd, w);
+				sc += addFeature(v, SH92, s0.sent.charTypeAt(curidx - 2), s0.sent.charTypeAt(curidx - 1), s0.sent.charTypeAt(curidx), iLabel, 1.0, bAdd, w);
 			}
 		}
 		else
@@ -764,7 +904,7 @@ public class SRParserCharBasedHandler extends SRParserHandler
 			 * Word segmentation features
 			 */
 			{
-				String sLabel = "";
+				int iLabel = m_iEmpty;
 				
 				if (cache != null && !bAdd && cache.wordScore().containsKey(s0))
 					sc += cache.wordScore().get(s0);
@@ -782,70 +922,70 @@ public class SRParserCharBasedHandler extends SRParserHandler
 						{
 							if (m_wordlists[i].contains(sfqp1))
 							{
-								_sc += addFeature(v, "DD00-" + (i + 1) + SEP + ln_sfqp1s, sLabel, 1.0, bAdd, w);
-								_sc += addFeature(v, "DD01-" + (i + 1) + SEP + ln_sfqp1s + SEP + spqp1, sLabel, 1.0, bAdd, w);
+								_sc += addFeature(v, DD00, i + 1, ln_sfqp1n, iLabel, 1.0, bAdd, w);
+								_sc += addFeature(v, DD01, i + 1, ln_sfqp1n, ipqp1, iLabel, 1.0, bAdd, w);
 							}
 							else
 							{
-								_sc += addFeature(v, "DN00-" + (i + 1) + SEP + ln_sfqp1s, sLabel, 1.0, bAdd, w);
-								_sc += addFeature(v, "DN01-" + (i + 1) + SEP + ln_sfqp1s + SEP + spqp1, sLabel, 1.0, bAdd, w);
+								_sc += addFeature(v, DN00, i + 1, ln_sfqp1n, iLabel, 1.0, bAdd, w);
+								_sc += addFeature(v, DN01, i + 1, ln_sfqp1n, ipqp1, iLabel, 1.0, bAdd, w);
 							}
 						}
 					}
 					
 					// word unigram
-					_sc += addFeature(v, "SH01-" + sfqp1, sLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH01, ifqp1, iLabel, 1.0, bAdd, w);
 					// word bigram
-					_sc += addFeature(v, "SH02-" + sfqp2 + SEP + sfqp1, sLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH02, ifqp2, ifqp1, iLabel, 1.0, bAdd, w);
 					// single-character word
 					if (ln_sfqp1 == 1)
-						_sc += addFeature(v, "SH03-" + sfqp1, sLabel, 1.0, bAdd, w);
+						_sc += addFeature(v, SH03, ifqp1, iLabel, 1.0, bAdd, w);
 					// lemma and length with starting character
-					_sc += addFeature(v, "SH04-" + c_sfqp1_b + ln_sfqp1s, sLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH04, c_sfqp1_b, ln_sfqp1n, iLabel, 1.0, bAdd, w);
 					// lemma and length with ending character
-					_sc += addFeature(v, "SH05-" + c_sfqp1_e + ln_sfqp1s, sLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH05, c_sfqp1_e, ln_sfqp1n, iLabel, 1.0, bAdd, w);
 					// space-separater characters
-					_sc += addFeature(v, "SH06-" + c_sfqp1_e + c0, sLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH06, c_sfqp1_e, c0, iLabel, 1.0, bAdd, w);
 					// the first and last character of the word
-					_sc += addFeature(v, "SH08-" + c_sfqp1_b + c_sfqp1_e, sLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH08, c_sfqp1_b, c_sfqp1_e, iLabel, 1.0, bAdd, w);
 					// word and next character
-					_sc += addFeature(v, "SH09-" + sfqp1 + c0, sLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH09, ifqp1, c0, iLabel, 1.0, bAdd, w);
 					// word and previous character
-					_sc += addFeature(v, "SH10-" + c_sfqp2_e + sfqp1, sLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH10, c_sfqp2_e, ifqp1, iLabel, 1.0, bAdd, w);
 					// the starting characters of two consecutive words
-					_sc += addFeature(v, "SH11-" + c_sfqp1_b + c0, sLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH11, c_sfqp1_b, c0, iLabel, 1.0, bAdd, w);
 					// the ending characters of two consecutive words
-					_sc += addFeature(v, "SH12-" + c_sfqp2_e + c_sfqp1_e, sLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH12, c_sfqp2_e, c_sfqp1_e, iLabel, 1.0, bAdd, w);
 					// word length with previous word
-					_sc += addFeature(v, "SH13-" + sfqp2 + ln_sfqp1s, sLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH13, ifqp2, ln_sfqp1n, iLabel, 1.0, bAdd, w);
 					// word length with next word
-					_sc += addFeature(v, "SH14-" + ln_sfqp2s + sfqp1, sLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH14, ln_sfqp2n, ifqp1, iLabel, 1.0, bAdd, w);
 					
 					// tag and word
-					_sc += addFeature(v, "SH15-" + sfqp1 + SEP + spqp1, sLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH15, ifqp1, ipqp1, iLabel, 1.0, bAdd, w);
 					
 					if (!m_bLemmaFilter || ln_sfqp1 < 3)
 					{
-						_sc += addFeature(v, "SH19-" + spqp2 + SEP + sfqp1, sLabel, 1.0, bAdd, w);
-						_sc += addFeature(v, "SH20-" + sfqp1 + SEP + spqp1 + c_sfqp2_e, sLabel, 1.0, bAdd, w);
-						_sc += addFeature(v, "SH21-" + sfqp1 + SEP + spqp1 + c0, sLabel, 1.0, bAdd, w);
+						_sc += addFeature(v, SH19, ipqp2, ifqp1, iLabel, 1.0, bAdd, w);
+						_sc += addFeature(v, SH20, ifqp1, ipqp1, c_sfqp2_e, iLabel, 1.0, bAdd, w);
+						_sc += addFeature(v, SH21, ifqp1, ipqp1, c0, iLabel, 1.0, bAdd, w);
 					}
 					if (ln_sfqp1 == 1)
-						_sc += addFeature(v, "SH22-" + c_sfqp2_e + sfqp1 + c0 + spqp1, sLabel, 1.0, bAdd, w);
-					_sc += addFeature(v, "SH24-" + spqp1 + c_sfqp1_e, sLabel, 1.0, bAdd, w);
+						_sc += addFeature(v, SH22, c_sfqp2_e, ifqp1, c0, ipqp1, iLabel, 1.0, bAdd, w);
+					_sc += addFeature(v, SH24, ipqp1, c_sfqp1_e, iLabel, 1.0, bAdd, w);
 					
 					for (int i = 0; i < sfqp1.length() - 1; ++i)
-						_sc += addFeature(v, "SH27-" + spqp1 + sfqp1.charAt(i) + c_sfqp1_e, sLabel, 1.0, bAdd, w);
+						_sc += addFeature(v, SH27, ipqp1, sfqp1.charAt(i), c_sfqp1_e, iLabel, 1.0, bAdd, w);
 
-					String sCat = m_dict.getCharType(c_sfqp1_e.charAt(0));
+					int iCat = atom(m_dict.getCharType(c_sfqp1_e));
 					for (int i = 0; i < sfqp1.length() - 1; ++i)
-						_sc += addFeature(v, "SH29-" + spqp1 + sfqp1.charAt(i) + SEP + sCat, sLabel, 1.0, bAdd, w);
+						_sc += addFeature(v, SH29, ipqp1, sfqp1.charAt(i), iCat, iLabel, 1.0, bAdd, w);
 
 					if (m_bCharType)
 					{
-						_sc += addFeature(v, "SH90-" + (s0.sent.charTypeAt(curidx) == 4 ? "1" : "0"), sLabel, 1.0, bAdd, w);
-						_sc += addFeature(v, "SH91-" + s0.sent.charTypeAt(curidx - 1) + SEP + s0.sent.charTypeAt(curidx), sLabel, 1.0, bAdd, w);
-						_sc += addFeature(v, "SH92-" + s0.sent.charTypeAt(curidx - 2) + SEP + s0.sent.charTypeAt(curidx - 1) + SEP + s0.sent.charTypeAt(curidx), sLabel, 1.0, bAdd, w);
+						_sc += addFeature(v, SH90, s0.sent.charTypeAt(curidx) == 4 ? 1 : 0, iLabel, 1.0, bAdd, w);
+						_sc += addFeature(v, SH91, s0.sent.charTypeAt(curidx - 1), s0.sent.charTypeAt(curidx), iLabel, 1.0, bAdd, w);
+						_sc += addFeature(v, SH92, s0.sent.charTypeAt(curidx - 2), s0.sent.charTypeAt(curidx - 1), s0.sent.charTypeAt(curidx), iLabel, 1.0, bAdd, w);
 					}
 					
 					/* Evaluate partial score and put it to cache */
@@ -858,16 +998,16 @@ public class SRParserCharBasedHandler extends SRParserHandler
 			
 			/* POS tagging features */
 			{
-				String sLabel = "";
-				String spqf1 = act.getTag();
+				int iLabel = m_iEmpty;
+				int ipqf1 = atom(act.getTag());
 				
-				sc += addFeature(v, "SH16-" + spqp1 + SEP + spqf1, sLabel, 1.0, bAdd, w);
-				sc += addFeature(v, "SH17-" + spqp2 + SEP + spqp1 + SEP + spqf1, sLabel, 1.0, bAdd, w);
+				sc += addFeature(v, SH16, ipqp1, ipqf1, iLabel, 1.0, bAdd, w);
+				sc += addFeature(v, SH17, ipqp2, ipqp1, ipqf1, iLabel, 1.0, bAdd, w);
 				if (!m_bLemmaFilter || ln_sfqp1 < 3)
-					sc += addFeature(v, "SH18-" + sfqp1 + SEP + spqf1, sLabel, 1.0, bAdd, w);
-				sc += addFeature(v, "SH23-" + spqf1 + c0, sLabel, 1.0, bAdd, w);
-				sc += addFeature(v, "SH25-" + spqf1 + c0, "", 1.0, bAdd, w); // shared with append action
-				sc += addFeature(v, "SH30-" + spqf1 + c0 + SEP + spqp1 + c_sfqp1_e, sLabel, 1.0, bAdd, w);
+					sc += addFeature(v, SH18, ifqp1, ipqf1, iLabel, 1.0, bAdd, w);
+				sc += addFeature(v, SH23, ipqf1, c0, iLabel, 1.0, bAdd, w);
+				sc += addFeature(v, SH25, ipqf1, c0, m_iEmpty, 1.0, bAdd, w); // shared with append action
+				sc += addFeature(v, SH30, ipqf1, c0, ipqp1, c_sfqp1_e, iLabel, 1.0, bAdd, w);
 			}
 		}
 
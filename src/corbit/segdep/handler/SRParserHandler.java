@@ -36,8 +36,10 @@ import java.util.Set;
 
 import corbit.commons.Vocab;
 import corbit.commons.dict.TagDictionary;
+import corbit.commons.ml.FeatureAtoms;
+import corbit.commons.ml.FeatureTemplate;
 import corbit.commons.ml.IntFeatVector;
-import corbit.commons.ml.WeightVector;
+import corbit.commons.ml.Weights;
 import corbit.commons.transition.SDAction;
 import corbit.commons.util.Pair;
 import corbit.commons.util.Statics;
@@ -50,6 +52,7 @@ import corbit.segdep.transition.SRParserTransition;
 public abstract class SRParserHandler
 {
 	protected final Vocab m_fvocab;
+	protected final FeatureAtoms m_atoms;
 	protected Set<String> m_flist;
 	protected TagDictionary m_dict;
 	protected Vocab[] m_wordlists;
@@ -81,6 +84,7 @@ public abstract class SRParserHandler
 	public SRParserHandler(Vocab vocab)
 	{
 		m_fvocab = vocab;
+		m_atoms = vocab.getAtoms();
 		m_flist = null;
 		m_dict = null;
 		m_wordlists = null;
@@ -100,7 +104,7 @@ public abstract class SRParserHandler
 
 	public abstract AtomicFeatures getAtomicFeatures(SRParserState s);
 
-	public abstract Pair<IntFeatVector,Double> getFeatures(SRParserState s, SDAction act, List<DelayedFeature> vd, boolean bAdd, WeightVector w, SRParserTransition.SRParserCache cache);
+	public abstract Pair<IntFeatVector,Double> getFeatures(SRParserState s, SDAction act, List<DelayedFeature> vd, boolean bAdd, Weights w, SRParserTransition.SRParserCache cache);
 
 	/*
 	 *  utility functions
@@ -127,7 +131,7 @@ public abstract class SRParserHandler
 	}
 
 	protected double evaluateDelayedFeatures(IntFeatVector vn, /*Linked*/List<DelayedFeature> vd,
-			int idxbgn, int woffset, String sForm, String sPos, boolean bAdd, WeightVector w)
+			int idxbgn, int woffset, String sForm, String sPos, boolean bAdd, Weights w)
 	{
 		double score = 0.0;
 		List<DelayedFeature> _vd = new LinkedList<DelayedFeature>();
@@ -163,7 +167,7 @@ public abstract class SRParserHandler
 		return score;
 	}
 
-	protected double evaluateDelayedFeatures(IntFeatVector vn, /*Linked*/List<String> vd, int curidx, String sForm, String sPos, boolean bAdd, WeightVector w)
+	protected double evaluateDelayedFeatures(IntFeatVector vn, /*Linked*/List<String> vd, int curidx, String sForm, String sPos, boolean bAdd, Weights w)
 	{
 		final String sPosArg = getPosArgString(curidx);
 		final String sPosPref = getPosArgPrefix();
@@ -203,32 +207,114 @@ public abstract class SRParserHandler
 		return score;
 	}
 
-	protected double addFeature(IntFeatVector v, String sFeature, double dValue, boolean bAdd, WeightVector w)
+	protected double addFeature(IntFeatVector v, String sFeature, double dValue, boolean bAdd, Weights w)
 	{
 		if (bAdd)
-		{
-			int idx = m_fvocab.getIndex(sFeature);
-			if (v.containsKey(idx))
-				v.put(idx, v.get(idx) + dValue);
-			else
-				v.put(idx, dValue);
-			return w.getWithCheck(idx) * dValue;
-		}
+			return addFeature(v, m_fvocab.getIndex(sFeature), dValue, true, w);
 		else
 		{
 			Integer idx = m_fvocab.getBoxed(sFeature);
 			if (idx != null)
-				return w.get(idx) * dValue;
+				return addFeature(v, idx.intValue(), dValue, false, w);
 			else
 				return 0.0;
 		}
 	}
 
-	protected double addFeature(IntFeatVector v, String sFeature, String sLabel, double dValue, boolean bAdd, WeightVector w)
+	protected double addFeature(IntFeatVector v, String sFeature, String sLabel, double dValue, boolean bAdd, Weights w)
 	{
 		return addFeature(v, sFeature + SEP + sLabel, dValue, bAdd, w);
 	}
 
+	private double addFeature(IntFeatVector v, int idx, double dValue, boolean bAdd, Weights w)
+	{
+		if (idx >= Vocab.HASH_NEGATED)
+		{
+			idx -= Vocab.HASH_NEGATED;
+			dValue = -dValue;
+		}
+		if (bAdd)
+		{
+			v.add(idx, dValue);
+			return w.getWithCheck(idx) * dValue;
+		}
+		else if (idx >= 0)
+			return w.get(idx) * dValue;
+		else
+			return 0.0;
+	}
+
+	/*
+	 * Template-based features: the atoms are combined into a 64-bit key, and
+	 * the feature string is built only when the key is not resolved yet.
+	 * String atoms must be given as IDs obtained by atom().
+	 */
+
+	protected final int atom(String s)
+	{
+		return m_atoms.getId(s);
+	}
+
+	private int resolveFeature(long key, FeatureTemplate t, boolean bAdd, long... args)
+	{
+		String sFeature = t.render(m_atoms, args);
+		return bAdd ? m_fvocab.getIndex(key, sFeature) : m_fvocab.resolveKeyed(key, sFeature);
+	}
+
+	protected double addFeature(IntFeatVector v, FeatureTemplate t, long a1, double dValue, boolean bAdd, Weights w)
+	{
+		long key = t.key(a1);
+		int idx = m_fvocab.getKeyed(key);
+		if (idx == Vocab.KEY_UNRESOLVED || idx < 0 && bAdd)
+			idx = resolveFeature(key, t, bAdd, a1);
+		return addFeature(v, idx, dValue, bAdd, w);
+	}
+
+	protected double addFeature(IntFeatVector v, FeatureTemplate t, long a1, long a2, double dValue, boolean bAdd, Weights w)
+	{
+		long key = t.key(a1, a2);
+		int idx = m_fvocab.getKeyed(key);
+		if (idx == Vocab.KEY_UNRESOLVED || idx < 0 && bAdd)
+			idx = resolveFeature(key, t, bAdd, a1, a2);
+		return addFeature(v, idx, dValue, bAdd, w);
+	}
+
+	protected double addFeature(IntFeatVector v, FeatureTemplate t, long a1, long a2, long a3, double dValue, boolean bAdd, Weights w)
+	{
+		long key = t.key(a1, a2, a3);
+		int idx = m_fvocab.getKeyed(key);
+		if (idx == Vocab.KEY_UNRESOLVED || idx < 0 && bAdd)
+			idx = resolveFeature(key, t, bAdd, a1, a2, a3);
+		return addFeature(v, idx, dValue, bAdd, w);
+	}
+
+	protected double addFeature(IntFeatVector v, FeatureTemplate t, long a1, long a2, long a3, long a4, double dValue, boolean bAdd, Weights w)
+	{
+		long key = t.key(a1, a2, a3, a4);
+		int idx = m_fvocab.getKeyed(key);
+		if (idx == Vocab.KEY_UNRESOLVED || idx < 0 && bAdd)
+			idx = resolveFeature(key, t, bAdd, a1, a2, a3, a4);
+		return addFeature(v, idx, dValue, bAdd, w);
+	}
+
+	protected double addFeature(IntFeatVector v, FeatureTemplate t, long a1, long a2, long a3, long a4, long a5, double dValue, boolean bAdd, Weights w)
+	{
+		long key = t.key(a1, a2, a3, a4, a5);
+		int idx = m_fvocab.getKeyed(key);
+		if (idx == Vocab.KEY_UNRESOLVED || idx < 0 && bAdd)
+			idx = resolveFeature(key, t, bAdd, a1, a2, a3, a4, a5);
+		return addFeature(v, idx, dValue, bAdd, w);
+	}
+
+	protected double addFeature(IntFeatVector v, FeatureTemplate t, long a1, long a2, long a3, long a4, long a5, long a6, double dValue, boolean bAdd, Weights w)
+	{
+		long key = t.key(a1, a2, a3, a4, a5, a6);
+		int idx = m_fvocab.getKeyed(key);
+		if (idx == Vocab.KEY_UNRESOLVED || idx < 0 && bAdd)
+			idx = resolveFeature(key, t, bAdd, a1, a2, a3, a4, a5, a6);
+		return addFeature(v, idx, dValue, bAdd, w);
+	}
+
 	protected static int[] getValencies(DepChunkTree w)
 	{
 		int[] vals = new int[2];
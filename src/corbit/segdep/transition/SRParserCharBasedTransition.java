@@ -31,18 +31,15 @@
 package corbit.segdep.transition;
 
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
+import corbit.commons.dict.TagCandidateCache;
 import corbit.commons.dict.TagDictionary;
 import corbit.commons.io.Console;
 import corbit.commons.ml.IntFeatVector;
-import corbit.commons.ml.WeightVector;
+import corbit.commons.ml.Weights;
 import corbit.commons.transition.SDAction;
+import corbit.commons.util.Chain;
 import corbit.commons.util.GlobalConf;
 import corbit.commons.util.Pair;
 import corbit.commons.word.ArcLabel;
@@ -60,10 +57,20 @@ public class SRParserCharBasedTransition extends SRParserTransition
 {
 	final boolean m_bAlignArcChar;
 
+	/* tag candidates of each position of the sentence being parsed by each thread */
+	private final ThreadLocal<TagCandidateCache> m_tagCache = new ThreadLocal<TagCandidateCache>()
+	{
+		@Override
+		protected TagCandidateCache initialValue()
+		{
+			return new TagCandidateCache(m_dict);
+		}
+	};
+
 	public SRParserCharBasedTransition(
 			SRParserStateGenerator sg,
 			SRParserHandler fh,
-			WeightVector w,
+			Weights w,
 			TagDictionary d,
 			SRParserStats stats,
 			SRParserTransitionParameter params,
@@ -185,15 +192,14 @@ public class SRParserCharBasedTransition extends SRParserTransition
 			Decision ds = s.decision != null && s.curidx > 0 ? s.decision[s.curidx - 1] : Decision.NA;
 
 			if (ds != Decision.SEGMENT && !ws0.isRoot() && ws0c_size == 0)
-				if (!m_bValidateTag || m_dict.validateTagForSequence(sent.substring(s.idbgn, sent_len), ws0.tag, s.idend - s.idbgn + 1))
+				if (!m_bValidateTag || m_dict.validateTagForSequence(sent, s.idbgn, sent_len, ws0.tag, s.idend - s.idbgn + 1))
 					l.add(SDAction.APPEND);
 			if (ds != Decision.IN_WORD && (!m_bGoldArc || goldAct.isShiftTagAction() || goldAct == SDAction.APPEND || goldAct == SDAction.NOT_AVAILABLE))
 			{
 				if (ws0c_size > 0 || ws0.isRoot() ||
 						(!m_bValidateTag || (bValidated = true) && (bValid = m_dict.validateTagForChunk(ws0.form, ws0.tag))))
 				{
-					String seq = sent.substring(s.curidx, sent_len);
-					for (String spqf1: m_dict.getTagCandidatesForSequence(seq))
+					for (String spqf1: m_tagCache.get().getTagCandidatesForSequence(sent, s.curidx))
 						l.add(SDAction.getShiftTagAction(spqf1));
 				}
 			}
@@ -229,29 +235,25 @@ public class SRParserCharBasedTransition extends SRParserTransition
 		SDAction act = sLabel != null ?
 				SDAction.getLabeledReduceAction(bRight, sLabel) :
 				bRight ? SDAction.REDUCE_RIGHT : SDAction.REDUCE_LEFT;
-		List<DelayedFeature> _fvdelay = s.fvdelay != null ? new LinkedList<DelayedFeature>(s.fvdelay) : null;
+		List<DelayedFeature> _fvdelay = s.fvdelay != null ? new ArrayList<DelayedFeature>(s.fvdelay) : null;
 		Pair<IntFeatVector, Double> vsc = m_fhandler.getFeatures(s, act, _fvdelay, bAdd, m_weight, cache);
 		double sr = vsc.second;
 
-		assert (vsc.first == null || m_weight.score(vsc.first) == vsc.second);
+		assert (vsc.first == null || isConsistentScore(vsc.first, vsc.second));
 		
-		for (SRParserState p : s.preds)
+		for (int i = 0; i < s.preds.length; ++i)
 		{
+			SRParserState p = s.preds[i];
 			if (p.pstck[0].isRoot() && (!bRight || s.curidx < s.sent.length())) continue;
 
-			Pair<List<IntFeatVector>, Double> t = s.trans.get(p);
+			double scdlt = s.sctrans[i] + sr;
 
-			double scdlt = t.second + sr;
-
-			List<IntFeatVector> _fvins = null;
+			Chain<IntFeatVector> _fvins = null;
 			if (bAdd)
 			{
-				// This linked-list structure might seem odd, but quite efficient in practice,
-				// avoiding frequent addition of two vectors.
-				_fvins = new LinkedList<IntFeatVector>(s.fvins);
-				_fvins.addAll(p.fvins);
-				_fvins.addAll(t.first);
-				_fvins.add(vsc.first);
+				// This chain structure might seem odd, but quite efficient in practice,
+				// avoiding frequent addition of two vectors; the chains are shared, not copied.
+				_fvins = Chain.of(Chain.of(s.fvins, p.fvins, s.fvtrans[i]), vsc.first);
 			}
 			double _scprf = p.scprf + s.scins + scdlt;
 			double _scins = p.scins + s.scins + scdlt;
@@ -266,28 +268,25 @@ public class SRParserCharBasedTransition extends SRParserTransition
 			c.headEnd = h.end;
 			c.arcLabel = sLabel != null ? ArcLabel.getLabel(sLabel) : null;
 
-			List<SDAction> _lstact = new LinkedList<SDAction>(p.lstact);
-			_lstact.addAll(s.lstact);
-			_lstact.add(act);
+			Chain<SDAction> _lstact = Chain.of(p.lstact, s.lstact, act);
 
 			assert (c.form.length() == c.end - c.begin);
 			int _curstep = m_bAlignArcChar ? s.curstep + 1 : s.curstep;
 			l.add(m_generator.generate(s.sent, _pstck, s.curidx, _curstep, Math.max(p.idbgn, 0), s.idend,
-					_scprf, _scins, _fvins, _fvdelay, p.preds, p.pred0, p.trans, p.decision,
+					_scprf, _scins, _fvins, _fvdelay, p.preds, p.pred0, p.fvtrans, p.sctrans, p.decision,
 					_lstact, s.gold && p.gold && bGoldAct, s.nstates));
 		}
 		return l;
 	}
 
-	@SuppressWarnings("serial")
-	private SRParserState append(final SRParserState s, boolean bGoldAct, boolean bAdd, SRParserCache cache)
+	private SRParserState append(SRParserState s, boolean bGoldAct, boolean bAdd, SRParserCache cache)
 	{
 		assert (!isEnd(s));
 
-		List<DelayedFeature> _fvdelay = s.fvdelay != null ? new LinkedList<DelayedFeature>(s.fvdelay) : null;
-		final Pair<IntFeatVector, Double> vsc = m_fhandler.getFeatures(s, SDAction.APPEND, _fvdelay, bAdd, m_weight, cache);
+		List<DelayedFeature> _fvdelay = s.fvdelay != null ? new ArrayList<DelayedFeature>(s.fvdelay) : null;
+		Pair<IntFeatVector, Double> vsc = m_fhandler.getFeatures(s, SDAction.APPEND, _fvdelay, bAdd, m_weight, cache);
 		
-		assert (vsc.first == null || m_weight.score(vsc.first) == vsc.second);
+		assert (vsc.first == null || isConsistentScore(vsc.first, vsc.second));
 		
 		double scdlt = vsc.second;
 		double _scprf = s.scprf + scdlt;
@@ -297,45 +296,42 @@ public class SRParserCharBasedTransition extends SRParserTransition
 		DepChunkTree dt = _pstck[0];
 		_pstck[0] = new DepChunkTree(dt.sent, dt.begin, dt.end + 1, dt.tag, dt.headBegin, dt.headEnd, dt.arcLabel);
 		
-		List<IntFeatVector> _fvins = bAdd ? new LinkedList<IntFeatVector>(s.fvins) {{ add(vsc.first); }}: null;
-		List<SDAction> _lstact = new LinkedList<SDAction>(s.lstact) {{ add(SDAction.APPEND); }};
+		Chain<IntFeatVector> _fvins = bAdd ? Chain.of(s.fvins, vsc.first) : null;
+		Chain<SDAction> _lstact = Chain.of(s.lstact, SDAction.APPEND);
 		
 		int _curstep = m_bAlignArcChar ? s.curstep + 2 : s.curstep + 1;
 		
 		return m_generator.generate(s.sent, _pstck, s.curidx + 1, _curstep, dt.begin, dt.end + 1,
 				_scprf, _scins, _fvins, s.fvdelay, s.preds, s.pred0,
-				s.trans, s.decision, _lstact, s.gold && bGoldAct, s.nstates);
+				s.fvtrans, s.sctrans, s.decision, _lstact, s.gold && bGoldAct, s.nstates);
 	}
 	
-	@SuppressWarnings("serial")
-	private SRParserState shiftWithPos(final SRParserState s, String sPos, boolean bGoldAct, boolean bAdd, SRParserCache cache)
+	private SRParserState shiftWithPos(SRParserState s, String sPos, boolean bGoldAct, boolean bAdd, SRParserCache cache)
 	{
 		assert (!isEnd(s));
 		
-		final SDAction act = SDAction.getShiftTagAction(sPos);
-		List<DelayedFeature> _fvdelay = s.fvdelay != null ? new LinkedList<DelayedFeature>(s.fvdelay) : null;
-		final Pair<IntFeatVector, Double> vsc = m_fhandler.getFeatures(s, act, _fvdelay, bAdd, m_weight, cache);
-		final List<IntFeatVector> _vc = bAdd ? new LinkedList<IntFeatVector>() {{ add(vsc.first); }} : null;
+		SDAction act = SDAction.getShiftTagAction(sPos);
+		List<DelayedFeature> _fvdelay = s.fvdelay != null ? new ArrayList<DelayedFeature>(s.fvdelay) : null;
+		Pair<IntFeatVector, Double> vsc = m_fhandler.getFeatures(s, act, _fvdelay, bAdd, m_weight, cache);
 		
-		assert (vsc.first == null || m_weight.score(vsc.first) == vsc.second);
+		assert (vsc.first == null || isConsistentScore(vsc.first, vsc.second));
 		
-		final double scdlt = vsc.second;
+		double scdlt = vsc.second;
 		double _scprf = s.scprf + scdlt;
 		double _scins = 0.0d;
 		
 		DepChunkTree[] _pstck = s.pushStack(new DepChunkTree(s.sent, s.curidx, s.curidx + 1, sPos, -2, -2, null));
-		Set<SRParserState> _preds = new HashSet<SRParserState>() {{ add(s); }};
-		Map<SRParserState, Pair<List<IntFeatVector>, Double>> _trans =
-			new LinkedHashMap<SRParserState, Pair<List<IntFeatVector>, Double>>()
-			{{ put(s, new Pair<List<IntFeatVector>, Double>(_vc, scdlt)); }};
-		List<IntFeatVector> _fvins = bAdd ? new LinkedList<IntFeatVector>() {{ add (vsc.first); }}: null;
-		List<SDAction> _lstact = new LinkedList<SDAction>() {{ add(act); }};
+		SRParserState[] _preds = new SRParserState[] { s };
+		IntFeatVector[] _fvtrans = new IntFeatVector[] { bAdd ? vsc.first : null };
+		double[] _sctrans = new double[] { scdlt };
+		Chain<IntFeatVector> _fvins = bAdd ? Chain.of(vsc.first) : null;
+		Chain<SDAction> _lstact = Chain.of(act);
 
 		int _curstep = s.curstep + 1;
 		
 		return m_generator.generate(s.sent, _pstck, s.curidx + 1, _curstep, s.curidx, s.curidx + 1,
 				_scprf, _scins, _fvins, _fvdelay, _preds, s,
-				_trans, s.decision, _lstact, s.gold && bGoldAct, s.nstates);
+				_fvtrans, _sctrans, s.decision, _lstact, s.gold && bGoldAct, s.nstates);
 	}
 
 }
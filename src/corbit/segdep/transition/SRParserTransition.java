@@ -37,7 +37,7 @@ import java.util.Map;
 
 import corbit.commons.dict.TagDictionary;
 import corbit.commons.ml.IntFeatVector;
-import corbit.commons.ml.WeightVector;
+import corbit.commons.ml.Weights;
 import corbit.commons.transition.SDAction;
 import corbit.commons.util.Pair;
 import corbit.commons.word.IndexWord;
@@ -71,7 +71,7 @@ public abstract class SRParserTransition
 
 	protected final SRParserStateGenerator m_generator;
 	protected final SRParserHandler m_fhandler;
-	protected final WeightVector m_weight;
+	protected final Weights m_weight;
 	protected final TagDictionary m_dict;
 
 	protected final boolean m_bGoldSeg;
@@ -91,7 +91,7 @@ public abstract class SRParserTransition
 	protected SRParserTransition(
 			SRParserStateGenerator sg,
 			SRParserHandler fh,
-			WeightVector w,
+			Weights w,
 			TagDictionary d,
 			SRParserStats stats,
 			SRParserTransitionParameter params)
@@ -190,21 +190,68 @@ public abstract class SRParserTransition
 		return new Pair<SDAction,SRParserState>(act, sGold);
 	}
 
+	/*
+	 * the score is summed in a different order from score(); the perceptron
+	 * weights are integers and sum exactly, but mixed or averaged weights are
+	 * not, so the two sums can differ in rounding
+	 */
+	protected boolean isConsistentScore(IntFeatVector v, double dScore)
+	{
+		return m_weight.isUpdatedConcurrently() || Math.abs(m_weight.score(v) - dScore) <= 1e-9 * Math.max(1.0, Math.abs(dScore));
+	}
+
 	public IntFeatVector getPrefixFeatures(SRParserState s)
 	{
-		IntFeatVector fvprf = new IntFeatVector();
 		List<SDAction> lAct = s.getActionSequence();
-		SRParserState s3 = m_generator.create(s.sent, s.decision);
-		for (SDAction act: lAct)
-			s3 = moveNext(s3, act, false, true, null).get(0);
+		return collectFeatures(replay(m_generator.create(s.sent, s.decision), lAct, 0, lAct.size()));
+	}
+
+	/*
+	 * returns the prefix features of sGold minus those of sOut (i.e. the perceptron update).
+	 * The two derivations are replayed from the same state as far as their actions agree,
+	 * so the common prefix, which is usually most of the sentence, is replayed only once.
+	 * The features are added to the vocabulary in the same order as by getPrefixFeatures().
+	 */
+	public IntFeatVector getPrefixFeatureDelta(SRParserState sGold, SRParserState sOut)
+	{
+		List<SDAction> lg = sGold.getActionSequence();
+		List<SDAction> lo = sOut.getActionSequence();
+
+		int k = 0;
+		if (sGold.sent == sOut.sent && sGold.decision == sOut.decision)
+			while (k < lg.size() && k < lo.size() && lg.get(k).equals(lo.get(k)))
+				++k;
+
+		SRParserState s = replay(m_generator.create(sGold.sent, sGold.decision), lg, 0, k);
+		IntFeatVector fvdlt = collectFeatures(replay(s, lg, k, lg.size()));
+		if (k == 0) s = m_generator.create(sOut.sent, sOut.decision);
+		fvdlt.subtract(collectFeatures(replay(s, lo, k, lo.size())));
+		return fvdlt;
+	}
+
+	/*
+	 * moves s by the actions from iBegin to iEnd, adding the features to the vocabulary
+	 */
+	private SRParserState replay(SRParserState s, List<SDAction> lAct, int iBegin, int iEnd)
+	{
+		for (int i = iBegin; i < iEnd; ++i)
+			s = moveNext(s, lAct.get(i), false, true, null).get(0);
+		return s;
+	}
+
+	/*
+	 * collects the features along the derivation of a replayed state
+	 */
+	private static IntFeatVector collectFeatures(SRParserState s3)
+	{
+		IntFeatVector fvprf = new IntFeatVector();
 		SRParserState sss1 = s3;
 		for (SRParserState sss2 = sss1; sss2 != null; sss2 = sss2.pred0)
 		{
 			for (IntFeatVector v: sss2.fvins)
 				fvprf.append(v);
 			if (sss2 != sss1)
-				for (IntFeatVector v: sss1.trans.get(sss2).first)
-					fvprf.append(v);
+				fvprf.append(sss1.fvtrans[sss1.indexOfPred(sss2)]);
 			sss1 = sss2;
 		}
 
@@ -30,9 +30,9 @@
 package corbit.tagdep;
 
 import corbit.commons.util.Pair;
+import corbit.commons.util.PartialSorter;
 import corbit.commons.util.Statics;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -49,6 +49,7 @@ public class DPParserChart {
     boolean m_dp = true;
     LinkedHashMap<SRParserState, Pair<SRParserState, double[]>> m_entries;
     SRParserStateGenerator m_generator;
+    private final PartialSorter<Entry<SRParserState, Pair<SRParserState, double[]>>> m_sorter = new PartialSorter<>();
 
     public int numTotalState() {
         return m_iTotalState;
@@ -140,20 +141,25 @@ public class DPParserChart {
         }
     }
 
+    static final Comparator<Entry<SRParserState, Pair<SRParserState, double[]>>> SCORE_ORDER =
+            new Comparator<Entry<SRParserState, Pair<SRParserState, double[]>>>() {
+                @Override
+                public int compare(Entry<SRParserState, Pair<SRParserState, double[]>> p1,
+                        Entry<SRParserState, Pair<SRParserState, double[]>> p2) {
+                    double[] d1 = p1.getValue().second;
+                    double[] d2 = p2.getValue().second;
+                    return d1[0] < d2[0] ? 1 : (d1[0] == d2[0] ? (d1[1] < d2[1] ? 1 : d1[1] == d2[1] ? 0 : -1) : -1);
+                }
+            };
+
     public void prune(int iBeam) {
-        List<Entry<SRParserState, Pair<SRParserState, double[]>>> l = new LinkedList<>();
-        for (Entry<SRParserState, Pair<SRParserState, double[]>> p : m_entries.entrySet()) {
-            l.add(p);
-        }
-        Collections.sort(l, new Comparator<Entry<SRParserState, Pair<SRParserState, double[]>>>() {
-            @Override
-            public int compare(Entry<SRParserState, Pair<SRParserState, double[]>> p1,
-                    Entry<SRParserState, Pair<SRParserState, double[]>> p2) {
-                double[] d1 = p1.getValue().second;
-                double[] d2 = p2.getValue().second;
-                return d1[0] < d2[0] ? 1 : (d1[0] == d2[0] ? (d1[1] < d2[1] ? 1 : d1[1] == d2[1] ? 0 : -1) : -1);
-            }
-        });
+        List<Entry<SRParserState, Pair<SRParserState, double[]>>> l = new ArrayList<>(m_entries.entrySet());
+        // the loop below stops at the first entry beyond the beam unless it
+        // ties dLastScore, which stays at the lowest possible score as in the
+        // original code, so ties with the last entry in the beam are dropped;
+        // if the (iBeam + 1)-th entry ties it all the rest do too, so only
+        // the first iBeam + 1 entries need sorting
+        m_sorter.sort(l, iBeam + 1, SCORE_ORDER);
         m_entries.clear();
         double[] dLastScore = new double[]{Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
         for (int i = 0; i < l.size(); ++i) {
@@ -80,6 +80,11 @@ class Program {
                     default:
                         throw new IllegalArgumentException("Unknown format: " + sFormat);
                 }
+                lArgs.remove(i);
+                break;
+            case "--compact-weights":
+                lArgs.remove(i);
+                parser.m_bCompactWeights = true;
                 break;
             case "--gold-pos":
                 lArgs.remove(i);
@@ -108,6 +113,10 @@ class Program {
                 lArgs.remove(i);
                 parser.m_bCompressedModel = false;
                 break;
+            case "--binary-model":
+                lArgs.remove(i);
+                parser.m_bBinaryModel = true;
+                break;
             case "--show-stats":
                 lArgs.remove(i);
                 parser.m_bShowStats = true;
@@ -127,7 +136,7 @@ class Program {
      * @param args
      * @throws IOException
      */
-    public static void main(String[] args) throws IOException {
+    public static void main(String[] args) throws IOException, InterruptedException {
         Console.open();
         SRParser parser = new SRParser();
         List<String> lArgs = new LinkedList<>(java.util.Arrays.asList(args));
@@ -218,6 +227,17 @@ class Program {
                 } else if (lArgs.get(i).equals("--aggressive-parallel")) {
                     lArgs.remove(i);
                     parser.m_bAggressiveParallel = true;
+                } else if (lArgs.get(i).equals("--async-train")) {
+                    lArgs.remove(i);
+                    parser.m_iAsyncTrain = Integer.parseInt(lArgs.get(i));
+                    lArgs.remove(i);
+                } else if (lArgs.get(i).equals("--hash-bits")) {
+                    lArgs.remove(i);
+                    parser.m_iHashBits = Integer.parseInt(lArgs.get(i));
+                    lArgs.remove(i);
+                } else if (lArgs.get(i).equals("--signed-hash")) {
+                    lArgs.remove(i);
+                    parser.m_bSignedHash = true;
                 } else if (lArgs.get(i).equals("--closed-tags")) {
                     lArgs.remove(i);
                     parser.m_bUseClosedTags = true;
@@ -247,6 +267,7 @@ class Program {
                         System.err.println(sModelFile + " already exists. Will be overwritten.");
                     }
                 }
+                parser.initFeatureHashing();
                 if (sDictFile != null) {
                     parser.loadDictFromFile(sDictFile, iDictThreshold);
                 }
@@ -260,13 +281,20 @@ class Program {
                 usage();
             } else {
                 parser.loadModel(lArgs.get(1));
+                parser.freezeVocab();
 
                 boolean bPrintParams = false;
+                int iQueueSize = 1024;
                 for (int i = 1; i < lArgs.size();) {
                     if (lArgs.get(i).equals("--print-params")) {
                         lArgs.remove(i);
                         bPrintParams = true;
                     } 
+                    else if (lArgs.get(i).equals("--queue")) {
+                        lArgs.remove(i);
+                        iQueueSize = Integer.parseInt(lArgs.get(i));
+                        lArgs.remove(i);
+                    }
                     else if (evalCommonOpt(parser, i, lArgs)); 
                     else if (evalExperimentalOpt(conf, i, lArgs)); 
                     else if (lArgs.get(i).startsWith("-")) {
@@ -279,14 +307,65 @@ class Program {
                 if (bPrintParams) {
                     parser.printProperties();
                 }
+                parser.compactWeights();
                 System.err.println("\nReady.");
-                parser.run();
+                parser.run(iQueueSize);
+            }
+        } else if (lArgs.get(0).equals("Serve")) {
+            if (lArgs.size() < 2) {
+                usage();
+            } else {
+                parser.loadModel(lArgs.get(1));
+                parser.freezeVocab();
+
+                boolean bPrintParams = false;
+                int iPort = 8090;
+                int iQueueSize = 1024;
+                long lTimeout = 60000;
+                for (int i = 2; i < lArgs.size();) {
+                    switch (lArgs.get(i)) {
+                        case "--print-params":
+                            lArgs.remove(i);
+                            bPrintParams = true;
+                            break;
+                        case "--port":
+                            lArgs.remove(i);
+                            iPort = Integer.parseInt(lArgs.get(i));
+                            lArgs.remove(i);
+                            break;
+                        case "--queue":
+                            lArgs.remove(i);
+                            iQueueSize = Integer.parseInt(lArgs.get(i));
+                            lArgs.remove(i);
+                            break;
+                        case "--timeout":
+                            lArgs.remove(i);
+                            lTimeout = Long.parseLong(lArgs.get(i));
+                            lArgs.remove(i);
+                            break;
+                        default:
+                            if (evalCommonOpt(parser, i, lArgs) || evalExperimentalOpt(conf, i, lArgs)) {
+                                break;
+                            } else if (lArgs.get(i).startsWith("-")) {
+                                System.err.println("Unknown option: " + lArgs.get(i));
+                                System.exit(-1);
+                            } else {
+                                ++i;
+                            }
+                    }
+                }
+                if (bPrintParams) {
+                    parser.printProperties();
+                }
+                parser.compactWeights();
+                parser.serve(iPort, iQueueSize, lTimeout);
             }
         } else if (lArgs.get(0).equals("Test")) {
             if (lArgs.size() < 3) {
                 usage();
             } else {
                 parser.loadModel(lArgs.get(1));
+                parser.freezeVocab();
 
                 String sParseFile = null;
                 String sRefFile = null;
@@ -321,8 +400,35 @@ class Program {
                 if (bPrintParams) {
                     parser.printProperties();
                 }
+                parser.compactWeights();
                 parser.test(lArgs.get(2), sRefFile, sParseFile);
             }
+        } else if (lArgs.get(0).equals("ConvertModel")) {
+            if (lArgs.size() < 3) {
+                usage();
+            } else {
+                for (int i = 3; i < lArgs.size();) {
+                    if (!evalCommonOpt(parser, i, lArgs)) {
+                        System.err.println("Unknown option: " + lArgs.get(i));
+                        System.exit(-1);
+                    }
+                }
+                parser.loadModel(lArgs.get(1));
+                parser.m_bBinaryModel = true;
+                parser.saveModel(lArgs.get(2));
+            }
+        } else if (lArgs.get(0).equals("CompileCorpus")) {
+            if (lArgs.size() < 3) {
+                usage();
+            } else {
+                for (int i = 3; i < lArgs.size();) {
+                    if (!evalCommonOpt(parser, i, lArgs)) {
+                        System.err.println("Unknown option: " + lArgs.get(i));
+                        System.exit(-1);
+                    }
+                }
+                parser.compileCorpus(lArgs.get(1), lArgs.get(2));
+            }
         } else if (lArgs.get(0).equals("CreateDict")) {
             if (lArgs.size() < 3) {
                 usage();
@@ -377,6 +483,10 @@ class Program {
         System.err.println();
         System.err.println("Run (model-file-to-load) [options..] < (input-file) > (output-file)");
         System.err.println("  --print-params       print the list of model and program parameters");
+        System.err.println("  --parallel (int)     set the number of threads parsing sentences");
+        System.err.println("  --queue (int)        set the maximum number of sentences being parsed or waiting to be written (default: 1024)");
+        System.err.println("  --compact-weights    keep only the non-zero weights in floats to save memory");
+        System.err.println("                       (can also be used for Test and Serve commands)");
         System.err.println();
         System.err.println("Train (train-file) (dev-file) (#iteration) (model-file-to-save) [options..]");
         System.err.println("  --beam-size,-b (int) set the beam size");
@@ -388,9 +498,13 @@ class Program {
         System.err.println("    feature-type <1|2> 2: use additional feature templates from Zhang and Nivre (2011)");
         System.err.println("  --rebuild-vocab      remove unnecessary items in the vocabulary at the end of each iteration");
         System.err.println("  --use-trie           use Patricia trie to store the feature index (default: HashMap)");
+        System.err.println("  --hash-bits (int)    hash the features into 2^(int) weights (int <= 24) instead of indexing them");
+        System.err.println("  --signed-hash        negate the values of half of the hashed features to reduce the effect of collisions");
         System.err.println("  --load (file)        load a model file and continue training");
         System.err.println("  --resume             resume training if a temporary file is availale");
         System.err.println("  --no-shuffle         disable shuffling of training instances");
+        System.err.println("  --async-train (int)  train with (int) threads updating shared weights without locks (Hogwild);");
+        System.err.println("                       faster, but the model depends on the thread scheduling");
         System.err.println("  --no-closed-tags     do not use closed-set tags information");
         System.err.println("  --no-early           disable early update");
         System.err.println("  --no-parse           disable dependency parsing (i.e. POS tagging only)");
@@ -401,6 +515,7 @@ class Program {
         System.err.println("  --assign-gold        use gold POS tags for shift actions");
         System.err.println("                       simulate dependency parsing with gold POS tags when used with --gold-pos");
         System.err.println("  --gold-pos           use gold POS tags for look-ahead features");
+        System.err.println("  --binary-model       save the model in the binary format, which is memory-mapped on loading");
         System.err.println();
         System.err.println("  (options below can also be used for Test command)");
         System.err.println("  --parallel (int)     specified the number of CPUs to use for decoding");
@@ -412,6 +527,20 @@ class Program {
         System.err.println("  --save-pos (file)    save the output POS tags to the file");
         System.err.println("  --save-parse (file)  save the output POS tags and parse trees to the file");
         System.err.println();
+        System.err.println("Serve (model-file-to-load) [options..]");
+        System.err.println("  --port (int)         listen on the port of localhost (default: 8090)");
+        System.err.println("                       POST sentences (one per line) to /parse to get the outputs of Run");
+        System.err.println("  --parallel (int)     set the number of worker threads");
+        System.err.println("  --queue (int)        set the maximum number of sentences waiting for a worker (default: 1024)");
+        System.err.println("  --timeout (msec)     set the timeout of each request (default: 60000; 0 to disable)");
+        System.err.println();
+        System.err.println("ConvertModel (model-file-to-load) (model-file-to-save) [--no-compress]");
+        System.err.println("                       convert a text model into the binary format");
+        System.err.println();
+        System.err.println("CompileCorpus (corpus-file) (file-to-save) [--input-format <malt|ctb|conll>]");
+        System.err.println("                       convert a corpus into a binary file of interned words and heads, which can be");
+        System.err.println("                       given to Train and Test in place of the corpus to skip parsing the text");
+        System.err.println();
 //		System.err.println("CreateDict (target-file) (dict-file-to-save)");
     }
 }
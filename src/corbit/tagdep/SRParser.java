@@ -31,12 +31,22 @@ package corbit.tagdep;
 
 import corbit.commons.Vocab;
 import corbit.commons.dict.CTB5TagDictionary;
+import corbit.commons.io.BinaryModel;
+import corbit.commons.io.CompiledCorpus;
 import corbit.commons.io.Console;
+import corbit.commons.io.CorpusLoader;
+import corbit.commons.io.LinePipeline;
+import corbit.commons.io.LineSource;
+import corbit.commons.io.MappedCorpus;
+import corbit.commons.io.ParseServer;
+import corbit.commons.ml.AtomicAveragedWeight;
 import corbit.commons.ml.AveragedWeight;
+import corbit.commons.ml.CompactWeightVector;
 import corbit.commons.ml.IntFeatVector;
-import corbit.commons.ml.WeightVector;
+import corbit.commons.ml.Weights;
 import corbit.commons.transition.PDAction;
 import corbit.commons.util.Pair;
+import corbit.commons.util.PullIterator;
 import corbit.commons.util.Statics;
 import corbit.commons.util.StepCounter;
 import corbit.commons.util.Stopwatch;
@@ -48,6 +58,8 @@ import corbit.tagdep.handler.SRParserCtbHandlerZN11;
 import corbit.tagdep.handler.SRParserHandler;
 import corbit.tagdep.io.CTBReader;
 import corbit.tagdep.io.CoNLLReader;
+import corbit.tagdep.io.CompiledReader;
+import corbit.tagdep.io.InputFormat;
 import corbit.tagdep.io.MaltReader;
 import corbit.tagdep.io.ParseReader;
 import corbit.tagdep.io.ParseWriter;
@@ -65,15 +77,18 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -87,9 +102,13 @@ public class SRParser extends SRParserParameters {
     }
     final Vocab m_vocab;
     AveragedWeight m_weight;
+    // weights for decoding made by compactWeights(), which releases m_weight
+    Weights m_compactWeight;
     SRParserHandler m_fhandler;
     final SRParserStateGenerator m_generator;
     TagDictionary m_dict;
+    // sentences of the corpora read so far, which are kept across epochs
+    private final Map<String, List<DepTreeSentence>> m_corpora = new HashMap<>();
 
     public SRParser() {
         super();
@@ -141,63 +160,209 @@ public class SRParser extends SRParserParameters {
     public void setUseTrie() {
         m_vocab.setUseTrie();
     }
+
+    /**
+     * hashes the features into 2^m_iHashBits weights instead of indexing them
+     * in the vocabulary if m_iHashBits is set
+     */
+    public void initFeatureHashing() {
+        if (m_iHashBits > 0) {
+            m_vocab.setHashed(m_iHashBits, m_bSignedHash);
+        }
+    }
+
+    /**
+     * replaces the weights with a compact, read-only copy holding only the
+     * non-zero weights to decode with as floats; the model
+     * cannot be trained or saved afterwards
+     */
+    public void compactWeights() {
+        if (!m_bCompactWeights) {
+            return;
+        }
+        CompactWeightVector w = new CompactWeightVector(m_bAveraged ? m_weight.getAveragedWeight() : m_weight.getWeight());
+        m_compactWeight = w;
+        m_weight = null;
+        System.err.println(String.format("%d weights compacted into %d bytes.", w.size(), w.byteSize()));
+    }
+
+    /**
+     * returns the weights to decode with
+     */
+    Weights getDecodingWeight() {
+        if (m_compactWeight != null) {
+            return m_compactWeight;
+        }
+        return m_bAveraged ? m_weight.getAveragedWeight() : m_weight.getWeight();
+    }
+
+    /**
+     * moves the vocabulary of a loaded model out of the heap for inference
+     */
+    public void freezeVocab() {
+        m_vocab.freeze();
+    }
     
-    private ParseReader getReader(String file) 
-            throws IOException {
+    private ParseReader getReader(LineSource src) {
         switch(m_iInputFormat) {
             default:
             case Malt: 
-                return new MaltReader(file);
+                return new MaltReader(src);
             case CTB:
-                return new CTBReader(file);
+                return new CTBReader(src);
             case CoNLL:
-                return new CoNLLReader(file);
+                return new CoNLLReader(src);
         }
     }
 
-    double iterateOnce(String sFile, String sRefFile, boolean bTrain, String sParseFile) 
+    /**
+     * returns the sentences of sFile, which are built on m_iParallel threads
+     * (or read from a compiled corpus) when the file is first read and reused
+     * afterwards
+     */
+    private List<DepTreeSentence> loadCorpus(String sFile) 
             throws IOException {
-        ParseReader ct = getReader(sFile);
-        List<DepTreeSentence> lt = new LinkedList<>();
-        for (DepTreeSentence p : ct) {
-            if (p != null) {
-                lt.add(p);
+        List<DepTreeSentence> l = m_corpora.get(sFile);
+        if (l == null && CompiledCorpus.isCompiledCorpus(sFile)) {
+            l = new ArrayList<>();
+            for (DepTreeSentence p : new CompiledReader(new CompiledCorpus(sFile))) {
+                l.add(p);
             }
+            m_corpora.put(sFile, l);
+        } else if (l == null) {
+            CorpusLoader<DepTreeSentence> loader = new CorpusLoader<>(
+                    new CorpusLoader.ReaderFactory<DepTreeSentence>() {
+                        @Override
+                        public PullIterator<DepTreeSentence> open(LineSource src) {
+                            return getReader(src);
+                        }
+                    }, m_iInputFormat != InputFormat.CTB, m_iParallel);
+            l = loader.load(sFile);
+            m_corpora.put(sFile, l);
+        }
+        return l;
+    }
+
+    /**
+     * writes the sentences of sFile into a compiled corpus, which loadCorpus
+     * reads without parsing the text
+     */
+    public void compileCorpus(String sFile, String sOutFile) 
+            throws IOException {
+        CompiledReader.compile(getReader(new MappedCorpus(sFile)), sOutFile);
+    }
+
+    double iterateOnce(String sFile, String sRefFile, boolean bTrain, String sParseFile) 
+            throws IOException {
+        List<DepTreeSentence> lt = loadCorpus(sFile);
+        List<DepTreeSentence> lr = sRefFile != null ? loadCorpus(sRefFile) : null;
+
+        if (bTrain && m_bShuffle) {
+            // the cached corpus keeps the order of the file
+            lt = new ArrayList<>(lt);
+            Statics.shuffle(lt);
         }
-        ct.shutdown();
 
-        List<DepTreeSentence> lr = null;
-        if (sRefFile != null) {
-            lr = new LinkedList<>();
-            ParseReader cr = getReader(sFile);
-            for (DepTreeSentence p : cr) {
-                if (p != null) {
-                    lr.add(p);
+        return bTrain && m_iAsyncTrain > 0
+                ? asyncIterateOnce(lt)
+                : parallelIterateOnce(lt, lr, bTrain, sParseFile);
+    }
+
+    /**
+     * Asynchronous training (Hogwild; Niu et al., 2011): m_iAsyncTrain threads
+     * take the training sentences in turn and apply their updates directly to
+     * a lock-free copy of the weights shared by all of them, which is copied
+     * back to m_weight at the end of the epoch. The result depends on the
+     * scheduling of the threads. POS_DEP is read while decoding, so it is
+     * updated with the outputs at the end of the epoch.
+     */
+    double asyncIterateOnce(final List<DepTreeSentence> gsents) {
+        final AtomicAveragedWeight w = new AtomicAveragedWeight(m_weight, m_vocab.weightCapacity());
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger stopped = new AtomicInteger();
+        final DepTreeSentence[] outs = new DepTreeSentence[gsents.size()];
+
+        SRParserEvaluator eval = new SRParserEvaluator(m_dict, m_bParse, m_bDebug);
+        StepCounter cnt = new StepCounter(m_bDebug ? 0 : 100);
+        ExecutorService execSent = Executors.newFixedThreadPool(m_iAsyncTrain);
+        List<Future<?>> lOuts = new ArrayList<>();
+
+        m_vocab.setConcurrent();
+        for (int k = 0; k < m_iAsyncTrain; ++k) {
+            lOuts.add(execSent.submit(new Runnable() {
+                @Override
+                public void run() {
+                    SentenceParser parser = new SentenceParser(true, false, w);
+                    SRParserEvaluator eval = new SRParserEvaluator(m_dict, m_bParse, false);
+                    try {
+                        for (int iSent; (iSent = next.getAndIncrement()) < gsents.size();) {
+                            DepTreeSentence gsent = gsents.get(iSent);
+                            ParseResult result = parser.parseSentence(gsent);
+                            SRParserState so = result.parsedState;
+                            SRParserState sg = result.goldState;
+                            outs[iSent] = SRParserState.getParsedResult(so);
+                            if (result.stopped) {
+                                stopped.incrementAndGet();
+                            }
+                            if (!eval.evalSentence(outs[iSent], gsent) && sg != null) {
+                                IntFeatVector vd = new IntFeatVector();
+                                vd.append(parser.getPrefixFeatures(sg, gsent));
+                                vd.subtract(parser.getPrefixFeatures(so, gsent));
+                                if (vd.size() > 0) {
+                                    w.append(vd);
+                                }
+                            }
+                            w.nextStep();
+                        }
+                    } finally {
+                        parser.shutdown();
+                    }
                 }
+            }));
+        }
+
+        try {
+            for (Future<?> f : lOuts) {
+                f.get();
             }
-            cr.shutdown();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        } finally {
+            execSent.shutdown();
         }
+        w.copyTo(m_weight);
 
-        if (bTrain && m_bShuffle) {
-            Statics.shuffle(lt);
+        for (int iSent = 0; iSent < outs.length; ++iSent) {
+            m_dict.addPosDependencies(outs[iSent]);
+            eval.evalSentence(outs[iSent], gsents.get(iSent));
+            cnt.increment();
         }
 
-        return parallelIterateOnce(lt, lr, bTrain, sParseFile);
+        if (m_bEarlyUpdate) {
+            Console.writeLine();
+            Console.writeLine(String.format("%d/%d sentences (%f%%) have been early updated.",
+                    stopped.get(), cnt.count(), (double) stopped.get() / (double) cnt.count() * 100.0));
+        }
+        return eval.evalTotal();
     }
 
     private final class SentenceParser {
 
         final boolean bTrain;
-        final WeightVector w;
+        final Weights w;
         final SRParserTransitionStd trans;
         final boolean bParallelMove;
         final ExecutorService execMove;
 
         SentenceParser(final boolean bTrain, final boolean bParallelMove) {
+            this(bTrain, bParallelMove, bTrain ? m_weight : getDecodingWeight());
+        }
+
+        SentenceParser(final boolean bTrain, final boolean bParallelMove, final Weights w) {
             this.bTrain = bTrain;
             this.bParallelMove = bParallelMove;
+            this.w = w;
 
-            w = (!bTrain && m_bAveraged) ? m_weight.getAveragedWeight() : m_weight;
             trans = new SRParserTransitionStd(m_generator, m_fhandler, w, m_dict, m_bParse, m_bAssignPosFollowsShift, m_bAssignGoldPos, m_bShiftWithPos);
             execMove = bParallelMove ? Executors.newFixedThreadPool(bParallelMove ? m_iParallel : 1) : null;
         }
@@ -285,22 +450,26 @@ public class SRParser extends SRParserParameters {
 
         final boolean bParallelMove = bTrain && !m_bAggressiveParallel && m_iParallel > 1;
         final ExecutorService execSent = Executors.newFixedThreadPool(!bParallelMove ? m_iParallel : 1);
-        final int iParallel = bTrain ? m_bAggressiveParallel ? m_iParallel : 1 : gsents.size();
+        final int iParallel = Math.max(1, bTrain ? m_bAggressiveParallel ? m_iParallel : 1 : gsents.size());
 
         final SentenceParser parser = new SentenceParser(bTrain, bParallelMove);
-        List<Future<ParseResult>> lOuts = new LinkedList<>();
+        if (bTrain && m_iParallel > 1) {
+            m_vocab.setConcurrent(); // features are added by parallel moves or sentences
+        }
+        List<Future<ParseResult>> lOuts = new ArrayList<>();
+        List<DepTreeSentence> lOutSents = new ArrayList<>();
 
         try {
-            for (int iPhase = 0; iPhase < gsents.size() / iParallel + 1; ++iPhase) {
+            for (int iPhase = 0; iPhase * iParallel < gsents.size(); ++iPhase) {
                 /*
-                 * queue a group of parallel threads
+                 * queue a group of parallel threads; each sentence is decoded once
                  */
 
                 lOuts.clear();
+                lOutSents.clear();
 
                 for (int iSent = iPhase * iParallel; iSent < (iPhase + 1) * iParallel && iSent < gsents.size(); ++iSent) {
                     final DepTreeSentence gsent = gsents.get(iSent);
-                    parser.parseSentence(gsent);
                     lOuts.add(execSent.submit(new Callable<ParseResult>() {
                         @Override
                         public ParseResult call() {
@@ -314,11 +483,7 @@ public class SRParser extends SRParserParameters {
                  */
 
                 IntFeatVector vdTotal = bTrain ? new IntFeatVector() : null;
-                
-                
-               
-                String[] values = null;
-                
+
                 for (int i = 0; i < lOuts.size(); ++i) {
                     // retrieve the results
                     ParseResult result = lOuts.get(i).get();
@@ -326,30 +491,8 @@ public class SRParser extends SRParserParameters {
                     SRParserState so = result.parsedState;
                     SRParserState sg = result.goldState;
                     DepTreeSentence osent = SRParserState.getParsedResult(so);
-                    values = new String[44];
-                    for(int d=0; d<osent.size() ; d++){
-                        if(osent.get(d).dependency != null){
-                            
-                            
-                            if( !m_dict.POS_DEP.containsKey(osent.get(d).pos) ){
-                                values = new String[44];
-                                values[0] = osent.get(d).dependency;
-                                m_dict.POS_DEP.put(osent.get(d).pos, values);
-                            }else{
-                                values = m_dict.POS_DEP.get(osent.get(d).pos);
-                                int c=0;
-                                for( c=0; c<40; c++){
-                                    if(values[c]== null){
-                                        break;
-                                    }
-                                }
-                                values[c] = osent.get(d).dependency;
-                                m_dict.POS_DEP.put(osent.get(d).pos,values);
-                            }
-                          values=null;  
-                        }
-                    }
-                    
+                    lOutSents.add(osent);
+
                     DepTreeSentence gsent = gsents.get(iPhase * iParallel + i);
                     DepTreeSentence rsent = rsents != null ? rsents.get(iPhase * iParallel + i) : null;
 
@@ -374,14 +517,20 @@ public class SRParser extends SRParserParameters {
                     if (bTrain && !bResult && sg != null) {//???????? && sg != null????????????
                         IntFeatVector vg = parser.getPrefixFeatures(sg, gsent);
                         IntFeatVector vo = parser.getPrefixFeatures(so, gsent);
-                        IntFeatVector vd = IntFeatVector.subtract(vg, vo);
-                        vdTotal.append(vd);
+                        vdTotal.append(vg);
+                        vdTotal.subtract(vo);
                     }
 
                     dTotalScore += so.scprf;
                     cnt.increment();
                 }
 
+                // the dependency labels of tags are read while decoding, so update them
+                // after all the threads of the group are finished
+                for (DepTreeSentence osent : lOutSents) {
+                    m_dict.addPosDependencies(osent);
+                }
+
                 // perceptron update
                 if (bTrain) {
                     if (vdTotal.size() > 0) {
@@ -439,46 +588,99 @@ public class SRParser extends SRParserParameters {
         sw.lap();
     }
 
-    public void run() throws IOException {
-        SentenceParser sp = new SentenceParser(false, m_iParallel > 1);
+    /**
+     * Parses sentences from stdin on m_iParallel threads, which share the
+     * averaged weights of one SentenceParser, and writes the results in the
+     * input order. At most iQueueSize sentences are in flight.
+     */
+    public void run(int iQueueSize) throws IOException, InterruptedException {
+        final SentenceParser sp = new SentenceParser(false, false);
+        final AtomicInteger n = new AtomicInteger();
         BufferedReader br = new BufferedReader(new InputStreamReader(System.in, "UTF8"));
 
-        String buf;
-        int n = 0;
-
-        main:
-        while ((buf = br.readLine()) != null) {
-            
-            buf = Statics.trimSpecial(buf);
-            if (buf.length() == 0) {
-                Console.writeLine();
-                continue main;
+        LinePipeline pipeline = new LinePipeline(new LinePipeline.Processor() {
+            @Override
+            public String process(String sLine) {
+                String buf = Statics.trimSpecial(sLine);
+                if (buf.length() == 0) {
+                    return "";
+                }
+                DepTreeSentence sent = createSentenceFromLine(buf);
+                if (sent == null) {
+                    System.err.println("POS tags are required when --assign-gold option is used.");
+                    return null;
+                }
+                ParseResult pr = sp.parseSentence(sent);
+                int i = n.incrementAndGet();
+                if (i % 100 == 0) {
+                    System.err.println(i + " sentences processed.");
+                }
+                return formatResult(SRParserState.getParsedResult(pr.parsedState));
             }
-            String[] words = buf.split(" +");
+        }, m_iParallel, iQueueSize);
 
-            DepTreeSentence sent = new DepTreeSentence();
+        try {
+            pipeline.run(br);
+        } finally {
+            sp.shutdown();
+        }
+        System.err.println("done.");
+    }
 
-            for (int i = 0; i < words.length; ++i) {
-                String[] word = words[i].split("/");
-                if (m_bAssignGoldPos && word.length < 2) {
-                    System.err.println("POS tags are required when --assign-gold option is used.");
-                    continue main;
+    /**
+     * Parses sentences posted over HTTP on the loopback interface until the
+     * server is shut down. One SentenceParser is shared by the m_iParallel
+     * workers of the server.
+     */
+    public void serve(int iPort, int iQueueSize, long lTimeout) throws IOException, InterruptedException {
+        final SentenceParser sp = new SentenceParser(false, false);
+        ParseServer server = new ParseServer(new ParseServer.Handler() {
+            @Override
+            public String parse(String sLine) {
+                String buf = Statics.trimSpecial(sLine);
+                if (buf.length() == 0) {
+                    return String.format("%n");
                 }
-                sent.add(new DepTree(sent, i, word[0], m_bAssignGoldPos && word.length > 1 ? word[1] : null,null, -2,null));
-            }
-            ParseResult pr = sp.parseSentence(sent);
-            DepTreeSentence osent = SRParserState.getParsedResult(pr.parsedState);
-            for (DepTree dw : osent) {
-                Console.writeLine(String.format("%d\t%s\t%s\t%d", dw.index, dw.form, dw.pos, dw.head, dw.dependency));
+                DepTreeSentence sent = createSentenceFromLine(buf);
+                if (sent == null) {
+                    throw new IllegalArgumentException("POS tags are required when --assign-gold option is used.");
+                }
+                ParseResult pr = sp.parseSentence(sent);
+                return String.format("%s%n", formatResult(SRParserState.getParsedResult(pr.parsedState)));
             }
-            Console.writeLine();
-            if (++n % 100 == 0) {
-                System.err.println(n + " sentences processed.");
+        }, iPort, m_iParallel, iQueueSize, lTimeout);
+        try {
+            server.start();
+            server.awaitTermination();
+        } finally {
+            sp.shutdown();
+        }
+    }
+
+    /**
+     * Creates a sentence from space-separated words (with tags, if
+     * m_bAssignGoldPos is set); returns null if the tags are missing.
+     */
+    private DepTreeSentence createSentenceFromLine(String buf) {
+        String[] words = buf.split(" +");
+        DepTreeSentence sent = new DepTreeSentence();
+        for (int i = 0; i < words.length; ++i) {
+            String[] word = words[i].split("/");
+            if (m_bAssignGoldPos && word.length < 2) {
+                return null;
             }
+            sent.add(new DepTree(sent, i, word[0], m_bAssignGoldPos && word.length > 1 ? word[1] : null,null, -2,null));
         }
-        System.err.println("done.");
+        return sent;
+    }
 
-        sp.shutdown();
+    // output of a sentence in the format of the Run command, without the last line break
+    private String formatResult(DepTreeSentence osent) {
+        StringBuilder sb = new StringBuilder();
+        for (DepTree dw : osent) {
+            sb.append(String.format("%d\t%s\t%s\t%d%n", dw.index, dw.form, dw.pos, dw.head));
+        }
+        return sb.toString();
     }
 
     public void train(String sTrainFile, String sDevFile, String sSaveFile, int iMaxPerceptIt) 
@@ -487,6 +689,7 @@ public class SRParser extends SRParserParameters {
         Stopwatch sw;
         Stopwatch swTotal = new Stopwatch("Training");
 
+        m_weight.loadDense();
         m_iIteration = m_iIteration == 0 ? 1 : m_iIteration + 1;
 
         if (m_iIteration > 1) {
@@ -554,7 +757,7 @@ public class SRParser extends SRParserParameters {
             DPParserChart cchart,
             DPParserChart nchart,
             final SRParserTransition trans,
-            WeightVector w,
+            Weights w,
             final DepTreeSentence gsent,
             final boolean bAdd,
             ExecutorService exec) {
@@ -602,7 +805,7 @@ public class SRParser extends SRParserParameters {
             DPParserChart cchart,
             DPParserChart nchart,
             SRParserTransition trans,
-            WeightVector w,
+            Weights w,
             DepTreeSentence gsent,
             boolean bAdd) {
         boolean bAnyUpdated = false;
@@ -662,17 +865,21 @@ public class SRParser extends SRParserParameters {
         sw.start();
         File ftmp = File.createTempFile("~segdep", ".model", new File("."));
         ftmp.deleteOnExit();
-        OutputStream os = m_bCompressedModel
-                ? new GZIPOutputStream(new FileOutputStream(ftmp))
-                : new FileOutputStream(ftmp);
-        try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(os, "UTF-8"))) {
-            saveProperties(pw);
-            m_vocab.save(pw);
-            pw.println(m_dict != null);
-            if (m_dict != null) {
-                m_dict.saveToStream(pw);
+        if (m_bBinaryModel) {
+            saveBinaryModel(ftmp);
+        } else {
+            OutputStream os = m_bCompressedModel
+                    ? new GZIPOutputStream(new FileOutputStream(ftmp))
+                    : new FileOutputStream(ftmp);
+            try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(os, "UTF-8"))) {
+                saveProperties(pw);
+                m_vocab.save(pw);
+                pw.println(m_dict != null);
+                if (m_dict != null) {
+                    m_dict.saveToStream(pw);
+                }
+                m_weight.save(pw);
             }
-            m_weight.save(pw);
         }
         File fout = new File(sFile);
         if (fout.exists()) {
@@ -684,7 +891,55 @@ public class SRParser extends SRParserParameters {
         sw.lap();
     }
 
+    /**
+     * Saves the model in the binary format, where the properties and the tag
+     * dictionary are kept in text sections.
+     */
+    private void saveBinaryModel(File f) throws IOException {
+        try (BinaryModel.Writer w = new BinaryModel.Writer(f)) {
+            StringWriter sw = new StringWriter();
+            PrintWriter pw = new PrintWriter(sw);
+            saveProperties(pw);
+            pw.flush();
+            w.putText("PROPS", sw.toString());
+            m_vocab.save(w, "VOCAB");
+            if (m_dict != null) {
+                sw = new StringWriter();
+                pw = new PrintWriter(sw);
+                m_dict.saveToStream(pw);
+                pw.flush();
+                w.putText("DICT", sw.toString());
+            }
+            w.beginSection("WEIGHT");
+            m_weight.save(w);
+            w.endSection();
+        }
+    }
+
+    private void loadBinaryModel(String sFile) throws IOException {
+        System.err.println("Mapping model..");
+        BinaryModel model = new BinaryModel(sFile);
+        loadProperties(model.getTextSection("PROPS"));
+        if (m_bUseTrie) {
+            setUseTrie();
+        }
+        initFeatureHashing();
+        m_vocab.load(model, "VOCAB");
+        setFeatureHandler(m_iFeatureType);
+        if (model.hasSection("DICT")) {
+            m_dict = new CTBTagDictionary(m_bUseClosedTags);
+            m_dict.clear();
+            m_dict.loadFromStream(model.getTextSection("DICT"));
+            m_fhandler.setTagDictionary(m_dict);
+        }
+        m_weight.load(model.getSection("WEIGHT"));
+    }
+
     public void loadModel(String sFile) throws IOException {
+        if (BinaryModel.isBinaryModel(sFile)) {
+            loadBinaryModel(sFile);
+            return;
+        }
         System.err.println("Loading model..");
         InputStream is = m_bCompressedModel
                 ? new GZIPInputStream(new FileInputStream(sFile))
@@ -694,6 +949,7 @@ public class SRParser extends SRParserParameters {
             if (m_bUseTrie) {
                 setUseTrie();
             }
+            initFeatureHashing();
             m_vocab.load(sr);
             setFeatureHandler(m_iFeatureType);
             if (Boolean.parseBoolean(sr.readLine()) == true) {
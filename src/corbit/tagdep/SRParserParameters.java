@@ -36,11 +36,12 @@ import java.io.PrintWriter;
 
 public class SRParserParameters {
 
-    final int m_numOpts = 24;
+    final int m_numOpts = 26;
     // model parameters to save
     int m_iFeatureType = 0; // 0: HS10, 1: ZC11
     int m_iBeam = 16;
     int m_iDepth = 0;
+    int m_iHashBits = 0; // feature hashing (0: disabled)
     int m_iIteration = 0;
     int m_iBestIteration = 0;
     double m_dMargin = 0.0d;
@@ -59,17 +60,21 @@ public class SRParserParameters {
     boolean m_bShuffle = true;
     boolean m_bAggressiveParallel = false;
     boolean m_bUseClosedTags = true;
+    boolean m_bSignedHash = false;
     public boolean m_bUseSyntax = true;
     public boolean m_bUseTagFeature = true;
     public boolean m_bUseLookAhead = true;
     // program options
     int m_iParallel = 1;
+    int m_iAsyncTrain = 0; // asynchronous (Hogwild) training
     InputFormat m_iInputFormat = InputFormat.Malt; // 0: Malt, 1: CTB, 2: CoNLL
     boolean m_bDebug = false;
     boolean m_bLoadOnMemory = true;
+    boolean m_bCompactWeights = false; // decode with the non-zero weights only
     boolean m_bSaveEach = false;
     boolean m_bCheckOpts = false;
     boolean m_bCompressedModel = true;
+    boolean m_bBinaryModel = false;
     boolean m_bSaveOnlyPos = false;
     boolean m_bShowStats = false;
     boolean m_bRebuildVocab = true;
@@ -99,6 +104,8 @@ public class SRParserParameters {
         pw.println("bShuffle = " + m_bShuffle);
         pw.println("bAggressiveParallel = " + m_bAggressiveParallel);
         pw.println("bUseClosedTags = " + m_bUseClosedTags);
+        pw.println("iHashBits = " + m_iHashBits);
+        pw.println("bSignedHash = " + m_bSignedHash);
         pw.println("EOP");
     }
 
@@ -159,6 +166,10 @@ public class SRParserParameters {
                 m_bAggressiveParallel = Boolean.parseBoolean(sVal);
             } else if (sKey.equals("bUseClosedTags")) {
                 m_bUseClosedTags = Boolean.parseBoolean(sVal);
+            } else if (sKey.equals("iHashBits")) {
+                m_iHashBits = Integer.parseInt(sVal);
+            } else if (sKey.equals("bSignedHash")) {
+                m_bSignedHash = Boolean.parseBoolean(sVal);
             } else if (m_bCheckOpts) {
                 throw new RuntimeException("Cannot recognize model parameter: " + sKey);
             } else {
@@ -178,11 +189,14 @@ public class SRParserParameters {
     void printProperties() {
         System.err.println("[options]");
         System.err.println("iThread = " + m_iParallel);
+        System.err.println("iAsyncTrain = " + m_iAsyncTrain);
+        System.err.println("bCompactWeights = " + m_bCompactWeights);
         System.err.println("bDebug = " + m_bDebug);
         System.err.println("bLoadOnMemory = " + m_bLoadOnMemory);
         System.err.println("bSaveEachTime = " + m_bSaveEach);
         System.err.println("bCheckOpts = " + m_bCheckOpts);
         System.err.println("bCompressedModel = " + m_bCompressedModel);
+        System.err.println("bBinaryModel = " + m_bBinaryModel);
         System.err.println("bSaveOnlyPos = " + m_bSaveOnlyPos);
         System.err.println("bShowStats = " + m_bShowStats);
         System.err.println("bRebuildVocab = " + m_bRebuildVocab);
@@ -210,6 +224,8 @@ public class SRParserParameters {
         System.err.println("bShuffle = " + m_bShuffle);
         System.err.println("bAggressiveParallel = " + m_bAggressiveParallel);
         System.err.println("bUseClosedTags = " + m_bUseClosedTags);
+        System.err.println("iHashBits = " + m_iHashBits);
+        System.err.println("bSignedHash = " + m_bSignedHash);
         System.err.println();
     }
 }
@@ -29,6 +29,7 @@
  */
 package corbit.tagdep.dict;
 
+import corbit.commons.util.PullIterator;
 import corbit.commons.util.Statics;
 import corbit.commons.util.StepCounter;
 import corbit.tagdep.SRParser;
@@ -185,6 +186,30 @@ public abstract class TagDictionary {
         }   
     }
 
+    /**
+     * Records the dependency labels assigned to each tag in a parsed sentence;
+     * POS_DEP keeps up to 40 labels (with duplicates) per tag.
+     */
+    public void addPosDependencies(DepTreeSentence sent) {
+        for (DepTree t : sent) {
+            if (t.dependency == null) {
+                continue;
+            }
+            String[] values = POS_DEP.get(t.pos);
+            if (values == null) {
+                values = new String[44];
+                values[0] = t.dependency;
+                POS_DEP.put(t.pos, values);
+            } else {
+                int c = 0;
+                while (c < 40 && values[c] != null) {
+                    ++c;
+                }
+                values[c] = t.dependency;
+            }
+        }
+    }
+
     public String[] getTagList() {
         return m_tagList;
     }
@@ -296,10 +321,11 @@ public abstract class TagDictionary {
         Map<String, Map<String, Integer>> DepDict = new LinkedHashMap<>();  //افزوده شده
         
         StepCounter sc = new StepCounter();
+        PullIterator<DepTreeSentence> it = pr.readAhead(ParseReader.READ_AHEAD_BATCH);
 
         try {
-            while (pr.hasNext()) {
-                DepTreeSentence sent = pr.next();
+            while (it.hasNext()) {
+                DepTreeSentence sent = it.next();
                 if (sent == null) {
                     continue;
                 }
@@ -317,7 +343,7 @@ public abstract class TagDictionary {
                 sc.increment();
             }
         } finally {
-            pr.shutdown();
+            it.shutdown();
         }
         try (PrintWriter sw = new PrintWriter(
                         new OutputStreamWriter(
@@ -372,7 +398,7 @@ public abstract class TagDictionary {
     }
 
     public void saveToStream(PrintWriter sw) {
-        sw.println(m_tagDict.size() + m_closedTagDict.size() + m_allTagDict.size());
+        sw.println(m_tagDict.size() + m_closedTagDict.size() + m_allTagDict.size() + m_DepTagDict.size());
         for (Entry<String, String[]> e : m_tagDict.entrySet()) {
             sw.print(e.getKey());
             sw.print("\t");
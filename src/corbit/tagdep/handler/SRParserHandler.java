@@ -116,15 +116,23 @@ public abstract class SRParserHandler {
 
     protected static void addFeature(IntFeatVector v, String sFeature, double dValue, boolean bAdd, Vocab vocab) {
         if (bAdd) {
-            v.put(vocab.getIndex(sFeature), dValue);
+            putFeature(v, vocab.getIndex(sFeature), dValue);
         } else {
             Integer idx = vocab.getBoxed(sFeature);
             if (idx != null) {
-                v.put(idx, dValue);
+                putFeature(v, idx, dValue);
             }
         }
     }
 
+    private static void putFeature(IntFeatVector v, int idx, double dValue) {
+        if (idx >= Vocab.HASH_NEGATED) {
+            v.put(idx - Vocab.HASH_NEGATED, -dValue);
+        } else {
+            v.put(idx, dValue);
+        }
+    }
+
     protected static void addFeature(IntFeatVector v, String sFeature, String sLabel, double dValue, boolean bAdd, Vocab vocab) {
         addFeature(v, sFeature + SEP + sLabel, dValue, bAdd, vocab);
     }
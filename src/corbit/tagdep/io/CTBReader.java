@@ -30,15 +30,14 @@
 package corbit.tagdep.io;
 
 import corbit.commons.io.Console;
-import corbit.commons.io.FileEnum;
-import corbit.commons.util.Statics;
+import corbit.commons.io.LineScanner;
+import corbit.commons.io.LineSource;
+import corbit.commons.io.MappedCorpus;
 import corbit.tagdep.dict.CTBTagDictionary;
 import corbit.tagdep.word.DepTree;
 import corbit.tagdep.word.DepTreeSentence;
-import java.text.Normalizer;
+import java.io.IOException;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class CTBReader extends ParseReader {
 
@@ -48,39 +47,62 @@ public class CTBReader extends ParseReader {
         this.m_sFile = sFile;
     }
 
+    /**
+     * reads the sentences in src, such as a chunk of a MappedCorpus
+     */
+    public CTBReader(LineSource src) {
+        this.m_sFile = null;
+        this.m_corpus = src;
+    }
+
+    private LineSource m_corpus = null;
+    private final LineScanner m_scanner = new LineScanner();
+    private Set<String> m_posSet = null;
+    private int m_iSentence = 0;
+
     @Override
-    protected void iterate() throws InterruptedException {
-        int iSentence = 0;
-        FileEnum fe = new FileEnum(m_sFile);
-        Set<String> posSet = CTBTagDictionary.copyTagSet();
+    protected DepTreeSentence computeNext() {
+        LineScanner ls = m_scanner;
 
         try {
-            for (String l : fe) {
-                l = Statics.trimSpecial(l);
-                if (l.length() == 0) {
+            if (m_corpus == null) {
+                m_corpus = new MappedCorpus(m_sFile);
+            }
+            if (m_posSet == null) {
+                m_posSet = CTBTagDictionary.copyTagSet();
+            }
+            while (m_corpus.readLine(ls)) {
+                if (ls.isEmpty()) {
                     continue;
                 }
-                ++iSentence;
+                ++m_iSentence;
                 DepTreeSentence s = new DepTreeSentence();
 //                String[] ss = l.split(" ");
-                String[] ss = l.split("\\) ");
-                for (int i = 0; i < ss.length; ++i) {
+                int nTokens = ls.split(") ");
+                for (int i = 0; i < nTokens; ++i) {
                     s.add(new DepTree());
                 }
 
-                for (int i = 0; i < ss.length; ++i) {
-//                    Pattern re = Pattern.compile("(.*?):\\((.*?)\\)_\\((.*?)\\)_\\((.*?)\\)");
-                    Pattern re = Pattern.compile("(.*?):\\((.*?)\\)_\\((.*?)\\)_\\((.*?)\\)?");
-                    Matcher mc = re.matcher(ss[i]);
+                for (int i = 0; i < nTokens; ++i) {
+                    // index:(head)_(form)_(tag), with the last parenthesis
+                    // removed by the split except for the last token
+                    int iBegin = ls.fieldBegin(i);
+                    int iEnd = ls.fieldEnd(i);
+                    int p1 = ls.indexOf(":(", iBegin, iEnd);
+                    int p2 = p1 < 0 ? -1 : ls.indexOf(")_(", p1 + 2, iEnd);
+                    int p3 = p2 < 0 ? -1 : ls.indexOf(")_(", p2 + 3, iEnd);
 
-                    if (!mc.matches() || mc.groupCount() < 4) {
-                        Console.writeLine(String.format("Format error at line %d. Skipping.", iSentence));
+                    if (p3 < 0) {
+                        Console.writeLine(String.format("Format error at line %d. Skipping.", m_iSentence));
                         s = null;
                         break;
                     }
+                    if (ls.charAt(iEnd - 1) == ')' && iEnd - 1 >= p3 + 3) {
+                        --iEnd;
+                    }
 
-                    String sForm = Normalizer.normalize(mc.group(3), Normalizer.Form.NFKC);
-                    String sPos = mc.group(4);
+                    String sForm = ls.normalized(p2 + 3, p3);
+                    String sPos = ls.intern(p3 + 3, iEnd);
 
 //                    if (!sPos.startsWith("-") && sPos.contains("-")) {
 //                        sPos = sPos.split("-")[0];
@@ -101,13 +123,13 @@ public class CTBReader extends ParseReader {
 //                            break;
 //                    }
 
-                    if (!posSet.contains(sPos)) {
+                    if (!m_posSet.contains(sPos)) {
                         Console.writeLine("Unknown POS: " + sPos);
 //                        break;
                     }
 
-                    int iIndex = Integer.parseInt(mc.group(1));
-                    int iHead = Integer.parseInt(mc.group(2));
+                    int iIndex = ls.parseInt(iBegin, p1);
+                    int iHead = ls.parseInt(p1 + 2, p2);
                     DepTree dw = s.get(i);
                     dw.sent = s;
                     dw.index = iIndex;
@@ -118,7 +140,7 @@ public class CTBReader extends ParseReader {
 
                     // if (i != iIndex || iHead < -1 || iHead >= s.size() || iHead == i)
                     if (i != iIndex) {
-                        Console.writeLine(String.format("Illegal index at line %d. Skipping.", iSentence));
+                        Console.writeLine(String.format("Illegal index at line %d. Skipping.", m_iSentence));
                         s = null;
                         break;
                     }
@@ -127,12 +149,18 @@ public class CTBReader extends ParseReader {
                         s.get(iHead).children.add(dw);
                     }
                 }
-                yieldReturn(s);
+                return s;
             }
-        } catch (NumberFormatException | InterruptedException e) {
+        } catch (NumberFormatException | IOException e) {
             e.printStackTrace();
-        } finally {
-            fe.shutdown();
+        }
+        return endOfData();
+    }
+
+    @Override
+    protected void close() {
+        if (m_corpus != null) {
+            m_corpus.close();
         }
     }
 }
\ No newline at end of file
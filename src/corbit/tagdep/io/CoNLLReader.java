@@ -1,10 +1,12 @@
 package corbit.tagdep.io;
 
 import corbit.commons.io.Console;
-import corbit.commons.io.FileEnum;
-import corbit.commons.util.Statics;
+import corbit.commons.io.LineScanner;
+import corbit.commons.io.LineSource;
+import corbit.commons.io.MappedCorpus;
 import corbit.tagdep.word.DepTree;
 import corbit.tagdep.word.DepTreeSentence;
+import java.io.IOException;
 
 /**
  *
@@ -18,39 +20,53 @@ public class CoNLLReader extends ParseReader {
         this.m_sFile = sFile;
     }
 
+    /**
+     * reads the sentences in src, such as a chunk of a MappedCorpus
+     */
+    public CoNLLReader(LineSource src) {
+        this.m_sFile = null;
+        this.m_corpus = src;
+    }
+
+    private LineSource m_corpus = null;
+    private final LineScanner m_scanner = new LineScanner();
+    private int m_iSentence = 0;
+
     @Override
-    protected void iterate() throws InterruptedException {
-        int iSentence = 0;
-        FileEnum fe = new FileEnum(m_sFile);
+    protected DepTreeSentence computeNext() {
 //        Set<String> posSet = CTBTagDictionary.copyTagSet();
+        LineScanner ls = m_scanner;
 
         try {
+            if (m_corpus == null) {
+                m_corpus = new MappedCorpus(m_sFile);
+            }
             int j = 0;
             DepTreeSentence s = new DepTreeSentence();
-            for (String l : fe) {
-                l = Statics.trimSpecial(l);
-                if (l.length() == 0) {
+            while (m_corpus.readLine(ls)) {
+                if (ls.isEmpty()) {
                     if (s.size() > 0) {
-                        yieldReturn(s);
-                        ++iSentence;
+                        ++m_iSentence;
+                        return s;
                     }
                     s = new DepTreeSentence();
                     j = 0;
                     continue;
                 }
-                String[] ss = l.split("\t");
-                int iIndex = Integer.parseInt(ss[0]) - 1;
-                String sForm = ss[1];
-                String lemma = ss[2];
-                String cpos = ss[3];
+                if (ls.split("\t") < 8) {
+                    Console.writeLine(String.format("Format error at line %d. Skipping.", m_iSentence));
+                    break;
+                }
+                int iIndex = ls.parseInt(ls.fieldBegin(0), ls.fieldEnd(0)) - 1;
+                String sForm = ls.substring(ls.fieldBegin(1), ls.fieldEnd(1));
+                String lemma = ls.substring(ls.fieldBegin(2), ls.fieldEnd(2));
+                String cpos = ls.intern(ls.fieldBegin(3), ls.fieldEnd(3));
 //                if (!posSet.contains(cpos)) {
 //                    Console.writeLine("Unknown POS: " + cpos);
 ////                        break;
 //                }
-                String fpos = ss[4];
-                String feat = ss[5];
-                int iHead = Integer.parseInt(ss[6]) - 1;
-                String dependency = ss[7];
+                int iHead = ls.parseInt(ls.fieldBegin(6), ls.fieldEnd(6)) - 1;
+                String dependency = ls.intern(ls.fieldBegin(7), ls.fieldEnd(7));
                 
                 int count = iHead + 1 - s.size();
                 for (int i = 0; i < count; ++i) {
@@ -70,7 +86,7 @@ public class CoNLLReader extends ParseReader {
                 dw.dependency=dependency;
 
                 if (j != iIndex) {
-                    Console.writeLine(String.format("Illegal index at line %d. Skipping.", iSentence));
+                    Console.writeLine(String.format("Illegal index at line %d. Skipping.", m_iSentence));
                     s = null;
                     break;
                 }
@@ -80,10 +96,16 @@ public class CoNLLReader extends ParseReader {
                 }
                 j++;
             }
-        } catch (NumberFormatException | InterruptedException e) {
+        } catch (NumberFormatException | IOException e) {
             e.printStackTrace();
-        } finally {
-            fe.shutdown();
+        }
+        return endOfData();
+    }
+
+    @Override
+    protected void close() {
+        if (m_corpus != null) {
+            m_corpus.close();
         }
     }
 }
@@ -0,0 +1,97 @@
+/*
+ * Corbit, a text analyzer
+ * 
+ * Copyright (c) 2010-2012, Jun Hatori
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the names of the authors nor the names of its contributors
+ *       may be used to endorse or promote products derived from this
+ *       software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package corbit.tagdep.io;
+
+import corbit.commons.io.CompiledCorpus;
+import corbit.tagdep.word.DepTree;
+import corbit.tagdep.word.DepTreeSentence;
+import java.io.IOException;
+
+/**
+ * Reads the sentences of a CompiledCorpus as trees.
+ */
+public class CompiledReader extends ParseReader {
+
+    private final CompiledCorpus m_corpus;
+    private int m_iSentence = 0;
+
+    public CompiledReader(CompiledCorpus corpus) {
+        m_corpus = corpus;
+    }
+
+    @Override
+    protected DepTreeSentence computeNext() {
+        if (m_iSentence >= m_corpus.size()) {
+            return endOfData();
+        }
+        int iBegin = m_corpus.begin(m_iSentence);
+        int iEnd = m_corpus.end(m_iSentence);
+        ++m_iSentence;
+
+        DepTreeSentence s = new DepTreeSentence();
+        for (int i = iBegin; i < iEnd; ++i) {
+            DepTree dw = new DepTree();
+            dw.sent = s;
+            dw.index = i - iBegin;
+            dw.form = m_corpus.form(i);
+            dw.lemm = m_corpus.lemma(i);
+            dw.pos = m_corpus.tag(i);
+            dw.head = m_corpus.head(i);
+            dw.dependency = m_corpus.label(i);
+            s.add(dw);
+        }
+        for (DepTree dw : s) {
+            if (dw.head >= 0) {
+                s.get(dw.head).children.add(dw);
+            }
+        }
+        return s;
+    }
+
+    /**
+     * writes the sentences of pr into a compiled corpus
+     */
+    public static void compile(ParseReader pr, String sOutFile) 
+            throws IOException {
+        try (CompiledCorpus.Writer w = new CompiledCorpus.Writer(sOutFile)) {
+            for (DepTreeSentence s : pr) {
+                if (s == null) {
+                    continue;
+                }
+                for (DepTree dw : s) {
+                    w.addWord(dw.form, dw.lemm, dw.pos, dw.dependency, dw.head);
+                }
+                w.endSentence();
+            }
+        } finally {
+            pr.shutdown();
+        }
+    }
+}
@@ -30,15 +30,15 @@
 package corbit.tagdep.io;
 
 import corbit.commons.io.Console;
-import corbit.commons.io.FileEnum;
+import corbit.commons.io.LineScanner;
+import corbit.commons.io.LineSource;
+import corbit.commons.io.MappedCorpus;
 import corbit.tagdep.dict.CTBTagDictionary;
 import corbit.tagdep.word.DepTree;
 import corbit.tagdep.word.DepTreeSentence;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.text.Normalizer;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Set;
 
 public class MaltReader extends ParseReader {
@@ -51,32 +51,49 @@ public class MaltReader extends ParseReader {
         m_sFile = sFile;
     }
 
+    /**
+     * reads the sentences in src, such as a chunk of a MappedCorpus
+     */
+    public MaltReader(LineSource src) {
+        this.m_sFile = null;
+        this.m_corpus = src;
+    }
+
+    private LineSource m_corpus = null;
+    private final LineScanner m_scanner = new LineScanner();
+    private Set<String> m_posSet = null;
+    private int m_iSentence = 0;
+
     @Override
-    protected void iterate() 
-            throws InterruptedException {
-        int iSentence = 0;
-        FileEnum fe = new FileEnum(m_sFile);
-        Set<String> posSet = CTBTagDictionary.copyTagSet();
+    protected DepTreeSentence computeNext() {
+        LineScanner ls = m_scanner;
+        DepTreeSentence s = new DepTreeSentence();
+        boolean bEnd = true;
 
         try {
-            while (fe.hasNext()) {
-                List<String> l = new ArrayList<>();
-                String sLine;
-                while (!(sLine = fe.next()).equals("")) {
-                    l.add(sLine);
+            if (m_corpus == null) {
+                m_corpus = new MappedCorpus(m_sFile);
+            }
+            if (m_posSet == null) {
+                m_posSet = CTBTagDictionary.copyTagSet();
+            }
+            while (m_corpus.readRawLine(ls)) {
+                bEnd = false;
+                if (ls.isEmpty()) {
+                    break;
                 }
-
-                ++iSentence;
-                DepTreeSentence s = new DepTreeSentence();
-                for (int i = 0; i < l.size(); ++i) {
-                    s.add(new DepTree());
+                if (s == null) {
+                    continue;
+                }
+                if (ls.split("\t") < 3) {
+                    Console.writeLine(String.format(
+                            "Error found at line %d. Skipping.", m_iSentence + 1));
+                    s = null;
+                    continue;
                 }
-                for (int i = 0; i < l.size(); ++i) {
-                    String[] r = l.get(i).split("\t");
-                    int iIndex = i;
-                    int iHead = Integer.parseInt(r[2]) - 1;
-                    String sForm = Normalizer.normalize(r[0], Normalizer.Form.NFKC);
-                    String sPos = r[1];
+                int iHead = ls.parseInt(ls.fieldBegin(2), ls.fieldEnd(2)) - 1;
+                String sForm = ls.normalized(ls.fieldBegin(0), ls.fieldEnd(0));
+                String sPos = ls.intern(ls.fieldBegin(1), ls.fieldEnd(1));
 
 //                    if (!sPos.startsWith("-") && sPos.contains("-")) {
 //                        sPos = sPos.split("-")[0];
@@ -85,33 +102,50 @@ public class MaltReader extends ParseReader {
 //                    } else if (sPos.equals("PU/")) {
 //                        sPos = "PU";
 //                    }
-                    
-                    if (!posSet.contains(sPos)) {
-                        Console.writeLine("Unknown POS: " + sPos);
-                    }
 
-                    DepTree dw = s.get(i);
-                    dw.sent = s;
-                    dw.index = iIndex;
-                    dw.form = sForm;
-                    dw.pos = sPos;
-                    dw.head = iHead;
+                if (!m_posSet.contains(sPos)) {
+                    Console.writeLine("Unknown POS: " + sPos);
+                }
 
-                    if (iHead < -1 || iHead >= s.size() || iHead == i) {
-                        Console.writeLine(String.format(
-                                "Error found at line %d. Skipping.", iSentence));
-                        s = null;
-                        break;
-                    }
+                DepTree dw = new DepTree();
+                dw.sent = s;
+                dw.index = s.size();
+                dw.form = sForm;
+                dw.pos = sPos;
+                dw.head = iHead;
+                s.add(dw);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return endOfData();
+        }
+        if (bEnd) {
+            return endOfData();
+        }
 
-                    if (iHead != -1) {
-                        s.get(iHead).children.add(dw);
-                    }
-                }
-                yieldReturn(s);
+        ++m_iSentence;
+        for (int i = 0; s != null && i < s.size(); ++i) {
+            DepTree dw = s.get(i);
+            int iHead = dw.head;
+
+            if (iHead < -1 || iHead >= s.size() || iHead == i) {
+                Console.writeLine(String.format(
+                        "Error found at line %d. Skipping.", m_iSentence));
+                s = null;
+                break;
+            }
+
+            if (iHead != -1) {
+                s.get(iHead).children.add(dw);
             }
-        } finally {
-            fe.shutdown();
+        }
+        return s;
+    }
+
+    @Override
+    protected void close() {
+        if (m_corpus != null) {
+            m_corpus.close();
         }
     }
 }
\ No newline at end of file
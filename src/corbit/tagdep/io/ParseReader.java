@@ -29,7 +29,7 @@
  */
 package corbit.tagdep.io;
 
-import corbit.commons.util.Generator;
+import corbit.commons.util.PullIterator;
 import corbit.tagdep.SRParserEvaluator;
 import corbit.tagdep.dict.TagDictionary;
 import corbit.tagdep.word.DepTreeSentence;
@@ -39,7 +39,10 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 
-public abstract class ParseReader extends Generator<DepTreeSentence> {
+public abstract class ParseReader extends PullIterator<DepTreeSentence> {
+
+    // sentences per batch when a corpus is read ahead
+    public static final int READ_AHEAD_BATCH = 512;
 
     public static void evalPos(TagDictionary dict, String sFile, String sGoldFile) throws IOException {
         SRParserEvaluator eval = new SRParserEvaluator(dict, false, true);
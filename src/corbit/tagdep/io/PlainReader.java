@@ -30,16 +30,15 @@
 package corbit.tagdep.io;
 
 import corbit.commons.io.Console;
-import corbit.commons.io.FileEnum;
+import corbit.commons.io.LineScanner;
+import corbit.commons.io.MappedCorpus;
 import corbit.tagdep.dict.CTBTagDictionary;
 import corbit.tagdep.word.DepTree;
 import corbit.tagdep.word.DepTreeSentence;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.text.Normalizer;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 class PlainReader extends ParseReader {
 
@@ -51,38 +50,49 @@ class PlainReader extends ParseReader {
         m_sFile = sFile;
     }
 
-    @Override
-    protected void iterate() throws InterruptedException {
-        int iSentence = 0;
-        FileEnum fe = new FileEnum(m_sFile);
-        Set<String> posSet = CTBTagDictionary.copyTagSet();
+    private MappedCorpus m_corpus = null;
+    private final LineScanner m_scanner = new LineScanner();
+    private Set<String> m_posSet = null;
+    private int m_iSentence = 0;
 
+    @Override
+    protected DepTreeSentence computeNext() {
+        LineScanner ls = m_scanner;
         try {
-            while (fe.hasNext()) {
-                ++iSentence;
-                String l = fe.next();
-                l.replaceAll("\r\n", "");
-                l.replaceAll("\n", "");
-                DepTreeSentence s = new DepTreeSentence();
-                String[] ss = l.split(" ");
-
-                for (int i = 0; i < ss.length; ++i) {
-                    s.add(new DepTree());
-                }
-
-                for (int i = 0; i < ss.length; ++i) {
-                    Pattern re = Pattern.compile("(.+)#(.+)");
-//                    Pattern re = Pattern.compile("(.+)#(.+)");
-                    Matcher mc = re.matcher(ss[i]);
-
-                    if (!mc.matches() || mc.groupCount() < 2) {
-                        Console.writeLine(String.format("Error found at line %d. Skipping.", iSentence));
-                        s = null;
-                        break;
-                    }
-
-                    String sForm = Normalizer.normalize(mc.group(1), Normalizer.Form.NFKC);
-                    String sPos = mc.group(2);
+            if (m_corpus == null) {
+                m_corpus = new MappedCorpus(m_sFile);
+                m_posSet = CTBTagDictionary.copyTagSet();
+            }
+            if (!m_corpus.readLine(ls)) {
+                return endOfData();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return endOfData();
+        }
+
+        ++m_iSentence;
+        DepTreeSentence s = new DepTreeSentence();
+        int nTokens = ls.split(" ");
+
+        for (int i = 0; i < nTokens; ++i) {
+            s.add(new DepTree());
+        }
+
+        for (int i = 0; i < nTokens; ++i) {
+            // form#tag, split at the last '#' that leaves both non-empty
+            int iBegin = ls.fieldBegin(i);
+            int iEnd = ls.fieldEnd(i);
+            int p = ls.lastIndexOf('#', iBegin + 1, iEnd - 1);
+
+            if (p < 0) {
+                Console.writeLine(String.format("Error found at line %d. Skipping.", m_iSentence));
+                s = null;
+                break;
+            }
+
+            String sForm = ls.normalized(iBegin, p);
+            String sPos = ls.intern(p + 1, iEnd);
 
 //                    if (!sPos.startsWith("-") && sPos.contains("-")) {
 //                        sPos = sPos.split("-")[0];
@@ -92,22 +102,25 @@ class PlainReader extends ParseReader {
 //                        sPos = "PU";
 //                    }
 
-                    if (!posSet.contains(sPos)) {
-                        Console.writeLine("Unknown POS: " + sPos);
-                    }
+            if (!m_posSet.contains(sPos)) {
+                Console.writeLine("Unknown POS: " + sPos);
+            }
 
-                    DepTree dw = s.get(i);
+            DepTree dw = s.get(i);
 
-                    dw.sent = s;
-                    dw.index = i;
-                    dw.form = sForm;
-                    dw.pos = sPos;
-                    dw.head = -1;
-                }
-                yieldReturn(s);
-            }
-        } finally {
-            fe.shutdown();
+            dw.sent = s;
+            dw.index = i;
+            dw.form = sForm;
+            dw.pos = sPos;
+            dw.head = -1;
+        }
+        return s;
+    }
+
+    @Override
+    protected void close() {
+        if (m_corpus != null) {
+            m_corpus.close();
         }
     }
 }
\ No newline at end of file
@@ -30,7 +30,7 @@
 package corbit.tagdep.transition;
 
 import corbit.commons.ml.IntFeatVector;
-import corbit.commons.ml.WeightVector;
+import corbit.commons.ml.Weights;
 import corbit.commons.transition.PDAction;
 import corbit.commons.util.Pair;
 import corbit.tagdep.SRParserState;
@@ -46,10 +46,10 @@ public abstract class SRParserTransition {
     protected boolean m_bDP;
     protected SRParserStateGenerator m_generator;
     protected SRParserHandler m_fhandler;
-    protected WeightVector m_weight;
+    protected Weights m_weight;
     protected TagDictionary m_dict;
 
-    protected SRParserTransition(SRParserStateGenerator sg, SRParserHandler fh, WeightVector w, TagDictionary d, boolean bParse) {
+    protected SRParserTransition(SRParserStateGenerator sg, SRParserHandler fh, Weights w, TagDictionary d, boolean bParse) {
         m_generator = sg;
         m_fhandler = fh;
         m_weight = w;
@@ -31,7 +31,7 @@ package corbit.tagdep.transition;
 
 import corbit.commons.io.Console;
 import corbit.commons.ml.IntFeatVector;
-import corbit.commons.ml.WeightVector;
+import corbit.commons.ml.Weights;
 import corbit.commons.transition.PDAction;
 import corbit.commons.util.Pair;
 import corbit.tagdep.SRParserState;
@@ -56,9 +56,8 @@ public class SRParserTransitionStd extends SRParserTransition {
     boolean m_bIndepSPActions;
     int m_iLookaheadDepth = 0;
     
-    public String DepTag=null;
 
-    public SRParserTransitionStd(SRParserStateGenerator sg, SRParserHandler fh, WeightVector w, TagDictionary d,
+    public SRParserTransitionStd(SRParserStateGenerator sg, SRParserHandler fh, Weights w, TagDictionary d,
             boolean bParse, boolean bReduceFollowsShift, boolean bAssignGoldPos, boolean bIndepSPActions) {
         super(sg, fh, w, d, bParse);
         this.m_bAssignPosFollowsShift = bReduceFollowsShift;
@@ -126,13 +125,13 @@ public class SRParserTransitionStd extends SRParserTransition {
                         && gsent.get(ws0.index).head == ws1.index
                         && gsent.get(ws0.index).children.size() == ws0.children.size()) {
                     
-                    DepTag = gsent.get(ws0.index).dependency;//افزوده شده
+                    String DepTag = gsent.get(ws0.index).dependency;//افزوده شده
                     
                     return PDAction.getRRAction(DepTag);// تغییر داده شده
                     
                 } else if (ws1.index != -1 && ws0.index == gsent.get(ws1.index).head) {
                     
-                    DepTag = gsent.get(ws1.index).dependency;// افزوده شده
+                    String DepTag = gsent.get(ws1.index).dependency;// افزوده شده
                     
                     return PDAction.getRLAction(DepTag);
                 }